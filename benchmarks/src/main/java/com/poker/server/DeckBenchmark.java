@@ -0,0 +1,52 @@
+package com.poker.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Building a PokerDeck, and dealing a full table's hands from one, with both
+ * kinds of ShuffleRandom.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeckBenchmark {
+    private static final int CARDS_PER_DEAL = Game.MAX_PLAYERS * PokerHand.NUM_CARDS;
+    private PokerDeck _secureDeck = new PokerDeck();
+    private PokerDeck _splittableDeck = new PokerDeck(new SplittableShuffleRandom());
+
+    @Benchmark
+    public PokerDeck construct() {
+        return new PokerDeck();
+    }
+
+    @Benchmark
+    public void dealCardSecure(Blackhole hole) {
+        deal(_secureDeck, hole);
+    }
+
+    @Benchmark
+    public void dealCardSplittable(Blackhole hole) {
+        deal(_splittableDeck, hole);
+    }
+
+    private static void deal(PokerDeck deck, Blackhole hole) {
+        deck.reset();
+        for(int i = 0; i < CARDS_PER_DEAL; i++) {
+            hole.consume(deck.dealCard());
+        }
+    }
+}
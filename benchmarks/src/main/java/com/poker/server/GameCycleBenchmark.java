@@ -0,0 +1,70 @@
+package com.poker.server;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import com.poker.Messenger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A headless Game: every seat is fed scripted commands and writes to a stream
+ * that throws the bytes away. The game's events run on the benchmark thread.
+ * Each invocation seats the players, plays one hand where everybody checks
+ * every street, and then has them all exit at the start of the next.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameCycleBenchmark {
+    @Param({ "2", "10" })
+    public int _numPlayers;
+
+    @Param({ "five", "holdem" })
+    public String _gameType;
+
+    private final PrintWriter _out = new PrintWriter(new OutputStream() {
+        @Override
+        public void write(int b) { }
+
+        @Override
+        public void write(byte[] b, int off, int len) { }
+    }, true);
+
+    @Benchmark
+    public Game handCycle() {
+        Game game = Game.newGame(_gameType, "benchmark", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        String[] script = _gameType.equals("holdem")
+                ? new String[] { "check", "check", "check", "check", "exit" }
+                : new String[] { "check", "exit" };
+        Player[] players = new Player[_numPlayers];
+        for(int i = 0; i < _numPlayers; i++) {
+            Player player = new Player();
+            player._name = "player" + i;
+            player._out = _out;
+            game._players.add(player);
+            players[i] = player;
+        }
+        game.play();
+        // Lines typed ahead of a player's turn wait for it
+        for(String line : script) {
+            for(Player player : players) {
+                game.handleInput(player, line);
+            }
+        }
+        return game;
+    }
+}
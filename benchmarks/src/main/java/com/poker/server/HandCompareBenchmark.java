@@ -0,0 +1,58 @@
+package com.poker.server;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PokerHand.compareTo on random hands, and on hands that all share one
+ * ranking, so every comparison goes down to the tie break.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandCompareBenchmark {
+    private static final int NUM_HANDS = 1024;
+
+    @Param({ "RANDOM", "TWO_PAIR", "FULL_HOUSE", "HIGH_CARD" })
+    public String _ranking;
+
+    private PokerHand[] _hands = new PokerHand[NUM_HANDS];
+    private int _next;
+
+    @Setup
+    public void dealHands() {
+        PokerDeck deck = new PokerDeck(new SplittableShuffleRandom(9));
+        int[] cards = new int[PokerHand.NUM_CARDS];
+        int n = 0;
+        while(n < NUM_HANDS) {
+            deck.reset();
+            for(int i = 0; i < cards.length; i++) {
+                cards[i] = deck.dealCardId();
+            }
+            PokerHand hand = new PokerHand(cards);
+            if(_ranking.equals("RANDOM") || hand.getHandRanking().name().equals(_ranking)) {
+                _hands[n++] = hand;
+            }
+        }
+    }
+
+    @Benchmark
+    public int compareTo() {
+        int i = _next++ & (NUM_HANDS - 1);
+        return _hands[i].compareTo(_hands[(i + 1) & (NUM_HANDS - 1)]);
+    }
+}
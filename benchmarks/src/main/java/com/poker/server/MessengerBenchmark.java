@@ -0,0 +1,85 @@
+package com.poker.server;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import com.poker.ClientWriter;
+import com.poker.Messenger;
+import com.poker.Messenger.Template;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a typical turn's message in a Messenger, and sending it through
+ * a ClientWriter, as text or binary frames, to a stream that throws the
+ * bytes away.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MessengerBenchmark {
+    private static final Template EXIT = new Template("Type \"exit\" to EXIT GAME");
+    private static final Template FOLD = new Template("Type \"fold\" to FOLD");
+    private static final Template CHECK = new Template("Type \"check\" to CHECK");
+    private static final Template BET = new Template("Type \"bet\" to BET");
+
+    private Messenger _messenger = new Messenger();
+    private ClientWriter _out = new ClientWriter(new OutputStream() {
+        @Override
+        public void write(int b) { }
+
+        @Override
+        public void write(byte[] b, int off, int len) { }
+    });
+
+    @Benchmark
+    public Messenger buildMessage() {
+        addTurnToMsg();
+        _messenger.addMsgSplit();
+        Messenger built = _messenger;
+        _messenger = new Messenger();
+        return built;
+    }
+
+    @Benchmark
+    public void buildAndSendMessage() {
+        _out.setBinary(false);
+        addTurnToMsg();
+        _messenger.sendClientMsg(_out);
+    }
+
+    @Benchmark
+    public void buildAndSendFrames() {
+        _out.setBinary(true);
+        addTurnToMsg();
+        _messenger.sendClientMsg(_out);
+    }
+
+    /**
+     * Roughly what Game sends before each action at a full table.
+     */
+    private void addTurnToMsg() {
+        for(int i = 0; i < Game.MAX_PLAYERS; i++) {
+            _messenger.addSeatToMsg("player" + i, 10000 - i * 25, i * 25);
+        }
+        _messenger.addMsgSplit();
+        _messenger.addHandToMsg(0x1C0000001001L, 0L, "|| ACE of SPADES | KING of SPADES | TEN of HEARTS | FOUR of CLUBS | TWO of CLUBS ||");
+        _messenger.addMsgSplit();
+        _messenger.addPotToMsg(1125, 225);
+        _messenger.addMsgSplit();
+        _messenger.addMenuOptionToMsg(EXIT);
+        _messenger.addMenuOptionToMsg(FOLD);
+        _messenger.addMenuOptionToMsg(CHECK);
+        _messenger.addMenuOptionToMsg(BET);
+    }
+}
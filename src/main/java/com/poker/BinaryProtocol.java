@@ -0,0 +1,113 @@
+package com.poker;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * The binary protocol a client can ask for instead of the line count text
+ * protocol. Every connection starts out on text; a client sends REQUEST as a
+ * command, and every message from then on is a run of frames ending with an
+ * END frame. Clients keep sending their commands as lines.
+ *
+ * A frame is a 4 byte big endian payload length, a 1 byte opcode and the
+ * payload. Strings inside a payload are a 2 byte length and UTF-8 bytes; a
+ * string that is the whole payload, like TEXT or PROMPT, has no length.
+ *
+ *   TEXT         text, including its new lines
+ *   PROMPT       text the client should answer
+ *   MENU         string per option the client can type
+ *   TABLE_STATE  per player: string name, long chips, long bet
+ *   HAND         long card set in hand, long community card set, text describing them
+ *   POT          long pot, long minimum bet
+ *   TABLE_DELTA  long base version, long version, long pot, long minimum bet,
+ *                byte seat count, then per changed seat: byte seat, string
+ *                name, long chips, long bet
+ *   END          empty; the message is complete
+ *
+ * A binary client also gets messages it didn't ask for: while it sits at or
+ * watches a table, the table broadcasts what happens there as TEXT messages,
+ * and each new version of the table's state as a TABLE_DELTA message, in
+ * place of the TABLE_STATE and POT a text client is sent every turn. A delta
+ * only has the seats that changed since its base version; one with base 0
+ * has them all. A client whose version isn't the base sends RESYNC_REQUEST,
+ * and is sent the whole table. See TableState.
+ *
+ * Card sets are longs with a 16 bit lane per suit (hearts, spades, diamonds,
+ * clubs from the low end) and a bit per rank, two low.
+ */
+public final class BinaryProtocol {
+    public static final String REQUEST = "protocol binary";
+    public static final String TEXT_REQUEST = "protocol text";
+    public static final String RESYNC_REQUEST = "protocol resync";
+
+    public static final int HEADER_SIZE = 5;
+    public static final int MAX_PAYLOAD_LENGTH = 1 << 20;
+
+    public static final byte END = 0;
+    public static final byte TEXT = 1;
+    public static final byte PROMPT = 2;
+    public static final byte MENU = 3;
+    public static final byte TABLE_STATE = 4;
+    public static final byte HAND = 5;
+    public static final byte POT = 6;
+    public static final byte TABLE_DELTA = 7;
+
+    private BinaryProtocol() { }
+
+    /**
+     * Reads one whole frame.
+     */
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0 || length > MAX_PAYLOAD_LENGTH) {
+            throw new IOException("Bad frame length: " + length);
+        }
+        byte opcode = in.readByte();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Frame(opcode, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * Reads a length prefixed string from a payload.
+     */
+    public static String getString(ByteBuffer payload) {
+        int length = payload.getShort() & 0xFFFF;
+        String string = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return string;
+    }
+
+    /**
+     * Reads the rest of a payload as a string.
+     */
+    public static String getRemainingString(ByteBuffer payload) {
+        String string = new String(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(), StandardCharsets.UTF_8);
+        payload.position(payload.limit());
+        return string;
+    }
+
+    public static final class Frame {
+        private final byte _opcode;
+        private final ByteBuffer _payload;
+
+        Frame(byte opcode, ByteBuffer payload) {
+            _opcode = opcode;
+            _payload = payload;
+        }
+
+        public byte getOpcode() {
+            return _opcode;
+        }
+
+        public ByteBuffer getPayload() {
+            return _payload;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.poker;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A message for everybody at a table, already encoded as binary protocol
+ * frames. Messenger encodes it once, and the same bytes are handed to every
+ * recipient's ClientWriter, so none of them can be changed once it's made.
+ *
+ * A version of a table's state, from TableState, carries two encodings: the
+ * delta from the version before it, and the whole table for a client that
+ * doesn't have that one. It is replaceable: a newer version says everything
+ * it does, so a client that hasn't been sent it yet only gets the newer one.
+ */
+public final class Broadcast {
+    final byte[] _bytes;
+    final Object _table;
+    final long _base;
+    final long _version;
+    final byte[] _full;
+
+    Broadcast(byte[] bytes) {
+        this(bytes, null, 0, 0, null);
+    }
+
+    Broadcast(byte[] delta, Object table, long base, long version, byte[] full) {
+        _bytes = delta;
+        _table = table;
+        _base = base;
+        _version = version;
+        _full = full;
+    }
+
+    public int length() {
+        return _bytes.length;
+    }
+
+    public boolean isReplaceable() {
+        return _table != null;
+    }
+}
@@ -0,0 +1,253 @@
+package com.poker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * The PrintWriter a server holds for each client. Besides text, it can write
+ * the raw bytes of binary protocol frames, and it remembers which protocol
+ * the client asked for, so Messenger can encode for it. Messenger encodes
+ * each message into this client's MessageBuffer and writes it all at once.
+ *
+ * Broadcasts from the client's table wait in an outbox, and are written by a
+ * shared writer thread, so a table never waits on a client that is slow to
+ * read. While they wait, a newer state of the table replaces the older one,
+ * and what's waiting goes out in one write. A message sent straight to the
+ * client queues the outbox first, so the client sees everything in order.
+ *
+ * Nothing is written to the socket while this writer's monitor is held.
+ * Messages are queued under it, in order, and then written outside it by
+ * whichever thread finds no write in progress. A thread that finds one
+ * leaves its message to that writer and carries on, so it never waits
+ * behind a write that is stuck on a slow client.
+ *
+ * It also remembers which version of the table's state the client was last
+ * sent. A new version goes out as the delta from that one when it can, and
+ * as the whole table when the client missed a version, is new to the table,
+ * or asked for it.
+ */
+public class ClientWriter extends PrintWriter {
+    private final OutputStream _bytesOut;
+    private volatile boolean _binary;
+    private final MessageBuffer _message = new MessageBuffer();
+
+    // Broadcasts not yet written. Once a client has this many waiting, the
+    // oldest are dropped
+    static final int MAX_OUTBOX = 256;
+    private final ArrayDeque<Broadcast> _outbox = new ArrayDeque<Broadcast>();
+    private Broadcast _waitingState;
+    private boolean _flushQueued;
+    // Encoded messages waiting for the socket, in order, and whether a thread
+    // is writing them; guarded by this writer's monitor. Only that thread
+    // uses _batch
+    private final ArrayDeque<byte[]> _pending = new ArrayDeque<byte[]>();
+    private boolean _writing;
+    private final MessageBuffer _batch = new MessageBuffer();
+    // The table state the client was last sent; guarded by this writer's monitor
+    private Object _table;
+    private long _tableVersion;
+    private final Executor _writer;
+    private final Runnable _flushOutbox = new Runnable() {
+        public void run() {
+            synchronized (ClientWriter.this) {
+                // A write in progress takes the outbox when it's done, so
+                // the outbox keeps to its limit meanwhile
+                if(_writing) { return; }
+                queueOutbox();
+                if(!startWriting()) { return; }
+            }
+            writePending();
+        }
+    };
+
+    // Threads that write every client's broadcasts. A fixed number, so slow
+    // clients hold up each other's broadcasts rather than taking a thread each
+    private static final ExecutorService WRITERS = Executors.newFixedThreadPool(
+            2 * Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+        private final AtomicInteger _count = new AtomicInteger();
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "poker-broadcast-" + _count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public ClientWriter(OutputStream out) {
+        this(out, WRITERS);
+    }
+
+    /**
+     * A writer whose broadcasts are written on the supplied executor.
+     */
+    public ClientWriter(OutputStream out, Executor writer) {
+        super(new OutputStreamWriter(out, StandardCharsets.UTF_8), true);
+        _bytesOut = out;
+        _writer = writer;
+    }
+
+    public boolean isBinary() {
+        return _binary;
+    }
+
+    public void setBinary(boolean binary) {
+        _binary = binary;
+    }
+
+    /**
+     * Writes already encoded bytes, after any text written before them.
+     */
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        synchronized (lock) {
+            flush();
+            try {
+                _bytesOut.write(bytes, offset, length);
+                _bytesOut.flush();
+            }
+            catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    /**
+     * The buffer to encode the next message into. Hold this writer's monitor
+     * from here until sendMessage.
+     */
+    MessageBuffer messageBuffer() {
+        _message.clear();
+        return _message;
+    }
+
+    /**
+     * Queues the encoded message behind the outbox. Returns true if the
+     * caller is to write what's queued, with writePending, once it has let
+     * go of this writer's monitor.
+     */
+    boolean sendMessage() {
+        queueOutbox();
+        _pending.add(Arrays.copyOf(_message.array(), _message.length()));
+        return startWriting();
+    }
+
+    /**
+     * Makes the calling thread the one writing, unless another thread already
+     * is or there's nothing to write. Hold this writer's monitor.
+     */
+    private boolean startWriting() {
+        if(_writing || _pending.isEmpty()) { return false; }
+        _writing = true;
+        return true;
+    }
+
+    /**
+     * Writes the queued messages, and any broadcasts that arrive meanwhile,
+     * until none are left, outside this writer's monitor. Only the thread
+     * that startWriting chose calls this.
+     */
+    void writePending() {
+        while(true) {
+            byte[] only = null;
+            synchronized (this) {
+                queueOutbox();
+                if(_pending.size() == 1) {
+                    only = _pending.poll();
+                }
+                else if(_pending.isEmpty()) {
+                    _writing = false;
+                    return;
+                }
+                else {
+                    _batch.clear();
+                    for(byte[] bytes; (bytes = _pending.poll()) != null; ) {
+                        _batch.putBytes(bytes);
+                    }
+                }
+            }
+            if(only != null) { writeBytes(only, 0, only.length); }
+            else { writeBytes(_batch.array(), 0, _batch.length()); }
+        }
+    }
+
+    /**
+     * Queues a broadcast to be written to the client, if it is on the binary
+     * protocol, without waiting for it to be written.
+     */
+    public void offer(Broadcast broadcast) {
+        if(!_binary) { return; }
+        synchronized (_outbox) {
+            if(broadcast.isReplaceable()) {
+                if(_waitingState != null) { _outbox.remove(_waitingState); }
+                _waitingState = broadcast;
+            }
+            if(_outbox.size() >= MAX_OUTBOX) { dropOldest(); }
+            _outbox.add(broadcast);
+            if(_flushQueued) { return; }
+            _flushQueued = true;
+        }
+        _writer.execute(_flushOutbox);
+    }
+
+    /**
+     * Drops the oldest waiting broadcast, passing over the table's state,
+     * which is never dropped, only replaced. Hold the outbox's monitor.
+     */
+    private void dropOldest() {
+        for(Iterator<Broadcast> waiting = _outbox.iterator(); waiting.hasNext(); ) {
+            if(waiting.next() != _waitingState) {
+                waiting.remove();
+                return;
+            }
+        }
+    }
+
+    /**
+     * The next time the client is sent the table's state, it gets the whole
+     * table.
+     */
+    public synchronized void forgetTableState() {
+        _table = null;
+    }
+
+    /**
+     * The delta, if the broadcast is a table state that follows on from the
+     * one the client has; otherwise the whole thing. Hold this writer's
+     * monitor.
+     */
+    private byte[] bytesFor(Broadcast broadcast) {
+        if(broadcast._table == null) { return broadcast._bytes; }
+        boolean followsOn = broadcast._table == _table && broadcast._base == _tableVersion;
+        _table = broadcast._table;
+        _tableVersion = broadcast._version;
+        return followsOn ? broadcast._bytes : broadcast._full;
+    }
+
+    /**
+     * Moves every waiting broadcast to the messages to be written. Hold this
+     * writer's monitor.
+     */
+    private void queueOutbox() {
+        synchronized (_outbox) {
+            _flushQueued = false;
+            _waitingState = null;
+            for(Broadcast broadcast; (broadcast = _outbox.poll()) != null; ) {
+                _pending.add(bytesFor(broadcast));
+            }
+        }
+    }
+}
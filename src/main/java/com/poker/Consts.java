@@ -9,4 +9,19 @@ package com.poker;
  */
 public class Consts {
     public static final int PORT = 41345;
+    // Where the server keeps its hand history, relative to where it runs
+    public static final String HAND_HISTORY_DIR = "hand-history";
+    // Where the server keeps players' chip balances
+    public static final String LEDGER_DIR = "ledger";
+    // How often the server prints its metrics
+    public static final long METRICS_DUMP_SECONDS = 60;
+    // Time to act each turn, the extra time each player has for the whole game,
+    // and how long a player who lost their connection keeps their seat
+    public static final long ACTION_TIME_MILLIS = 30000;
+    public static final long TIME_BANK_MILLIS = 60000;
+    public static final long DISCONNECT_GRACE_MILLIS = 60000;
+    // Whether a player out of time checks when they can, or always folds
+    public static final boolean AUTO_CHECK = true;
+    // How many lines a player can type ahead of their turn
+    public static final int MAX_PENDING_INPUT = 8;
 }
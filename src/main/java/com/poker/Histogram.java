@@ -0,0 +1,149 @@
+package com.poker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Counts values, like latencies in microseconds or message sizes in bytes, in
+ * fixed buckets. Below 16 each bucket is one wide; above, each power of two is
+ * split into 16 buckets, so a percentile is within about 6% of the true value.
+ *
+ * Any thread can record. Recording finds the bucket with a few shifts and
+ * increments it, and never allocates. Threads record into one of a few
+ * stripes, picked by thread id, so threads on different cores mostly don't
+ * contend for the same counts; reading adds the stripes together.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int MAX_EXPONENT = 40;
+    private static final int NUM_BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    // Each stripe is its buckets, then the sum and the largest value
+    private static final int SUM = NUM_BUCKETS;
+    private static final int MAX = NUM_BUCKETS + 1;
+    private static final int STRIPE_SIZE = NUM_BUCKETS + 2;
+
+    private final AtomicLongArray _stripes;
+    private final int _stripeMask;
+
+    /**
+     * A histogram striped for every core.
+     */
+    public Histogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * A histogram with about the given number of stripes; 1 for a histogram
+     * only one thread records into.
+     */
+    public Histogram(int stripes) {
+        int numStripes = Integer.highestOneBit(Math.max(stripes, 1) * 2 - 1);
+        _stripes = new AtomicLongArray(numStripes * STRIPE_SIZE);
+        _stripeMask = numStripes - 1;
+    }
+
+    public void record(long value) {
+        if(value < 0) { value = 0; }
+        int stripe = ((int) Thread.currentThread().getId() & _stripeMask) * STRIPE_SIZE;
+        _stripes.incrementAndGet(stripe + bucketOf(value));
+        _stripes.addAndGet(stripe + SUM, value);
+        long max;
+        while(value > (max = _stripes.get(stripe + MAX))) {
+            if(_stripes.compareAndSet(stripe + MAX, max, value)) { break; }
+        }
+    }
+
+    /**
+     * Adds everything recorded in the other histogram to this one.
+     */
+    public void add(Histogram other) {
+        long[] counts = other.getCounts();
+        for(int i = 0; i < NUM_BUCKETS; i++) {
+            if(counts[i] != 0) { _stripes.addAndGet(i, counts[i]); }
+        }
+        _stripes.addAndGet(SUM, other.getSum());
+        long otherMax = other.getMax();
+        long max;
+        while(otherMax > (max = _stripes.get(MAX))) {
+            if(_stripes.compareAndSet(MAX, max, otherMax)) { break; }
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for(long bucketCount : getCounts()) {
+            count += bucketCount;
+        }
+        return count;
+    }
+
+    public long getSum() {
+        long sum = 0;
+        for(int stripe = 0; stripe < _stripes.length(); stripe += STRIPE_SIZE) {
+            sum += _stripes.get(stripe + SUM);
+        }
+        return sum;
+    }
+
+    public long getMax() {
+        long max = 0;
+        for(int stripe = 0; stripe < _stripes.length(); stripe += STRIPE_SIZE) {
+            max = Math.max(max, _stripes.get(stripe + MAX));
+        }
+        return max;
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * The value the given fraction of recorded values are at or below,
+     * rounded up to the top of its bucket.
+     */
+    public long getPercentile(double fraction) {
+        long[] counts = getCounts();
+        long count = 0;
+        for(long bucketCount : counts) {
+            count += bucketCount;
+        }
+        if(count == 0) { return 0; }
+        long max = getMax();
+        long rank = Math.max((long) Math.ceil(fraction * count), 1);
+        long seen = 0;
+        for(int i = 0; i < NUM_BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= rank) { return Math.min(upperBoundOf(i), max); }
+        }
+        return max;
+    }
+
+    private long[] getCounts() {
+        long[] counts = new long[NUM_BUCKETS];
+        for(int stripe = 0; stripe < _stripes.length(); stripe += STRIPE_SIZE) {
+            for(int i = 0; i < NUM_BUCKETS; i++) {
+                counts[i] += _stripes.get(stripe + i);
+            }
+        }
+        return counts;
+    }
+
+    private static int bucketOf(long value) {
+        if(value < SUB_BUCKETS) { return (int) value; }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if(bucket < SUB_BUCKETS) { return bucket; }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,140 @@
+package com.poker;
+
+import java.util.Arrays;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A growable byte array that a message is encoded into before it is written.
+ * Each ClientWriter keeps one and reuses it for every message, so encoding a
+ * message allocates nothing once the buffer has grown to fit.
+ */
+final class MessageBuffer {
+    private byte[] _bytes = new byte[1024];
+    private int _length;
+
+    byte[] array() {
+        return _bytes;
+    }
+
+    int length() {
+        return _length;
+    }
+
+    void clear() {
+        _length = 0;
+    }
+
+    void putByte(int b) {
+        ensureRoom(1);
+        _bytes[_length++] = (byte) b;
+    }
+
+    void putBytes(byte[] bytes) {
+        ensureRoom(bytes.length);
+        System.arraycopy(bytes, 0, _bytes, _length, bytes.length);
+        _length += bytes.length;
+    }
+
+    void putLong(long value) {
+        ensureRoom(8);
+        for(int shift = 56; shift >= 0; shift -= 8) {
+            _bytes[_length++] = (byte) (value >>> shift);
+        }
+    }
+
+    void putShortAt(int index, int value) {
+        _bytes[index] = (byte) (value >>> 8);
+        _bytes[index + 1] = (byte) value;
+    }
+
+    void putIntAt(int index, int value) {
+        _bytes[index] = (byte) (value >>> 24);
+        _bytes[index + 1] = (byte) (value >>> 16);
+        _bytes[index + 2] = (byte) (value >>> 8);
+        _bytes[index + 3] = (byte) value;
+    }
+
+    /**
+     * Leaves room for a value to be filled in later, and returns where.
+     */
+    int skip(int numBytes) {
+        ensureRoom(numBytes);
+        int index = _length;
+        _length += numBytes;
+        return index;
+    }
+
+    /**
+     * Writes the decimal digits of the value, like Long.toString would.
+     */
+    void putDigits(long value) {
+        if(value == Long.MIN_VALUE) {
+            putAscii(Long.toString(value));
+            return;
+        }
+        ensureRoom(20);
+        if(value < 0) {
+            _bytes[_length++] = '-';
+            value = -value;
+        }
+        int numDigits = 1;
+        for(long rest = value / 10; rest != 0; rest /= 10) {
+            numDigits++;
+        }
+        int i = _length + numDigits;
+        _length = i;
+        do {
+            _bytes[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while(value != 0);
+    }
+
+    /**
+     * Encodes the text as UTF-8, with '?' for any unpaired surrogate.
+     */
+    void putUtf8(String text) {
+        int numChars = text.length();
+        ensureRoom(numChars * 3);
+        for(int i = 0; i < numChars; i++) {
+            char c = text.charAt(i);
+            if(c < 0x80) {
+                _bytes[_length++] = (byte) c;
+            }
+            else if(c < 0x800) {
+                _bytes[_length++] = (byte) (0xC0 | (c >> 6));
+                _bytes[_length++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if(Character.isHighSurrogate(c) && i + 1 < numChars && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                _bytes[_length++] = (byte) (0xF0 | (codePoint >> 18));
+                _bytes[_length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                _bytes[_length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                _bytes[_length++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if(Character.isSurrogate(c)) {
+                _bytes[_length++] = '?';
+            }
+            else {
+                _bytes[_length++] = (byte) (0xE0 | (c >> 12));
+                _bytes[_length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                _bytes[_length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void putAscii(String text) {
+        ensureRoom(text.length());
+        for(int i = 0; i < text.length(); i++) {
+            _bytes[_length++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void ensureRoom(int numBytes) {
+        if(_length + numBytes > _bytes.length) {
+            _bytes = Arrays.copyOf(_bytes, Math.max(_bytes.length * 2, _length + numBytes));
+        }
+    }
+}
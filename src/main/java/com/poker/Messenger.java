@@ -1,6 +1,8 @@
 package com.poker;
 
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Created by: John Paul Wallway
@@ -12,67 +14,423 @@ import java.io.PrintWriter;
  *
  * The protocol for sending a message requires sending the number of lines that
  * the Client will need to read.
+ *
+ * Clients that asked for the binary protocol get the same message as
+ * BinaryProtocol frames instead. So besides its segments of text, a message
+ * keeps a list of its parts: what each is (plain text, a prompt, a menu
+ * option, a player's stack, a hand, the pot), the segments it came from, and
+ * any numbers it carries.
+ *
+ * A message isn't turned into text until it is sent. Fixed text, like the
+ * menus and prompts, is a Template that was encoded once; names and numbers
+ * are encoded straight into the client's MessageBuffer at that point.
  */
 public class Messenger {
-    StringBuilder _msg = new StringBuilder();
     int _msgLines = 0;
 
+    /**
+     * Text that goes out over and over, encoded to UTF-8 once.
+     */
+    public static final class Template {
+        final String _text;
+        final byte[] _bytes;
+
+        public Template(String text) {
+            _text = text;
+            _bytes = text.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            return _text;
+        }
+    }
+
+    private static final Template NEW_LINE = new Template("\n");
+    private static final Template GREETING = new Template("You have connected to the server....");
+    private static final Template FOLDED = new Template("You have folded. Please wait for the end of the hand.");
+    private static final Template EXITING_GAME = new Template("You are (folding and) exiting the game. Please type \"Enter\"");
+    private static final Template REQUEST_USER = new Template("Please enter your username: ");
+    private static final Template REQUEST_GAME_NAME = new Template("Please enter the name of the game: ");
+    private static final Template REQUEST_GAME_TYPE = new Template("Please enter the type of game (\"five\" for five card, \"holdem\" for Texas Hold'em, \"omaha\" for Omaha): ");
+    private static final Template CLIENT_ERROR = new Template("Invalid client input! ");
+    private static final Template REMOVAL = new Template("You have been removed from the list of available players.");
+    private static final Template FAILED = new Template("Failed to process request! EXITING!!!");
+    private static final Template SEAT_HEADER = new Template("main.com.poker.server.Player Chip Stacks\n\t");
+    private static final Template SEAT_CHIPS = new Template("\n\t\tChips: ");
+    private static final Template SEAT_BET = new Template("\n\t\tBet: ");
+    private static final Template HAND_HEADER = new Template("Your Hand\n");
+    private static final Template POT = new Template("Total Pot: ");
+    private static final Template MIN_BET = new Template("\nMin Bet: ");
+
+    // How big each message sent to a ClientWriter, or broadcast, was in bytes
+    private static final Histogram MESSAGE_SIZES = new Histogram();
+
+    // Kinds of segments
+    private static final byte TEMPLATE_SEGMENT = 0;
+    private static final byte STRING_SEGMENT = 1;
+    private static final byte NUMBER_SEGMENT = 2;
+
+    // Kinds of message parts
+    private static final byte TEXT_PART = 0;
+    private static final byte PROMPT_PART = 1;
+    private static final byte MENU_PART = 2;
+    private static final byte SEAT_PART = 3;
+    private static final byte HAND_PART = 4;
+    private static final byte POT_PART = 5;
+
+    private byte[] _segmentKinds = new byte[64];
+    private Object[] _segments = new Object[64];
+    private long[] _numbers = new long[64];
+    private int _numSegments;
+
+    private byte[] _partKinds = new byte[32];
+    private int[] _partStarts = new int[32];
+    private int[] _partEnds = new int[32];
+    private long[] _partValues = new long[64];
+    private int _numParts;
+
+    private final MessageBuffer _broadcastBuffer = new MessageBuffer();
+
     public void addStringToLine(String words) {
-        _msg.append(words);
+        int start = _numSegments;
+        addSegment(STRING_SEGMENT, words, 0);
+        addPart(TEXT_PART, start, _numSegments, 0, 0);
     }
 
     public void addLineToMsg(String line) {
-        _msg.append(line + "\n");
+        int start = _numSegments;
+        addSegment(STRING_SEGMENT, line, 0);
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
+        addPart(TEXT_PART, start, _numSegments, 0, 0);
+        _msgLines++;
+    }
+
+    public void addLineToMsg(Template line) {
+        int start = _numSegments;
+        addSegment(TEMPLATE_SEGMENT, line, 0);
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
+        addPart(TEXT_PART, start, _numSegments, 0, 0);
         _msgLines++;
     }
 
     public void addGreetingToMsg() {
-        addLineToMsg("You have connected to the server....");
+        addLineToMsg(GREETING);
     }
 
     public void addFoldedToMsg() {
-        addLineToMsg("You have folded. Please wait for the end of the hand.");
+        addLineToMsg(FOLDED);
     }
 
     public void addExitingGame() {
-        addLineToMsg("You are (folding and) exiting the game. Please type \"Enter\"");
+        addLineToMsg(EXITING_GAME);
     }
 
     public void addRequestUserToMsg() {
-        addLineToMsg("Please enter your username: ");
+        addPromptToMsg(REQUEST_USER);
     }
 
     public void addRequestGameNameToMsg() {
-        addLineToMsg("Please enter the name of the game: ");
+        addPromptToMsg(REQUEST_GAME_NAME);
+    }
+
+    public void addRequestGameTypeToMsg() {
+        addPromptToMsg(REQUEST_GAME_TYPE);
     }
 
     public void addClientErrorToMsg(String input) {
-        addLineToMsg("Invalid client input! " + input);
+        int start = _numSegments;
+        addSegment(TEMPLATE_SEGMENT, CLIENT_ERROR, 0);
+        addSegment(STRING_SEGMENT, input, 0);
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
+        addPart(TEXT_PART, start, _numSegments, 0, 0);
+        _msgLines++;
     }
 
     public void addRemovalToMsg() {
-        addLineToMsg("You have been removed from the list of available players.");
+        addLineToMsg(REMOVAL);
     }
 
     public void addFailedToMsg() {
-        addLineToMsg("Failed to process request! EXITING!!!");
+        addLineToMsg(FAILED);
     }
+
+    /**
+     * A line asking the client for an answer.
+     */
+    public void addPromptToMsg(Template prompt) {
+        addTypedLine(PROMPT_PART, TEMPLATE_SEGMENT, prompt);
+    }
+
+    public void addPromptToMsg(String prompt) {
+        addTypedLine(PROMPT_PART, STRING_SEGMENT, prompt);
+    }
+
+    /**
+     * A line telling the client about a command it can type.
+     */
+    public void addMenuOptionToMsg(Template option) {
+        addTypedLine(MENU_PART, TEMPLATE_SEGMENT, option);
+    }
+
+    public void addMenuOptionToMsg(String option) {
+        addTypedLine(MENU_PART, STRING_SEGMENT, option);
+    }
+
+    /**
+     * A player's name, chip stack and bet.
+     */
+    public void addSeatToMsg(String name, long chips, long bet) {
+        addSegment(TEMPLATE_SEGMENT, SEAT_HEADER, 0);
+        addPart(SEAT_PART, _numSegments, _numSegments + 1, chips, bet);
+        addSegment(STRING_SEGMENT, name, 0);
+        addSegment(TEMPLATE_SEGMENT, SEAT_CHIPS, 0);
+        addSegment(NUMBER_SEGMENT, null, chips);
+        addSegment(TEMPLATE_SEGMENT, SEAT_BET, 0);
+        addSegment(NUMBER_SEGMENT, null, bet);
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
+        _msgLines += 4;
+    }
+
+    /**
+     * The cards a player can play with, as card sets, and how they read.
+     */
+    public void addHandToMsg(long cards, long board, String description) {
+        addSegment(TEMPLATE_SEGMENT, HAND_HEADER, 0);
+        addPart(HAND_PART, _numSegments, _numSegments + 1, cards, board);
+        addSegment(STRING_SEGMENT, description, 0);
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
+        _msgLines += 2;
+    }
+
+    public void addPotToMsg(long pot, long minBet) {
+        addPart(POT_PART, _numSegments, _numSegments, pot, minBet);
+        addSegment(TEMPLATE_SEGMENT, POT, 0);
+        addSegment(NUMBER_SEGMENT, null, pot);
+        addSegment(TEMPLATE_SEGMENT, MIN_BET, 0);
+        addSegment(NUMBER_SEGMENT, null, minBet);
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
+        _msgLines += 2;
+    }
+
     // Handle concatenating messages and newline anomaly, regarding line count
     public void addMsgSplit() {
-        _msg.append("\n");
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
         _msgLines++;
     }
 
+    /**
+     * The sizes of the messages sent so far, encoded for their clients. A
+     * broadcast counts once, however many clients it goes to.
+     */
+    public static Histogram getMessageSizes() {
+        return MESSAGE_SIZES;
+    }
+
     public void sendClientMsg(PrintWriter clientOut) {
         // Add line for last new line of messages
         _msgLines++;
-        clientOut.println("" + _msgLines);
-        clientOut.println(_msg.toString());
-        _msg.setLength(0);
+        if(clientOut instanceof ClientWriter) {
+            ClientWriter clientWriter = (ClientWriter) clientOut;
+            boolean writing;
+            synchronized (clientWriter) {
+                MessageBuffer buffer = clientWriter.messageBuffer();
+                if(clientWriter.isBinary()) {
+                    encodeFrames(buffer);
+                }
+                else {
+                    encodeText(buffer);
+                }
+                MESSAGE_SIZES.record(buffer.length());
+                writing = clientWriter.sendMessage();
+            }
+            // Written outside the monitor, so nobody waits on a slow client
+            if(writing) { clientWriter.writePending(); }
+        }
+        else {
+            StringBuilder msg = new StringBuilder();
+            for(int i = 0; i < _numSegments; i++) {
+                appendSegment(msg, i);
+            }
+            clientOut.println("" + _msgLines);
+            clientOut.println(msg.toString());
+        }
+        reset();
+    }
+
+    /**
+     * Drops the message composed so far, for a recipient with nobody to read
+     * it, and starts a new one.
+     */
+    public void discardMsg() {
+        reset();
+    }
+
+    /**
+     * Encodes the message as binary protocol frames, once, for every client
+     * at a table, and starts a new message. Only clients on the binary
+     * protocol are sent broadcasts, so there is no text to encode.
+     */
+    public Broadcast encodeBroadcast() {
+        MessageBuffer buffer = _broadcastBuffer;
+        buffer.clear();
+        encodeFrames(buffer);
+        MESSAGE_SIZES.record(buffer.length());
+        Broadcast broadcast = new Broadcast(Arrays.copyOf(buffer.array(), buffer.length()));
+        reset();
+        return broadcast;
+    }
+
+    private void reset() {
+        Arrays.fill(_segments, 0, _numSegments, null);
+        _numSegments = 0;
+        _numParts = 0;
         _msgLines = 0;
     }
 
     public void addToMsgLineCount(int cnt) {
         _msgLines += cnt;
     }
+
+    private void addTypedLine(byte partKind, byte segmentKind, Object line) {
+        addPart(partKind, _numSegments, _numSegments + 1, 0, 0);
+        addSegment(segmentKind, line, 0);
+        addSegment(TEMPLATE_SEGMENT, NEW_LINE, 0);
+        _msgLines++;
+    }
+
+    private void addSegment(byte kind, Object segment, long number) {
+        if(_numSegments == _segmentKinds.length) {
+            _segmentKinds = Arrays.copyOf(_segmentKinds, _numSegments * 2);
+            _segments = Arrays.copyOf(_segments, _numSegments * 2);
+            _numbers = Arrays.copyOf(_numbers, _numSegments * 2);
+        }
+        _segmentKinds[_numSegments] = kind;
+        _segments[_numSegments] = segment;
+        _numbers[_numSegments] = number;
+        _numSegments++;
+    }
+
+    private void addPart(byte kind, int start, int end, long first, long second) {
+        if(_numParts == _partKinds.length) {
+            _partKinds = Arrays.copyOf(_partKinds, _numParts * 2);
+            _partStarts = Arrays.copyOf(_partStarts, _numParts * 2);
+            _partEnds = Arrays.copyOf(_partEnds, _numParts * 2);
+            _partValues = Arrays.copyOf(_partValues, _numParts * 4);
+        }
+        _partKinds[_numParts] = kind;
+        _partStarts[_numParts] = start;
+        _partEnds[_numParts] = end;
+        _partValues[2 * _numParts] = first;
+        _partValues[2 * _numParts + 1] = second;
+        _numParts++;
+    }
+
+    private void appendSegment(StringBuilder msg, int segment) {
+        switch(_segmentKinds[segment]) {
+            case NUMBER_SEGMENT:
+                msg.append(_numbers[segment]);
+                break;
+            default:
+                msg.append(_segments[segment]);
+        }
+    }
+
+    private void putSegments(MessageBuffer buffer, int start, int end) {
+        for(int i = start; i < end; i++) {
+            switch(_segmentKinds[i]) {
+                case TEMPLATE_SEGMENT:
+                    buffer.putBytes(((Template) _segments[i])._bytes);
+                    break;
+                case STRING_SEGMENT:
+                    buffer.putUtf8((String) _segments[i]);
+                    break;
+                default:
+                    buffer.putDigits(_numbers[i]);
+            }
+        }
+    }
+
+    /**
+     * The line count, then the message, then the new line println would add.
+     */
+    private void encodeText(MessageBuffer buffer) {
+        buffer.putDigits(_msgLines);
+        buffer.putByte('\n');
+        putSegments(buffer, 0, _numSegments);
+        buffer.putByte('\n');
+    }
+
+    /**
+     * Encodes the parts as frames, one per part, except that runs of text,
+     * menu options and seats each share a frame.
+     */
+    private void encodeFrames(MessageBuffer buffer) {
+        int i = 0;
+        while(i < _numParts) {
+            byte kind = _partKinds[i];
+            int frameStart = beginFrame(buffer, opcodeOf(kind));
+            do {
+                putPart(buffer, i);
+                i++;
+            } while(i < _numParts && _partKinds[i] == kind && kind != PROMPT_PART && kind != HAND_PART && kind != POT_PART);
+            endFrame(buffer, frameStart);
+        }
+        endFrame(buffer, beginFrame(buffer, BinaryProtocol.END));
+    }
+
+    private static byte opcodeOf(byte kind) {
+        switch(kind) {
+            case PROMPT_PART: return BinaryProtocol.PROMPT;
+            case MENU_PART: return BinaryProtocol.MENU;
+            case SEAT_PART: return BinaryProtocol.TABLE_STATE;
+            case HAND_PART: return BinaryProtocol.HAND;
+            case POT_PART: return BinaryProtocol.POT;
+            default: return BinaryProtocol.TEXT;
+        }
+    }
+
+    private void putPart(MessageBuffer buffer, int part) {
+        int start = _partStarts[part];
+        int end = _partEnds[part];
+        long first = _partValues[2 * part];
+        long second = _partValues[2 * part + 1];
+        switch(_partKinds[part]) {
+            case MENU_PART:
+                putString(buffer, start, end);
+                break;
+            case SEAT_PART:
+                putString(buffer, start, end);
+                buffer.putLong(first);
+                buffer.putLong(second);
+                break;
+            case HAND_PART:
+                buffer.putLong(first);
+                buffer.putLong(second);
+                putSegments(buffer, start, end);
+                break;
+            case POT_PART:
+                buffer.putLong(first);
+                buffer.putLong(second);
+                break;
+            default:
+                putSegments(buffer, start, end);
+        }
+    }
+
+    static int beginFrame(MessageBuffer buffer, byte opcode) {
+        int frameStart = buffer.skip(4);
+        buffer.putByte(opcode);
+        return frameStart;
+    }
+
+    static void endFrame(MessageBuffer buffer, int frameStart) {
+        buffer.putIntAt(frameStart, buffer.length() - frameStart - BinaryProtocol.HEADER_SIZE);
+    }
+
+    private void putString(MessageBuffer buffer, int start, int end) {
+        int lengthAt = buffer.skip(2);
+        putSegments(buffer, start, end);
+        buffer.putShortAt(lengthAt, buffer.length() - lengthAt - 2);
+    }
 }
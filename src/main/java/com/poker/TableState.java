@@ -0,0 +1,171 @@
+package com.poker;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * The chip stacks, bets and pot at a table, as binary clients are sent them.
+ * Every change to the table is a new version, and a client is sent only what
+ * changed since the version it has, as a TABLE_DELTA frame. A delta from
+ * version 0 has every seat in it, so it stands on its own.
+ *
+ * A game keeps one of these, sets the seats and the pot on its own thread,
+ * and publishes each new version as a Broadcast carrying both the delta and
+ * the whole table. Each client's ClientWriter picks the delta when the client
+ * has the version before it, and the whole table otherwise.
+ *
+ * A client keeps one too, and applies each TABLE_DELTA frame to it. A delta
+ * that doesn't follow on from the client's version isn't applied; the client
+ * then asks for the whole table with RESYNC_REQUEST.
+ */
+public final class TableState {
+    private String[] _names = new String[10];
+    private long[] _chips = new long[10];
+    private long[] _bets = new long[10];
+    private boolean[] _changed = new boolean[10];
+    private int _numSeats;
+    private long _pot;
+    private long _minBet;
+    private boolean _dirty;
+    private long _version;
+    private Broadcast _latest;
+    private final MessageBuffer _buffer = new MessageBuffer();
+
+    public long getVersion() {
+        return _version;
+    }
+
+    public int getNumSeats() {
+        return _numSeats;
+    }
+
+    public String getName(int seat) {
+        return _names[seat];
+    }
+
+    public long getChips(int seat) {
+        return _chips[seat];
+    }
+
+    public long getBet(int seat) {
+        return _bets[seat];
+    }
+
+    public long getPot() {
+        return _pot;
+    }
+
+    public long getMinBet() {
+        return _minBet;
+    }
+
+    /**
+     * The last version published, or null if there isn't one yet.
+     */
+    public Broadcast getLatest() {
+        return _latest;
+    }
+
+    /**
+     * Sets how many seats are taken. Seats past the new count are dropped.
+     */
+    public void setNumSeats(int numSeats) {
+        if(numSeats == _numSeats) { return; }
+        ensureSeats(numSeats);
+        for(int i = _numSeats; i < numSeats; i++) {
+            _names[i] = null;
+            _changed[i] = true;
+        }
+        _numSeats = numSeats;
+        _dirty = true;
+    }
+
+    public void setSeat(int seat, String name, long chips, long bet) {
+        if(name.equals(_names[seat]) && chips == _chips[seat] && bet == _bets[seat]) { return; }
+        _names[seat] = name;
+        _chips[seat] = chips;
+        _bets[seat] = bet;
+        _changed[seat] = true;
+        _dirty = true;
+    }
+
+    public void setPot(long pot, long minBet) {
+        if(pot == _pot && minBet == _minBet) { return; }
+        _pot = pot;
+        _minBet = minBet;
+        _dirty = true;
+    }
+
+    /**
+     * Makes what was set since the last call a new version, and returns it
+     * for the table. Returns null if nothing changed.
+     */
+    public Broadcast publish(Object table) {
+        if(!_dirty) { return null; }
+        long base = _version;
+        _version++;
+        byte[] delta = encode(base, false);
+        byte[] full = base == 0 ? delta : encode(0, true);
+        Arrays.fill(_changed, 0, _numSeats, false);
+        _dirty = false;
+        _latest = new Broadcast(delta, table, base, _version, full);
+        return _latest;
+    }
+
+    /**
+     * Applies a TABLE_DELTA payload. Returns false, and changes nothing, if
+     * the delta doesn't follow on from this table's version.
+     */
+    public boolean apply(ByteBuffer payload) {
+        long base = payload.getLong();
+        if(base != 0 && base != _version) { return false; }
+        _version = payload.getLong();
+        _pot = payload.getLong();
+        _minBet = payload.getLong();
+        int numSeats = payload.get() & 0xFF;
+        ensureSeats(numSeats);
+        _numSeats = numSeats;
+        while(payload.hasRemaining()) {
+            int seat = payload.get() & 0xFF;
+            _names[seat] = BinaryProtocol.getString(payload);
+            _chips[seat] = payload.getLong();
+            _bets[seat] = payload.getLong();
+        }
+        return true;
+    }
+
+    private byte[] encode(long base, boolean everySeat) {
+        MessageBuffer buffer = _buffer;
+        buffer.clear();
+        int frameStart = Messenger.beginFrame(buffer, BinaryProtocol.TABLE_DELTA);
+        buffer.putLong(base);
+        buffer.putLong(_version);
+        buffer.putLong(_pot);
+        buffer.putLong(_minBet);
+        buffer.putByte(_numSeats);
+        for(int i = 0; i < _numSeats; i++) {
+            if(!everySeat && !_changed[i]) { continue; }
+            buffer.putByte(i);
+            int lengthAt = buffer.skip(2);
+            buffer.putUtf8(_names[i]);
+            buffer.putShortAt(lengthAt, buffer.length() - lengthAt - 2);
+            buffer.putLong(_chips[i]);
+            buffer.putLong(_bets[i]);
+        }
+        Messenger.endFrame(buffer, frameStart);
+        Messenger.endFrame(buffer, Messenger.beginFrame(buffer, BinaryProtocol.END));
+        return Arrays.copyOf(buffer.array(), buffer.length());
+    }
+
+    private void ensureSeats(int numSeats) {
+        if(numSeats <= _names.length) { return; }
+        _names = Arrays.copyOf(_names, numSeats);
+        _chips = Arrays.copyOf(_chips, numSeats);
+        _bets = Arrays.copyOf(_bets, numSeats);
+        _changed = Arrays.copyOf(_changed, numSeats);
+    }
+}
@@ -0,0 +1,176 @@
+package com.poker.client;
+
+import com.poker.BinaryProtocol;
+import com.poker.BinaryProtocol.Frame;
+import com.poker.Consts;
+import com.poker.TableState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A client that asks the server for the binary protocol, see
+ * com.poker.BinaryProtocol. Frames are decoded and printed as they arrive
+ * on their own thread, so unlike PokerClient this one doesn't need to know
+ * how many messages each command gets back.
+ *
+ * The client keeps its own copy of the table, which the server updates with
+ * only what changed. If an update is missed, it asks for the whole table.
+ */
+public class BinaryPokerClient {
+    private final Socket _socket;
+    private final DataInputStream _serverIn;
+    private final PrintWriter _serverOut;
+    // Only used on the reader thread
+    private final TableState _table = new TableState();
+
+    public BinaryPokerClient(InetAddress serverIP) throws IOException {
+        _socket = new Socket(serverIP, Consts.PORT);
+        _serverIn = new DataInputStream(new BufferedInputStream(_socket.getInputStream()));
+        _serverOut = new PrintWriter(new OutputStreamWriter(_socket.getOutputStream(), StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Switches to the binary protocol, then plays until the user quits or
+     * the server hangs up.
+     */
+    public void run() throws IOException {
+        // The greeting is always text
+        System.out.print(readTextMessage());
+        _serverOut.println(BinaryProtocol.REQUEST);
+
+        _serverIn.mark(1);
+        int first = _serverIn.read();
+        _serverIn.reset();
+        if(first >= '0' && first <= '9') {
+            System.out.print(readTextMessage());
+            System.err.println("The server only speaks the text protocol, use PokerClient without \"binary\".");
+            _socket.close();
+            return;
+        }
+
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    while(true) {
+                        printFrame(BinaryProtocol.readFrame(_serverIn));
+                    }
+                } catch (EOFException e) {
+                    System.out.println("Disconnected.");
+                } catch (IOException e) {
+                    if(!_socket.isClosed()) { e.printStackTrace(); }
+                }
+            }
+        };
+        reader.setDaemon(true);
+        reader.start();
+
+        BufferedReader stdIn = new BufferedReader(new InputStreamReader(System.in));
+        String userInput;
+        while(reader.isAlive() && (userInput = stdIn.readLine()) != null) {
+            userInput = userInput.trim();
+            _serverOut.println(userInput);
+            if(userInput.equals("quit")) {
+                try {
+                    reader.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            }
+        }
+        _socket.close();
+    }
+
+    void printFrame(Frame frame) {
+        ByteBuffer payload = frame.getPayload();
+        switch(frame.getOpcode()) {
+            case BinaryProtocol.TEXT:
+                System.out.print(BinaryProtocol.getRemainingString(payload));
+                break;
+            case BinaryProtocol.PROMPT:
+                System.out.println(BinaryProtocol.getRemainingString(payload));
+                break;
+            case BinaryProtocol.MENU:
+                while(payload.hasRemaining()) {
+                    System.out.println(BinaryProtocol.getString(payload));
+                }
+                break;
+            case BinaryProtocol.TABLE_STATE:
+                System.out.println("Chip Stacks");
+                while(payload.hasRemaining()) {
+                    System.out.println("\t" + BinaryProtocol.getString(payload));
+                    System.out.println("\t\tChips: " + payload.getLong());
+                    System.out.println("\t\tBet: " + payload.getLong());
+                }
+                break;
+            case BinaryProtocol.HAND:
+                payload.getLong();
+                payload.getLong();
+                System.out.println("Your Hand");
+                System.out.println(BinaryProtocol.getRemainingString(payload));
+                break;
+            case BinaryProtocol.POT:
+                System.out.println("Total Pot: " + payload.getLong());
+                System.out.println("Min Bet: " + payload.getLong());
+                break;
+            case BinaryProtocol.TABLE_DELTA:
+                if(!_table.apply(payload)) {
+                    _serverOut.println(BinaryProtocol.RESYNC_REQUEST);
+                    break;
+                }
+                System.out.println("Chip Stacks");
+                for(int i = 0; i < _table.getNumSeats(); i++) {
+                    System.out.println("\t" + _table.getName(i));
+                    System.out.println("\t\tChips: " + _table.getChips(i));
+                    System.out.println("\t\tBet: " + _table.getBet(i));
+                }
+                System.out.println("Total Pot: " + _table.getPot());
+                System.out.println("Min Bet: " + _table.getMinBet());
+                break;
+            case BinaryProtocol.END:
+                System.out.println();
+                break;
+            default:
+                // Newer server; skip what we don't know
+                break;
+        }
+    }
+
+    /**
+     * Reads one message of the text protocol: a line count, then the lines.
+     */
+    private String readTextMessage() throws IOException {
+        int numLines = Integer.parseInt(readTextLine().trim());
+        StringBuilder msg = new StringBuilder();
+        for(int i = 0; i < numLines; i++) {
+            msg.append(readTextLine()).append('\n');
+        }
+        return msg.toString();
+    }
+
+    private String readTextLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while((b = _serverIn.read()) != '\n') {
+            if(b < 0) { throw new EOFException(); }
+            if(b != '\r') { line.write(b); }
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,422 @@
+package com.poker.client;
+
+import com.poker.BinaryProtocol;
+import com.poker.TableState;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * One simulated client of a LoadGenerator. It speaks the binary protocol on a
+ * non-blocking socket that its event loop selects on: it registers, creates
+ * or joins its table, and then plays whenever the server asks it to, with the
+ * moves its Strategy picks.
+ *
+ * Each command is timed from when it is sent to the server's answer. For a
+ * move at the table, the answer is the table's broadcast of that move, which
+ * comes back to the player who made it too.
+ */
+final class Bot {
+    // What a timed command was; these index the event loop's histograms
+    static final int REGISTER = 0;
+    static final int NAME = 1;
+    static final int CREATE = 2;
+    static final int GAME_NAME = 3;
+    static final int GAME_TYPE = 4;
+    static final int JOIN = 5;
+    static final int SEATED = 6;
+    static final int BET = 7;
+    static final int BET_AMOUNT = 8;
+    static final int CHECK = 9;
+    static final int FOLD = 10;
+    static final String[] COMMAND_NAMES = {
+            "register", "user name", "create", "game name", "game type", "join", "join until seated",
+            "bet", "bet amount", "check", "fold" };
+
+    private static final int GREETING = 0;
+    private static final int PROTOCOL = 1;
+    private static final int REGISTERING = 2;
+    private static final int NAMING = 3;
+    private static final int CREATING = 4;
+    private static final int NAMING_GAME = 5;
+    private static final int TYPING_GAME = 6;
+    private static final int JOINING = 7;
+    private static final int WAITING_TO_JOIN = 8;
+    private static final int SEATING = 9;
+    private static final int PLAYING = 10;
+    private static final int DONE = 11;
+
+    private static final long JOIN_RETRY_MILLIS = 100;
+
+    /**
+     * Picks a bot's move when it's the bot's turn.
+     */
+    interface Strategy {
+        /**
+         * Returns "check", "fold", "bet <amount>" or "exit". The table's
+         * minimum bet is more than the bot's bet when it has to match it.
+         */
+        String decide(Bot bot, Random random);
+    }
+
+    final String _name;
+    private final String _table;
+    private final boolean _creator;
+    private final Strategy _strategy;
+    private final LoadGenerator.EventLoop _loop;
+    private final Random _random;
+    private SocketChannel _channel;
+    private SelectionKey _key;
+    private ByteBuffer _in = ByteBuffer.allocate(16 * 1024);
+    private final ArrayDeque<ByteBuffer> _out = new ArrayDeque<ByteBuffer>();
+    private final TableState _state = new TableState();
+    private int _phase;
+    private int _greetingCount;
+    private int _greetingLines = -1;
+
+    // The message being read
+    private final StringBuilder _text = new StringBuilder();
+    private String _prompt;
+    private boolean _turnMenu;
+
+    // The command waiting on its answer, and the move waiting on its turn
+    private int _pending = -1;
+    private long _sentNanos;
+    private String _betAmount;
+    private String _deferred;
+    private int _moves;
+    long _wakeAtNanos;
+
+    Bot(String name, String table, boolean creator, Strategy strategy, LoadGenerator.EventLoop loop, long seed) {
+        _name = name;
+        _table = table;
+        _creator = creator;
+        _strategy = strategy;
+        _loop = loop;
+        _random = new Random(seed);
+    }
+
+    /**
+     * The bot's chips and bet, and the table's minimum bet, as of the last
+     * table state the server sent.
+     */
+    long getChips() {
+        int seat = getSeat();
+        return seat < 0 ? 0 : _state.getChips(seat);
+    }
+
+    long getBet() {
+        int seat = getSeat();
+        return seat < 0 ? 0 : _state.getBet(seat);
+    }
+
+    long getMinBet() {
+        return _state.getMinBet();
+    }
+
+    private int getSeat() {
+        for(int i = 0; i < _state.getNumSeats(); i++) {
+            if(_name.equals(_state.getName(i))) { return i; }
+        }
+        return -1;
+    }
+
+    void connect(Selector selector, InetSocketAddress server) throws IOException {
+        _channel = SocketChannel.open();
+        _channel.configureBlocking(false);
+        _channel.socket().setTcpNoDelay(true);
+        _key = _channel.register(selector, SelectionKey.OP_CONNECT, this);
+        if(_channel.connect(server)) { connected(); }
+    }
+
+    void finishConnect() throws IOException {
+        if(_channel.finishConnect()) { connected(); }
+    }
+
+    private void connected() throws IOException {
+        _key.interestOps(SelectionKey.OP_READ);
+        _phase = GREETING;
+        send(BinaryProtocol.REQUEST);
+    }
+
+    void close() {
+        _phase = DONE;
+        try {
+            _channel.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+    }
+
+    boolean isGreeted() {
+        return _phase != GREETING;
+    }
+
+    /**
+     * How many moves the bot has made.
+     */
+    int getMoves() {
+        return _moves;
+    }
+
+    boolean isDone() {
+        return _phase == DONE;
+    }
+
+    /**
+     * Reads what the socket has, and acts on every whole message in it.
+     */
+    void read() throws IOException {
+        if(!_in.hasRemaining()) {
+            ByteBuffer bigger = ByteBuffer.allocate(_in.capacity() * 2);
+            _in.flip();
+            bigger.put(_in);
+            _in = bigger;
+        }
+        if(_channel.read(_in) < 0) {
+            throw new IOException("Server closed the connection");
+        }
+        _in.flip();
+        if(_phase == GREETING) { readGreeting(); }
+        while(_phase != GREETING && _in.remaining() >= BinaryProtocol.HEADER_SIZE) {
+            int length = _in.getInt(_in.position());
+            if(_in.remaining() < BinaryProtocol.HEADER_SIZE + length) { break; }
+            _in.getInt();
+            byte opcode = _in.get();
+            ByteBuffer payload = _in.slice();
+            payload.limit(length);
+            _in.position(_in.position() + length);
+            handleFrame(opcode, payload);
+        }
+        _in.compact();
+    }
+
+    /**
+     * The greeting is always text: a line count, then the lines.
+     */
+    private void readGreeting() {
+        while(_in.hasRemaining()) {
+            byte b = _in.get();
+            if(_greetingLines < 0) {
+                if(b >= '0' && b <= '9') { _greetingCount = _greetingCount * 10 + (b - '0'); }
+                else if(b == '\n') { _greetingLines = _greetingCount; }
+                continue;
+            }
+            if(b == '\n' && --_greetingLines == 0) {
+                _phase = PROTOCOL;
+                _loop.greeted();
+                return;
+            }
+        }
+    }
+
+    private void handleFrame(byte opcode, ByteBuffer payload) throws IOException {
+        switch(opcode) {
+            case BinaryProtocol.TEXT:
+                _text.append(BinaryProtocol.getRemainingString(payload));
+                break;
+            case BinaryProtocol.PROMPT:
+                _prompt = BinaryProtocol.getRemainingString(payload);
+                break;
+            case BinaryProtocol.MENU:
+                while(payload.hasRemaining()) {
+                    if(BinaryProtocol.getString(payload).contains("\"check\"")) { _turnMenu = true; }
+                }
+                break;
+            case BinaryProtocol.TABLE_DELTA:
+                if(!_state.apply(payload)) { send(BinaryProtocol.RESYNC_REQUEST); }
+                break;
+            case BinaryProtocol.END:
+                handleMessage();
+                _text.setLength(0);
+                _prompt = null;
+                _turnMenu = false;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handleMessage() throws IOException {
+        String text = _text.toString();
+        switch(_phase) {
+            case PROTOCOL:
+                sendTimed(REGISTER, "register");
+                _phase = REGISTERING;
+                break;
+            case REGISTERING:
+                answered();
+                sendTimed(NAME, _name);
+                _phase = NAMING;
+                break;
+            case NAMING:
+                answered();
+                if(text.contains("already exists")) { failed(); }
+                else if(_creator) {
+                    sendTimed(CREATE, "create");
+                    _phase = CREATING;
+                }
+                else { join(); }
+                break;
+            case CREATING:
+                answered();
+                sendTimed(GAME_NAME, _table);
+                _phase = NAMING_GAME;
+                break;
+            case NAMING_GAME:
+                answered();
+                if(_prompt == null) { failed(); }
+                else {
+                    sendTimed(GAME_TYPE, "holdem");
+                    _phase = TYPING_GAME;
+                }
+                break;
+            case TYPING_GAME:
+                if(text.contains("Welcome to game: ")) {
+                    answered();
+                    seated();
+                }
+                break;
+            case JOINING:
+                answered();
+                _sentNanos = System.nanoTime();
+                _pending = SEATED;
+                send(_table);
+                _phase = SEATING;
+                break;
+            case SEATING:
+                if(text.contains("Welcome to game: ")) {
+                    answered();
+                    seated();
+                }
+                else if(text.contains("There is no game") || text.contains("This game is full")) {
+                    // The table's creator isn't there yet
+                    _pending = -1;
+                    _phase = WAITING_TO_JOIN;
+                    _loop.schedule(this, JOIN_RETRY_MILLIS);
+                }
+                break;
+            case PLAYING:
+                play(text);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void play(String text) throws IOException {
+        if(_pending == CHECK || _pending == FOLD || _pending == BET_AMOUNT) {
+            if(text.startsWith(_name + " ") || text.contains("You must either match")
+                    || text.contains("You don't have enough chips")) {
+                answered();
+            }
+        }
+        if(_creator && text.startsWith("Showdown")) {
+            _loop.handPlayed();
+        }
+        if(text.contains("exiting the game")) {
+            close();
+            return;
+        }
+        if(_prompt != null && _betAmount != null) {
+            answered();
+            sendTimed(BET_AMOUNT, _betAmount);
+            _betAmount = null;
+        }
+        else if(_turnMenu) {
+            if(_loop.getThinkMillis() > 0) {
+                _deferred = "move";
+                _loop.schedule(this, _loop.getThinkMillis());
+            }
+            else {
+                move();
+            }
+        }
+    }
+
+    private void move() throws IOException {
+        String move = _strategy.decide(this, _random);
+        _moves++;
+        if(move.startsWith("bet ")) {
+            _betAmount = move.substring(4);
+            sendTimed(BET, "bet");
+        }
+        else if(move.equals("check")) { sendTimed(CHECK, "check"); }
+        else if(move.equals("fold")) { sendTimed(FOLD, "fold"); }
+        else { send(move); }
+    }
+
+    private void join() throws IOException {
+        sendTimed(JOIN, "join");
+        _phase = JOINING;
+    }
+
+    private void seated() {
+        _phase = PLAYING;
+        _loop.seated();
+    }
+
+    private void failed() {
+        _loop.failed();
+        close();
+    }
+
+    /**
+     * The time is up that the bot was waiting on: to retry joining, or to
+     * make its move.
+     */
+    void wake() throws IOException {
+        if(_phase == WAITING_TO_JOIN) {
+            join();
+        }
+        else if(_deferred != null) {
+            _deferred = null;
+            move();
+        }
+    }
+
+    private void answered() {
+        if(_pending < 0) { return; }
+        _loop.record(_pending, System.nanoTime() - _sentNanos);
+        _pending = -1;
+    }
+
+    private void sendTimed(int command, String line) throws IOException {
+        _pending = command;
+        _sentNanos = System.nanoTime();
+        send(line);
+    }
+
+    /**
+     * Writes the line now if the socket takes it, and queues the rest.
+     */
+    private void send(String line) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        if(_out.isEmpty()) {
+            _channel.write(bytes);
+            if(!bytes.hasRemaining()) { return; }
+        }
+        _out.add(bytes);
+        _key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    void write() throws IOException {
+        while(!_out.isEmpty()) {
+            _channel.write(_out.peek());
+            if(_out.peek().hasRemaining()) { return; }
+            _out.poll();
+        }
+        _key.interestOps(SelectionKey.OP_READ);
+    }
+}
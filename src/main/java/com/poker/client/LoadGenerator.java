@@ -0,0 +1,349 @@
+package com.poker.client;
+
+import com.poker.Consts;
+import com.poker.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Puts load on a server with many simulated clients, Bots, in one process.
+ * The bots are spread over a few selector event loops, a thread per core, so
+ * tens of thousands of them don't need a thread each. The first bot for each
+ * table creates it, and the rest join it; then they all play until the time
+ * is up. Each bot connects once the ones before it on its loop are greeted,
+ * so the server isn't sent every connection at once.
+ *
+ * At the end it prints how many hands were played a second, and the round
+ * trip latency percentiles of each command.
+ *
+ * Usage: java com.poker.client.LoadGenerator [host] [clients] [players per
+ * table] [seconds] [strategy] [think millis]
+ *
+ * The strategy is "random", or a script of moves separated by commas, like
+ * "check,bet 200,fold", that each bot plays over and over.
+ */
+public class LoadGenerator {
+    private static final String USAGE =
+            "usage: java com.poker.client.LoadGenerator [host] [clients] [players per table] [seconds] [strategy] [think millis]";
+    // Connections on each loop that haven't been greeted yet
+    private static final int MAX_CONNECTING = 64;
+
+    private final InetSocketAddress _server;
+    private final int _numClients;
+    private final int _tableSize;
+    private final long _durationMillis;
+    private final Bot.Strategy _strategy;
+    private final long _thinkMillis;
+    private final EventLoop[] _loops;
+    private final String _runId = Long.toString(System.nanoTime() % 1000000, 36);
+    private volatile boolean _running;
+    private long _elapsedNanos;
+
+    public LoadGenerator(InetSocketAddress server, int numClients, int tableSize, long durationMillis,
+                         String strategy, long thinkMillis, int numLoops) throws IOException {
+        if(tableSize < 1 || tableSize > 10) {
+            throw new IllegalArgumentException("Players per table must be 1 to 10: " + tableSize);
+        }
+        _server = server;
+        _numClients = numClients;
+        _tableSize = tableSize;
+        _durationMillis = durationMillis;
+        _strategy = newStrategy(strategy);
+        _thinkMillis = thinkMillis;
+        _loops = new EventLoop[numLoops];
+        for(int i = 0; i < numLoops; i++) {
+            _loops[i] = new EventLoop();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        try {
+            String host = args.length > 0 ? args[0] : "localhost";
+            int numClients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            int tableSize = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+            long seconds = args.length > 3 ? Long.parseLong(args[3]) : 60;
+            String strategy = args.length > 4 ? args[4] : "random";
+            long thinkMillis = args.length > 5 ? Long.parseLong(args[5]) : 0;
+            LoadGenerator generator = new LoadGenerator(new InetSocketAddress(host, Consts.PORT), numClients,
+                    tableSize, TimeUnit.SECONDS.toMillis(seconds), strategy, thinkMillis,
+                    Runtime.getRuntime().availableProcessors());
+            generator.run();
+            generator.printReport(System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Connects the bots, lets them play for the duration, and closes them.
+     */
+    public void run() throws InterruptedException {
+        for(int i = 0; i < _numClients; i++) {
+            int table = i / _tableSize;
+            EventLoop loop = _loops[i % _loops.length];
+            loop._bots.add(new Bot("bot" + _runId + "-" + i, "load" + _runId + "-" + table,
+                    i % _tableSize == 0, _strategy, loop, i));
+        }
+        _running = true;
+        Thread[] threads = new Thread[_loops.length];
+        long start = System.nanoTime();
+        for(int i = 0; i < _loops.length; i++) {
+            threads[i] = new Thread(_loops[i], "load-generator-" + i);
+            threads[i].start();
+        }
+        Thread.sleep(_durationMillis);
+        _running = false;
+        for(int i = 0; i < _loops.length; i++) {
+            _loops[i]._selector.wakeup();
+            threads[i].join();
+        }
+        _elapsedNanos = System.nanoTime() - start;
+    }
+
+    public long getHandsPlayed() {
+        long hands = 0;
+        for(EventLoop loop : _loops) {
+            hands += loop._hands;
+        }
+        return hands;
+    }
+
+    public int getSeated() {
+        int seated = 0;
+        for(EventLoop loop : _loops) {
+            seated += loop._seated;
+        }
+        return seated;
+    }
+
+    /**
+     * How many times the named command, one of Bot.COMMAND_NAMES, was timed.
+     */
+    public long getCount(String command) {
+        return getLatency(command).getCount();
+    }
+
+    private Histogram getLatency(String command) {
+        Histogram total = new Histogram(1);
+        for(int i = 0; i < Bot.COMMAND_NAMES.length; i++) {
+            if(!Bot.COMMAND_NAMES[i].equals(command)) { continue; }
+            for(EventLoop loop : _loops) {
+                total.add(loop._latencies[i]);
+            }
+        }
+        return total;
+    }
+
+    public void printReport(PrintStream out) {
+        int failed = 0;
+        for(EventLoop loop : _loops) {
+            failed += loop._failed;
+        }
+        double seconds = _elapsedNanos / 1e9;
+        out.println("Clients: " + _numClients + ", seated: " + getSeated() + ", failed: " + failed);
+        out.printf("Hands: %d in %.1f s, %.1f hands/s%n", getHandsPlayed(), seconds, getHandsPlayed() / seconds);
+        out.printf("%-18s %9s %9s %9s %9s %9s %9s%n", "command", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for(String command : Bot.COMMAND_NAMES) {
+            Histogram latency = getLatency(command);
+            if(latency.getCount() == 0) { continue; }
+            out.printf("%-18s %9d %9.2f %9.2f %9.2f %9.2f %9.2f%n", command, latency.getCount(),
+                    latency.getPercentile(0.5) / 1000.0, latency.getPercentile(0.9) / 1000.0,
+                    latency.getPercentile(0.99) / 1000.0, latency.getPercentile(0.999) / 1000.0,
+                    latency.getMax() / 1000.0);
+        }
+    }
+
+    private static Bot.Strategy newStrategy(String strategy) {
+        if(strategy.equals("random")) { return new RandomStrategy(); }
+        String[] script = strategy.split(",");
+        for(String move : script) {
+            if(!move.equals("check") && !move.equals("fold") && !move.equals("exit") && !move.matches("bet \\d+")) {
+                throw new IllegalArgumentException("Not a move: " + move);
+            }
+        }
+        return new ScriptedStrategy(script);
+    }
+
+    /**
+     * Mostly checks or calls, sometimes raises, and sometimes folds.
+     */
+    private static final class RandomStrategy implements Bot.Strategy {
+        public String decide(Bot bot, Random random) {
+            long toCall = bot.getMinBet() - bot.getBet();
+            int roll = random.nextInt(100);
+            if(roll < 10 || toCall > bot.getChips()) { return "fold"; }
+            if(roll < 30 && bot.getChips() > bot.getMinBet()) {
+                long raise = bot.getMinBet() + 1 + random.nextInt(100);
+                return "bet " + Math.min(raise, bot.getChips());
+            }
+            return toCall > 0 ? "bet " + bot.getMinBet() : "check";
+        }
+    }
+
+    /**
+     * Plays the script's moves in turn. A check it can't make is a call.
+     */
+    private static final class ScriptedStrategy implements Bot.Strategy {
+        private final String[] _script;
+
+        ScriptedStrategy(String[] script) {
+            _script = script;
+        }
+
+        public String decide(Bot bot, Random random) {
+            String move = _script[bot.getMoves() % _script.length];
+            long toCall = bot.getMinBet() - bot.getBet();
+            if(toCall > bot.getChips()) { return "fold"; }
+            if(move.equals("check") && toCall > 0) { return "bet " + bot.getMinBet(); }
+            return move;
+        }
+    }
+
+    /**
+     * Selects on a share of the bots' sockets, and keeps the time for any
+     * of them that are waiting. Everything a bot does happens on its loop, so
+     * the counts and histograms here need no locking; they are read once the
+     * loop's thread is done.
+     */
+    final class EventLoop implements Runnable {
+        private final Selector _selector;
+        private final List<Bot> _bots = new ArrayList<Bot>();
+        private final PriorityQueue<Bot> _timers = new PriorityQueue<Bot>(16, new Comparator<Bot>() {
+            public int compare(Bot bot, Bot other) {
+                return Long.compare(bot._wakeAtNanos, other._wakeAtNanos);
+            }
+        });
+        // Latencies in microseconds
+        private final Histogram[] _latencies = new Histogram[Bot.COMMAND_NAMES.length];
+        private int _nextBot;
+        private int _connecting;
+        private long _hands;
+        private int _seated;
+        private int _failed;
+
+        EventLoop() throws IOException {
+            _selector = Selector.open();
+            for(int i = 0; i < _latencies.length; i++) {
+                _latencies[i] = new Histogram(1);
+            }
+        }
+
+        long getThinkMillis() {
+            return _thinkMillis;
+        }
+
+        void record(int command, long nanos) {
+            _latencies[command].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+
+        void greeted() {
+            _connecting--;
+        }
+
+        void seated() {
+            _seated++;
+        }
+
+        void failed() {
+            _failed++;
+        }
+
+        void handPlayed() {
+            _hands++;
+        }
+
+        void schedule(Bot bot, long delayMillis) {
+            bot._wakeAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            _timers.add(bot);
+        }
+
+        public void run() {
+            try {
+                while(_running) {
+                    connectMore();
+                    long timeoutMillis = 0;
+                    if(!_timers.isEmpty()) {
+                        timeoutMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(_timers.peek()._wakeAtNanos - System.nanoTime()), 1);
+                    }
+                    _selector.select(timeoutMillis);
+                    Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                    while(keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                    wakeBots();
+                }
+                for(Bot bot : _bots) {
+                    bot.close();
+                }
+                _selector.close();
+            } catch (ClosedSelectorException e) {
+                // Closing
+            } catch (IOException e) {
+                System.err.println("Load generator loop failed: " + e);
+            }
+        }
+
+        private void connectMore() {
+            while(_connecting < MAX_CONNECTING && _nextBot < _bots.size()) {
+                Bot bot = _bots.get(_nextBot++);
+                _connecting++;
+                try {
+                    bot.connect(_selector, _server);
+                } catch (IOException e) {
+                    fail(bot);
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            Bot bot = (Bot) key.attachment();
+            try {
+                if(key.isValid() && key.isConnectable()) { bot.finishConnect(); }
+                if(key.isValid() && key.isReadable()) { bot.read(); }
+                if(key.isValid() && key.isWritable()) { bot.write(); }
+            } catch (IOException e) {
+                fail(bot);
+            }
+        }
+
+        private void wakeBots() {
+            long now = System.nanoTime();
+            while(!_timers.isEmpty() && _timers.peek()._wakeAtNanos <= now) {
+                Bot bot = _timers.poll();
+                if(bot.isDone()) { continue; }
+                try {
+                    bot.wake();
+                } catch (IOException e) {
+                    fail(bot);
+                }
+            }
+        }
+
+        private void fail(Bot bot) {
+            if(bot.isDone() || !_running) { return; }
+            if(!bot.isGreeted()) { _connecting--; }
+            _failed++;
+            bot.close();
+        }
+    }
+}
@@ -8,13 +8,13 @@ package com.poker.client; /**
  * The only real embedded logic in this class is used to handle the quit and
  * exit commands.
  */
-import main.com.poker.Consts;
+import com.poker.Consts;
 
 import java.io.*;
 import java.net.*;
 
 public class PokerClient {
-    private static final String USAGE = "USAGE:\n\n To connect to the server use: java PokerClient <hostname>";
+    private static final String USAGE = "USAGE:\n\n To connect to the server use: java PokerClient <hostname> [binary]";
 
     private static Socket sendSocket = null;
     private static PrintWriter serverOut = null;
@@ -138,6 +138,10 @@ public class PokerClient {
     public static void main(String[] args) throws IOException {
         validateArgs(args);
         InetAddress serverIP = InetAddress.getByName(args[0]);
+        if(args.length > 1 && args[1].equals("binary")) {
+            new BinaryPokerClient(serverIP).run();
+            return;
+        }
         new PokerClient(serverIP);
     }
 }
@@ -0,0 +1,87 @@
+package com.poker.server;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A set of cards packed into a single long, so it can be passed around and
+ * updated without allocating. Each suit gets its own 16 bit lane, with one
+ * bit per rank, which turns rank and suit masks into a few shifts and ors.
+ *
+ * The methods here are all static and take the set as a plain long;
+ * EMPTY is the set with no cards.
+ */
+public final class CardSet {
+    public static final long EMPTY = 0L;
+    private static final int LANE_BITS = 16;
+    private static final long LANE_MASK = (1L << PokerCard.NUM_RANKS) - 1;
+    public static final long FULL_DECK = LANE_MASK | LANE_MASK << LANE_BITS |
+            LANE_MASK << (2 * LANE_BITS) | LANE_MASK << (3 * LANE_BITS);
+
+    private CardSet() { }
+
+    /**
+     * Returns the single bit that stands for the card with the supplied id.
+     */
+    public static long bit(int card) {
+        return 1L << (PokerCard.suitOf(card) * LANE_BITS + PokerCard.rankOf(card));
+    }
+
+    public static long of(int... cards) {
+        long set = EMPTY;
+        for(int card : cards) {
+            set |= bit(card);
+        }
+        return set;
+    }
+
+    public static long add(long set, int card) {
+        return set | bit(card);
+    }
+
+    public static long remove(long set, int card) {
+        return set & ~bit(card);
+    }
+
+    public static boolean contains(long set, int card) {
+        return (set & bit(card)) != 0;
+    }
+
+    public static int size(long set) {
+        return Long.bitCount(set);
+    }
+
+    /**
+     * Returns a 13 bit mask of the ranks held in the supplied suit.
+     */
+    public static int suitMask(long set, int suit) {
+        return (int) (set >>> (suit * LANE_BITS) & LANE_MASK);
+    }
+
+    /**
+     * Returns a 13 bit mask of the ranks held in any suit.
+     */
+    public static int rankMask(long set) {
+        return (int) ((set | set >>> LANE_BITS | set >>> (2 * LANE_BITS) | set >>> (3 * LANE_BITS)) & LANE_MASK);
+    }
+
+    /**
+     * Returns the id of the lowest card in the set, or -1 if it is empty.
+     * Together with remove, this walks a set without an iterator.
+     */
+    public static int firstCard(long set) {
+        if(set == EMPTY) { return -1; }
+        int bit = Long.numberOfTrailingZeros(set);
+        return (bit / LANE_BITS) * PokerCard.NUM_RANKS + bit % LANE_BITS;
+    }
+
+    public static String toString(long set) {
+        StringBuilder result = new StringBuilder("[");
+        for(long rest = set; rest != EMPTY; rest &= rest - 1) {
+            if(rest != set) { result.append(", "); }
+            result.append(PokerCard.of(firstCard(rest)));
+        }
+        return result.append("]").toString();
+    }
+}
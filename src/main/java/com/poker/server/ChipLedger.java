@@ -0,0 +1,435 @@
+package com.poker.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Every player's chip balance, kept in a write-ahead log so it outlives the
+ * server. Each chip movement, a bet or a win, is an entry: a sequence number,
+ * the player's name, the change, and why, with a checksum. Recording an
+ * entry updates the balance at once and queues the entry; one committer
+ * thread writes whatever has queued up and syncs it to disk once, as soon as
+ * the batch is full or the commit window has passed since its first entry.
+ * Thousands of bets a second cost a few hundred syncs, and no game waits on
+ * the disk.
+ *
+ * Every so often the committer writes a snapshot of all the balances it has
+ * committed, and starts a new log file; older files are then deleted. Opening
+ * the ledger loads the latest snapshot and replays the log after it, ignoring
+ * a last entry that was only partly written.
+ */
+public final class ChipLedger {
+    public static final long STARTING_CHIPS = 10000;
+    // Why chips moved
+    public static final int OPEN = 0;
+    public static final int BET = 1;
+    public static final int WIN = 2;
+
+    private static final String WAL_PREFIX = "wal-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final File _dir;
+    private final long _commitWindowNanos;
+    private final int _maxBatch;
+    private final long _snapshotEvery;
+    // Balances as of every recorded entry, for the games
+    private final ConcurrentHashMap<String, AtomicLong> _balances = new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentLinkedQueue<Entry> _entries = new ConcurrentLinkedQueue<Entry>();
+    private final AtomicLong _nextSeq = new AtomicLong();
+    private final Thread _committer;
+    private volatile boolean _committerIdle;
+    private volatile boolean _closed;
+    private final Object _commitLock = new Object();
+    private long _committedSeq;
+    // Only the committer touches these: balances as of the last synced entry,
+    // the open log file, and what has been written since the last snapshot
+    private final HashMap<String, Long> _committedBalances = new HashMap<String, Long>();
+    private FileChannel _wal;
+    private ByteBuffer _batch = ByteBuffer.allocateDirect(64 * 1024);
+    private final CRC32 _crc = new CRC32();
+    private long _sinceSnapshot;
+    private volatile long _numSyncs;
+    private long _replayedSeq;
+
+    /**
+     * Opens the ledger in the directory, creating it if needed, and rebuilds
+     * the balances from the latest snapshot and the log after it.
+     */
+    public ChipLedger(File dir, long commitWindowMillis, int maxBatch, long snapshotEvery) throws IOException {
+        if(!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Couldn't create " + dir);
+        }
+        _dir = dir;
+        _commitWindowNanos = TimeUnit.MILLISECONDS.toNanos(commitWindowMillis);
+        _maxBatch = maxBatch;
+        _snapshotEvery = snapshotEvery;
+
+        long lastSeq = recover();
+        _nextSeq.set(lastSeq + 1);
+        _committedSeq = lastSeq;
+
+        _committer = new Thread(new Runnable() {
+            public void run() {
+                commitEntries();
+            }
+        }, "poker-chip-ledger");
+        _committer.setDaemon(true);
+        _committer.start();
+    }
+
+    public ChipLedger(File dir) throws IOException {
+        this(dir, 5, 1024, 100000);
+    }
+
+    /**
+     * The player's balance, opening an account with the starting chips if
+     * they don't have one yet.
+     */
+    public long openAccount(String name) {
+        AtomicLong balance = _balances.get(name);
+        if(balance == null && _balances.putIfAbsent(name, new AtomicLong()) == null) {
+            record(name, STARTING_CHIPS, OPEN);
+        }
+        return _balances.get(name).get();
+    }
+
+    /**
+     * The player's balance, or null if they have no account.
+     */
+    public Long getBalance(String name) {
+        AtomicLong balance = _balances.get(name);
+        return balance == null ? null : balance.get();
+    }
+
+    /**
+     * Moves chips in or out of the player's account, and returns the entry's
+     * sequence number. The entry is durable once sync has returned for it.
+     */
+    public long record(String name, long amount, int reason) {
+        AtomicLong balance = _balances.get(name);
+        if(balance == null) {
+            _balances.putIfAbsent(name, new AtomicLong());
+            balance = _balances.get(name);
+        }
+        long seq;
+        // Numbered and queued together, so the log is in sequence order
+        synchronized (_entries) {
+            seq = _nextSeq.getAndIncrement();
+            _entries.offer(new Entry(seq, name, amount, reason));
+        }
+        balance.addAndGet(amount);
+        if(_committerIdle) {
+            LockSupport.unpark(_committer);
+        }
+        return seq;
+    }
+
+    /**
+     * Waits until the entry with the given sequence number is on disk.
+     */
+    public void sync(long seq) throws InterruptedException {
+        LockSupport.unpark(_committer);
+        synchronized (_commitLock) {
+            while(_committedSeq < seq) {
+                _commitLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Commits everything recorded so far, writes a snapshot, and stops the
+     * committer.
+     */
+    public void close() throws InterruptedException {
+        _closed = true;
+        LockSupport.unpark(_committer);
+        _committer.join();
+    }
+
+    long getSyncCount() {
+        return _numSyncs;
+    }
+
+    private void commitEntries() {
+        List<Entry> batch = new ArrayList<Entry>(_maxBatch);
+        try {
+            while(true) {
+                Entry first = _entries.poll();
+                if(first == null) {
+                    if(_closed && _entries.isEmpty()) { break; }
+                    _committerIdle = true;
+                    if(_entries.isEmpty() && !_closed) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    _committerIdle = false;
+                    continue;
+                }
+                batch.add(first);
+                // Gather whatever else comes in within the window
+                long deadline = System.nanoTime() + _commitWindowNanos;
+                while(batch.size() < _maxBatch) {
+                    Entry entry = _entries.poll();
+                    if(entry != null) {
+                        batch.add(entry);
+                        continue;
+                    }
+                    long waitNanos = deadline - System.nanoTime();
+                    if(waitNanos <= 0 || _closed) { break; }
+                    _committerIdle = true;
+                    if(_entries.isEmpty()) {
+                        LockSupport.parkNanos(this, waitNanos);
+                    }
+                    _committerIdle = false;
+                }
+                commit(batch);
+                batch.clear();
+                if(_sinceSnapshot >= _snapshotEvery) {
+                    snapshot();
+                }
+            }
+            if(_sinceSnapshot > 0) {
+                snapshot();
+            }
+            _wal.close();
+        } catch (IOException e) {
+            System.err.println("Chip ledger stopped: " + e.getMessage());
+        }
+    }
+
+    private void commit(List<Entry> batch) throws IOException {
+        _batch.clear();
+        for(Entry entry : batch) {
+            byte[] name = entry._name.getBytes(StandardCharsets.UTF_8);
+            int size = 8 + 8 + 1 + 2 + name.length + 4;
+            if(_batch.remaining() < size) {
+                writeBatch();
+                if(_batch.capacity() < size) { _batch = ByteBuffer.allocateDirect(size); }
+            }
+            int start = _batch.position();
+            _batch.putLong(entry._seq);
+            _batch.putLong(entry._amount);
+            _batch.put((byte) entry._reason);
+            _batch.putShort((short) name.length);
+            _batch.put(name);
+            _batch.putInt(checksum(_batch, start, _batch.position() - start));
+        }
+        writeBatch();
+        _wal.force(false);
+        _numSyncs++;
+
+        for(Entry entry : batch) {
+            Long balance = _committedBalances.get(entry._name);
+            _committedBalances.put(entry._name, (balance == null ? 0L : balance) + entry._amount);
+        }
+        _sinceSnapshot += batch.size();
+        synchronized (_commitLock) {
+            _committedSeq = batch.get(batch.size() - 1)._seq;
+            _commitLock.notifyAll();
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        _batch.flip();
+        while(_batch.hasRemaining()) {
+            _wal.write(_batch);
+        }
+        _batch.clear();
+    }
+
+    private int checksum(ByteBuffer buffer, int start, int length) {
+        _crc.reset();
+        for(int i = start; i < start + length; i++) {
+            _crc.update(buffer.get(i));
+        }
+        return (int) _crc.getValue();
+    }
+
+    /**
+     * Writes the committed balances to a new snapshot, starts a new log file
+     * after it, and deletes the files the snapshot replaces.
+     */
+    private void snapshot() throws IOException {
+        long seq;
+        synchronized (_commitLock) {
+            seq = _committedSeq;
+        }
+        File snapshot = numberedFile(SNAPSHOT_PREFIX, seq);
+        File temp = new File(_dir, snapshot.getName() + ".tmp");
+        FileOutputStream file = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+            out.writeLong(seq);
+            out.writeInt(_committedBalances.size());
+            for(Map.Entry<String, Long> balance : _committedBalances.entrySet()) {
+                out.writeUTF(balance.getKey());
+                out.writeLong(balance.getValue());
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        finally {
+            file.close();
+        }
+        Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+        _wal.close();
+        openWal(seq + 1);
+        for(File old : listFiles(WAL_PREFIX)) {
+            if(fileSeq(old, WAL_PREFIX) <= seq) { old.delete(); }
+        }
+        for(File old : listFiles(SNAPSHOT_PREFIX)) {
+            if(fileSeq(old, SNAPSHOT_PREFIX) < seq) { old.delete(); }
+        }
+        _sinceSnapshot = 0;
+    }
+
+    /**
+     * Loads the latest snapshot and replays the log after it. Returns the
+     * last sequence number found.
+     */
+    private long recover() throws IOException {
+        long lastSeq = 0;
+        File[] snapshots = listFiles(SNAPSHOT_PREFIX);
+        if(snapshots.length > 0) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(snapshots[snapshots.length - 1])));
+            try {
+                lastSeq = in.readLong();
+                int numBalances = in.readInt();
+                for(int i = 0; i < numBalances; i++) {
+                    _committedBalances.put(in.readUTF(), in.readLong());
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+
+        File[] wals = listFiles(WAL_PREFIX);
+        for(int i = 0; i < wals.length; i++) {
+            long validLength = replay(wals[i], lastSeq);
+            lastSeq = Math.max(lastSeq, _replayedSeq);
+            if(i == wals.length - 1) {
+                // Carry on in the last file, after its last whole entry
+                _wal = new RandomAccessFile(wals[i], "rw").getChannel();
+                _wal.truncate(validLength);
+                _wal.position(validLength);
+            }
+        }
+        if(_wal == null) {
+            openWal(lastSeq + 1);
+        }
+
+        for(Map.Entry<String, Long> balance : _committedBalances.entrySet()) {
+            _balances.put(balance.getKey(), new AtomicLong(balance.getValue()));
+        }
+        return lastSeq;
+    }
+
+    /**
+     * Applies the file's entries after the given sequence number, and returns
+     * how many bytes of whole, valid entries it holds. The last sequence
+     * number applied is left in _replayedSeq.
+     */
+    private long replay(File wal, long afterSeq) throws IOException {
+        _replayedSeq = afterSeq;
+        byte[] bytes = Files.readAllBytes(wal.toPath());
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long validLength = 0;
+        try {
+            while(buffer.remaining() >= 8 + 8 + 1 + 2) {
+                int start = buffer.position();
+                long seq = buffer.getLong();
+                long amount = buffer.getLong();
+                buffer.get();
+                int nameLength = buffer.getShort() & 0xFFFF;
+                if(buffer.remaining() < nameLength + 4) { break; }
+                String name = new String(bytes, buffer.position(), nameLength, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + nameLength);
+                int end = buffer.position();
+                if(buffer.getInt() != checksum(buffer, start, end - start)) { break; }
+                validLength = buffer.position();
+                if(seq <= afterSeq) { continue; }
+                Long balance = _committedBalances.get(name);
+                _committedBalances.put(name, (balance == null ? 0L : balance) + amount);
+                _replayedSeq = seq;
+                _sinceSnapshot++;
+            }
+        } catch (RuntimeException e) {
+            throw new EOFException("Damaged chip ledger entry in " + wal + ": " + e);
+        }
+        return validLength;
+    }
+
+    private void openWal(long firstSeq) throws IOException {
+        _wal = new RandomAccessFile(numberedFile(WAL_PREFIX, firstSeq), "rw").getChannel();
+        _wal.position(_wal.size());
+    }
+
+    private File numberedFile(String prefix, long seq) {
+        return new File(_dir, String.format("%s%020d", prefix, seq));
+    }
+
+    private static long fileSeq(File file, String prefix) {
+        return Long.parseLong(file.getName().substring(prefix.length()));
+    }
+
+    /**
+     * The log or snapshot files, oldest first.
+     */
+    private File[] listFiles(final String prefix) {
+        File[] files = _dir.listFiles(new FilenameFilter() {
+            public boolean accept(File parent, String name) {
+                return name.startsWith(prefix) && !name.endsWith(".tmp");
+            }
+        });
+        if(files == null) { return new File[0]; }
+        // The zero padded sequence number sorts by name
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static final class Entry {
+        final long _seq;
+        final String _name;
+        final long _amount;
+        final int _reason;
+
+        Entry(long seq, String name, long amount, int reason) {
+            _seq = seq;
+            _name = name;
+            _amount = amount;
+            _reason = reason;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.poker.server;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Estimates each player's Hold'em equity by dealing random run outs of the
+ * board from the cards nobody holds, e.g. to show "all-in equity" at a table.
+ *
+ * A calculation runs on a ForkJoinPool, never on the caller's thread. It
+ * proceeds in rounds: every worker deals a batch of run outs with its own
+ * random generator and its own copy of the remaining deck, and hands back an
+ * immutable EquityResult. The rounds stop once every player's standard error
+ * is down to the target, or the time budget is spent, whichever comes first.
+ */
+public class EquityCalculator {
+    private static final int RUN_OUTS_PER_BATCH = 4096;
+    private final ForkJoinPool _pool;
+
+    public EquityCalculator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public EquityCalculator(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /**
+     * Starts a calculation and returns straight away. holeCards holds a
+     * CardSet for each player, board the community cards dealt so far, and
+     * deadCards any other cards known to be out of the deck.
+     */
+    public ForkJoinTask<EquityResult> submit(long[] holeCards, long board, long deadCards,
+                                             double targetStandardError, long timeBudgetNanos) {
+        checkCards(holeCards, board, deadCards);
+        return _pool.submit(new Calculation(holeCards.clone(), board, deadCards,
+                targetStandardError, timeBudgetNanos, _pool.getParallelism()));
+    }
+
+    /**
+     * Runs a calculation and waits for its result.
+     */
+    public EquityResult calculate(long[] holeCards, long board, long deadCards,
+                                  double targetStandardError, long timeBudgetNanos) {
+        return submit(holeCards, board, deadCards, targetStandardError, timeBudgetNanos).join();
+    }
+
+    /**
+     * Makes sure no card is in two places, and the board isn't over full.
+     */
+    static void checkCards(long[] holeCards, long board, long deadCards) {
+        if(holeCards.length < 2) {
+            throw new IllegalArgumentException("Equity needs at least two players");
+        }
+        if(CardSet.size(board) > OmahaEvaluator.NUM_BOARD_CARDS) {
+            throw new IllegalArgumentException("The board holds at most five cards: " + CardSet.toString(board));
+        }
+        long seen = board;
+        if((seen & deadCards) != 0) {
+            throw new IllegalArgumentException("Dead cards are on the board: " + CardSet.toString(seen & deadCards));
+        }
+        seen |= deadCards;
+        for(long hole : holeCards) {
+            if(CardSet.size(hole) != HoldemGame.NUM_HOLE_CARDS) {
+                throw new IllegalArgumentException("Each player needs two hole cards: " + CardSet.toString(hole));
+            }
+            if((seen & hole) != 0) {
+                throw new IllegalArgumentException("Cards are already in use: " + CardSet.toString(seen & hole));
+            }
+            seen |= hole;
+        }
+    }
+
+    /**
+     * Returns every card not held, on the board or dead.
+     */
+    static long getRemainingCards(long[] holeCards, long board, long deadCards) {
+        long remaining = CardSet.FULL_DECK & ~board & ~deadCards;
+        for(long hole : holeCards) {
+            remaining &= ~hole;
+        }
+        return remaining;
+    }
+
+    /**
+     * Accumulates the outcome of one complete board into the supplied totals.
+     * strengths is scratch space, one slot per player.
+     */
+    static void addShowdown(long[] holeCards, long board, int[] strengths,
+                            double[] wins, double[] ties, double[] equity, double[] equitySquares) {
+        int best = -1;
+        int numBest = 0;
+        for(int i = 0; i < holeCards.length; i++) {
+            strengths[i] = HandEvaluator.evaluateCardSet(holeCards[i] | board);
+            if(strengths[i] > best) { best = strengths[i]; numBest = 1; }
+            else if(strengths[i] == best) { numBest++; }
+        }
+        double share = 1.0 / numBest;
+        for(int i = 0; i < holeCards.length; i++) {
+            if(strengths[i] != best) { continue; }
+            if(numBest == 1) { wins[i]++; }
+            else { ties[i]++; }
+            equity[i] += share;
+            equitySquares[i] += share * share;
+        }
+    }
+
+    /**
+     * Coordinates the rounds of one calculation.
+     */
+    private static class Calculation extends RecursiveTask<EquityResult> {
+        private static final long serialVersionUID = 1L;
+        private final long[] _holeCards;
+        private final long _board;
+        private final long _deadCards;
+        private final double _targetStandardError;
+        private final long _timeBudgetNanos;
+        private final int _numWorkers;
+
+        Calculation(long[] holeCards, long board, long deadCards, double targetStandardError,
+                    long timeBudgetNanos, int numWorkers) {
+            _holeCards = holeCards;
+            _board = board;
+            _deadCards = deadCards;
+            _targetStandardError = targetStandardError;
+            _timeBudgetNanos = timeBudgetNanos;
+            _numWorkers = numWorkers;
+        }
+
+        @Override
+        protected EquityResult compute() {
+            long deadline = System.nanoTime() + _timeBudgetNanos;
+            long remaining = getRemainingCards(_holeCards, _board, _deadCards);
+            SplittableRandom seeds = new SplittableRandom();
+            Sampler[] samplers = new Sampler[_numWorkers];
+            for(int i = 0; i < _numWorkers; i++) {
+                samplers[i] = new Sampler(_holeCards, _board, remaining, seeds.split());
+            }
+
+            // With the whole board known there is nothing to sample
+            if(CardSet.size(_board) == OmahaEvaluator.NUM_BOARD_CARDS) {
+                return samplers[0].sample(1);
+            }
+
+            EquityResult total = EquityResult.empty(_holeCards.length);
+            Batch[] batches = new Batch[_numWorkers];
+            do {
+                for(int i = 0; i < _numWorkers; i++) {
+                    batches[i] = new Batch(samplers[i]);
+                }
+                invokeAll(batches);
+                for(Batch batch : batches) {
+                    total = total.merge(batch.join());
+                }
+            } while(total.getMaxStandardError() > _targetStandardError && System.nanoTime() < deadline);
+            return total;
+        }
+    }
+
+    /**
+     * One worker's share of a round.
+     */
+    private static class Batch extends RecursiveTask<EquityResult> {
+        private static final long serialVersionUID = 1L;
+        private final Sampler _sampler;
+
+        Batch(Sampler sampler) {
+            _sampler = sampler;
+        }
+
+        @Override
+        protected EquityResult compute() {
+            return _sampler.sample(RUN_OUTS_PER_BATCH);
+        }
+    }
+
+    /**
+     * The state a single worker deals run outs from. Only one Batch uses a
+     * Sampler at a time, and rounds are joined before the next begins.
+     */
+    private static class Sampler {
+        private final long[] _holeCards;
+        private final long _board;
+        private final int _numToDeal;
+        private final int[] _deck;
+        private final SplittableRandom _rand;
+
+        Sampler(long[] holeCards, long board, long remaining, SplittableRandom rand) {
+            _holeCards = holeCards;
+            _board = board;
+            _numToDeal = OmahaEvaluator.NUM_BOARD_CARDS - CardSet.size(board);
+            _deck = new int[CardSet.size(remaining)];
+            int n = 0;
+            for(long rest = remaining; rest != CardSet.EMPTY; rest &= rest - 1) {
+                _deck[n++] = CardSet.firstCard(rest);
+            }
+            _rand = rand;
+        }
+
+        EquityResult sample(int numRunOuts) {
+            int numPlayers = _holeCards.length;
+            int[] strengths = new int[numPlayers];
+            double[] wins = new double[numPlayers];
+            double[] ties = new double[numPlayers];
+            double[] equity = new double[numPlayers];
+            double[] equitySquares = new double[numPlayers];
+            for(int runOut = 0; runOut < numRunOuts; runOut++) {
+                // Partial Fisher-Yates, as in PokerDeck
+                long board = _board;
+                for(int i = 0; i < _numToDeal; i++) {
+                    int index = i + _rand.nextInt(_deck.length - i);
+                    int card = _deck[index];
+                    _deck[index] = _deck[i];
+                    _deck[i] = card;
+                    board = CardSet.add(board, card);
+                }
+                addShowdown(_holeCards, board, strengths, wins, ties, equity, equitySquares);
+            }
+            return new EquityResult(wins, ties, equity, equitySquares, numRunOuts);
+        }
+    }
+}
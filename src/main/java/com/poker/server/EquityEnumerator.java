@@ -0,0 +1,191 @@
+package com.poker.server;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Works out each player's exact Hold'em equity by dealing out every possible
+ * run out of the board, for when EquityCalculator's sampling error won't do,
+ * e.g. settling a disputed all-in.
+ *
+ * The run outs are split across a ForkJoinPool by their lowest card. Each
+ * task fills a batch of boards, ranks every player's hand on the whole batch
+ * at once through HandEvaluator.evaluateCardSets(), and then tallies the
+ * batch. Strengths order hands exactly as PokerHand.compareStrength does.
+ */
+public class EquityEnumerator {
+    private static final int BATCH_SIZE = 1024;
+    private final ForkJoinPool _pool;
+
+    public EquityEnumerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public EquityEnumerator(ForkJoinPool pool) {
+        _pool = pool;
+    }
+
+    /**
+     * Starts an enumeration and returns straight away. The arguments are the
+     * same as for EquityCalculator.
+     */
+    public ForkJoinTask<EquityResult> submit(long[] holeCards, long board, long deadCards) {
+        EquityCalculator.checkCards(holeCards, board, deadCards);
+        long remaining = EquityCalculator.getRemainingCards(holeCards, board, deadCards);
+        int[] deck = new int[CardSet.size(remaining)];
+        int n = 0;
+        for(long rest = remaining; rest != CardSet.EMPTY; rest &= rest - 1) {
+            deck[n++] = CardSet.firstCard(rest);
+        }
+        return _pool.submit(new Enumeration(holeCards.clone(), board, deck));
+    }
+
+    /**
+     * Runs an enumeration and waits for its result.
+     */
+    public EquityResult calculate(long[] holeCards, long board, long deadCards) {
+        return submit(holeCards, board, deadCards).join();
+    }
+
+    /**
+     * Hands out one RunOuts task per possible lowest card of the run out.
+     */
+    private static class Enumeration extends RecursiveTask<EquityResult> {
+        private static final long serialVersionUID = 1L;
+        private final long[] _holeCards;
+        private final long _board;
+        private final int[] _deck;
+
+        Enumeration(long[] holeCards, long board, int[] deck) {
+            _holeCards = holeCards;
+            _board = board;
+            _deck = deck;
+        }
+
+        @Override
+        protected EquityResult compute() {
+            int numToDeal = OmahaEvaluator.NUM_BOARD_CARDS - CardSet.size(_board);
+            if(numToDeal == 0) {
+                return new RunOuts(_holeCards, _board, _deck, 0, -1).compute();
+            }
+            ArrayList<RunOuts> tasks = new ArrayList<RunOuts>();
+            for(int first = 0; first + numToDeal <= _deck.length; first++) {
+                tasks.add(new RunOuts(_holeCards, _board, _deck, numToDeal, first));
+            }
+            EquityResult total = EquityResult.empty(_holeCards.length);
+            for(RunOuts task : invokeAll(tasks)) {
+                total = total.merge(task.join());
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Every run out whose lowest deck index is first.
+     */
+    private static class RunOuts extends RecursiveTask<EquityResult> {
+        private static final long serialVersionUID = 1L;
+        private final long[] _holeCards;
+        private final long _board;
+        private final int[] _deck;
+        private final int _numToDeal;
+        private final int _first;
+
+        private final long[] _boards = new long[BATCH_SIZE];
+        private final long[] _cardSets = new long[BATCH_SIZE];
+        private final int[][] _strengths;
+        private int _batchSize;
+        private double[] _wins, _ties, _equity, _equitySquares;
+        private long _numRunOuts;
+
+        RunOuts(long[] holeCards, long board, int[] deck, int numToDeal, int first) {
+            _holeCards = holeCards;
+            _board = board;
+            _deck = deck;
+            _numToDeal = numToDeal;
+            _first = first;
+            _strengths = new int[holeCards.length][BATCH_SIZE];
+        }
+
+        @Override
+        protected EquityResult compute() {
+            int numPlayers = _holeCards.length;
+            _wins = new double[numPlayers];
+            _ties = new double[numPlayers];
+            _equity = new double[numPlayers];
+            _equitySquares = new double[numPlayers];
+
+            if(_numToDeal == 0) {
+                addBoard(_board);
+            }
+            else {
+                // Walk the combinations of the other cards in lexicographic order
+                int[] index = new int[_numToDeal];
+                for(int i = 0; i < _numToDeal; i++) {
+                    index[i] = _first + i;
+                }
+                while(true) {
+                    long board = _board;
+                    for(int i = 0; i < _numToDeal; i++) {
+                        board = CardSet.add(board, _deck[index[i]]);
+                    }
+                    addBoard(board);
+
+                    int i = _numToDeal - 1;
+                    while(i > 0 && index[i] == _deck.length - _numToDeal + i) { i--; }
+                    if(i == 0) { break; }
+                    index[i]++;
+                    for(int j = i + 1; j < _numToDeal; j++) {
+                        index[j] = index[j - 1] + 1;
+                    }
+                }
+            }
+            finishBatch();
+            return new EquityResult(_wins, _ties, _equity, _equitySquares, _numRunOuts);
+        }
+
+        private void addBoard(long board) {
+            _boards[_batchSize++] = board;
+            if(_batchSize == BATCH_SIZE) { finishBatch(); }
+        }
+
+        /**
+         * Ranks every player on every board in the batch, then tallies it.
+         */
+        private void finishBatch() {
+            for(int player = 0; player < _holeCards.length; player++) {
+                long hole = _holeCards[player];
+                for(int i = 0; i < _batchSize; i++) {
+                    _cardSets[i] = hole | _boards[i];
+                }
+                HandEvaluator.evaluateCardSets(_cardSets, _strengths[player], _batchSize);
+            }
+
+            for(int i = 0; i < _batchSize; i++) {
+                int best = -1;
+                int numBest = 0;
+                for(int player = 0; player < _holeCards.length; player++) {
+                    int strength = _strengths[player][i];
+                    if(strength > best) { best = strength; numBest = 1; }
+                    else if(strength == best) { numBest++; }
+                }
+                double share = 1.0 / numBest;
+                for(int player = 0; player < _holeCards.length; player++) {
+                    if(_strengths[player][i] != best) { continue; }
+                    if(numBest == 1) { _wins[player]++; }
+                    else { _ties[player]++; }
+                    _equity[player] += share;
+                    _equitySquares[player] += share * share;
+                }
+            }
+            _numRunOuts += _batchSize;
+            _batchSize = 0;
+        }
+    }
+}
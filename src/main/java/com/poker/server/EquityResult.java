@@ -0,0 +1,104 @@
+package com.poker.server;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * The outcome of an equity calculation: for each player, in the order their
+ * hole cards were given, how often they won outright, how often they tied,
+ * and their equity, i.e. their expected share of the pot.
+ *
+ * Counts are kept as doubles, so the same type serves both sampled and fully
+ * enumerated results. Objects of this type never change.
+ */
+public class EquityResult {
+    private final double[] _wins;
+    private final double[] _ties;
+    private final double[] _equity;
+    private final double[] _equitySquares;
+    private final long _numRunOuts;
+
+    EquityResult(double[] wins, double[] ties, double[] equity, double[] equitySquares, long numRunOuts) {
+        _wins = wins;
+        _ties = ties;
+        _equity = equity;
+        _equitySquares = equitySquares;
+        _numRunOuts = numRunOuts;
+    }
+
+    static EquityResult empty(int numPlayers) {
+        return new EquityResult(new double[numPlayers], new double[numPlayers],
+                new double[numPlayers], new double[numPlayers], 0);
+    }
+
+    /**
+     * Returns the sum of this and the other result, both over the same players.
+     */
+    EquityResult merge(EquityResult other) {
+        int numPlayers = getNumPlayers();
+        double[] wins = new double[numPlayers];
+        double[] ties = new double[numPlayers];
+        double[] equity = new double[numPlayers];
+        double[] equitySquares = new double[numPlayers];
+        for(int i = 0; i < numPlayers; i++) {
+            wins[i] = _wins[i] + other._wins[i];
+            ties[i] = _ties[i] + other._ties[i];
+            equity[i] = _equity[i] + other._equity[i];
+            equitySquares[i] = _equitySquares[i] + other._equitySquares[i];
+        }
+        return new EquityResult(wins, ties, equity, equitySquares, _numRunOuts + other._numRunOuts);
+    }
+
+    public int getNumPlayers() {
+        return _wins.length;
+    }
+
+    /**
+     * Returns how many boards were sampled or enumerated.
+     */
+    public long getNumRunOuts() {
+        return _numRunOuts;
+    }
+
+    public double getWinProbability(int player) {
+        return _wins[player] / _numRunOuts;
+    }
+
+    public double getTieProbability(int player) {
+        return _ties[player] / _numRunOuts;
+    }
+
+    public double getEquity(int player) {
+        return _equity[player] / _numRunOuts;
+    }
+
+    /**
+     * Returns the standard error of the player's equity, treating the run
+     * outs as independent samples. It is meaningless for exact results.
+     */
+    public double getStandardError(int player) {
+        if(_numRunOuts < 2) { return Double.POSITIVE_INFINITY; }
+        double mean = getEquity(player);
+        double variance = (_equitySquares[player] / _numRunOuts - mean * mean) * _numRunOuts / (_numRunOuts - 1);
+        return Math.sqrt(Math.max(variance, 0) / _numRunOuts);
+    }
+
+    public double getMaxStandardError() {
+        double max = 0;
+        for(int i = 0; i < getNumPlayers(); i++) {
+            max = Math.max(max, getStandardError(i));
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for(int i = 0; i < getNumPlayers(); i++) {
+            result.append(String.format("Player %d: equity %.4f, win %.4f, tie %.4f%n",
+                    i, getEquity(i), getWinProbability(i), getTieProbability(i)));
+        }
+        return result.append(_numRunOuts).append(" run outs").toString();
+    }
+}
@@ -1,9 +1,22 @@
 package com.poker.server;
 
-import main.com.poker.Messenger;
+import com.poker.BinaryProtocol;
+import com.poker.Broadcast;
+import com.poker.ClientWriter;
+import com.poker.Consts;
+import com.poker.Messenger;
+import com.poker.Messenger.Template;
+import com.poker.TableState;
 
-import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by: John Paul Wallway
@@ -14,100 +27,575 @@ import java.util.ArrayList;
  * This class represents a poker game. It manages the round robin-ing of player
  * turns; delegates messages, dealing, and hand ranking tasks; determines 
  * winners and losers, and sequentially handles each players main.com.poker.server.GameCommand.
+ *
+ * This class plays five card hands with a single round of betting. Variants
+ * with community cards, like HoldemGame, override the protected dealing and
+ * showdown methods; the game then runs a betting round for every street.
+ *
+ * A game never waits on a player. Everything that happens to it, a player
+ * joining, a line typed by a player, the pause between hands running out, is
+ * an event run by the game's SerialExecutor, so one game's events run one at a
+ * time while all games share a small pool of threads. Each event moves the
+ * game along, up to the point where it needs another player's input, and
+ * returns.
+ *
+ * A player who doesn't answer can't hold the table up: each turn runs on a
+ * clock. When the action time is up, the player's time bank starts; when
+ * that is spent too, the player checks if they can, or folds. A player whose
+ * connection drops keeps their seat for a grace period, acting by the clock,
+ * and then leaves. All tables' clocks share one TimingWheel.
+ *
+ * Besides what it asks of the player whose turn it is, a game tells everybody
+ * at the table what happens: each bet, check and fold with the pot after it,
+ * players coming and going, and the showdown. These go to the seated players
+ * and to spectators, if they are on the binary protocol; a text client only
+ * reads a message after each line it sends. Each is encoded once, and the
+ * same Broadcast is offered to every recipient's ClientWriter.
+ *
+ * The chip stacks, bets and pot go to binary clients the same way, as a new
+ * version of the game's TableState whenever they change, with only what
+ * changed in it. So unlike a text client, a binary client isn't sent the
+ * whole table before every turn.
+ *
+ * A seat can also be played in process by a PlayerAgent, which is asked for
+ * its move as soon as it's its turn, without messages or a clock. A table of
+ * agents on an executor that runs tasks on the caller's thread plays hands
+ * as fast as they can be dealt and ranked; see Simulator.
  */
 public class Game {
     volatile ArrayList<Player> _players = new ArrayList<Player>();
     private volatile ArrayList<Player> _playersInHand = new ArrayList<Player>();
     private volatile ArrayList<Player> _newPlayerQueue = new ArrayList<Player>();
+    private ArrayList<Player> _spectators = new ArrayList<Player>();
     private ArrayList<Player> _winners = new ArrayList<Player>();
+    // The players in the hand at the showdown, best hand first, and their strengths
+    private final Player[] _showdown = new Player[MAX_PLAYERS];
+    private final int[] _showdownStrengths = new int[MAX_PLAYERS];
     private StringBuilder _lastHandStats = new StringBuilder();
     private volatile Messenger _messenger;
+    // Composes broadcasts, which go out between the messages _messenger composes
+    private final Messenger _broadcaster = new Messenger();
+    private final TableState _tableState = new TableState();
+    private PokerDeck _deck = new PokerDeck();
     private int _actionIndex = 0;
+    private int _turn;
     private boolean _takingBets;
+    private boolean _playing;
+    private Player _currentPlayer;
+    private boolean _awaitingBet;
+    private boolean _agentsActing;
+    // Whether anybody seated or watching is on the binary protocol
+    private boolean _listening;
+    private TimingWheel.Timeout _turnClock;
+    private long _turnId;
+    private boolean _onTimeBank;
+    private long _timeBankStartNanos;
     private int _lastHandMsgLines = 0;
-    private Long _minBet = 0L;
-    private Long _pot = 0L;
-    private Long _lastPot = 0L;
+    private long _minBet = 0L;
+    private long _pot = 0L;
+    // What each of _winners won in the last hand, in the same order
+    private final long[] _winnings = new long[MAX_PLAYERS];
     public static final int MAX_PLAYERS = 10;
+
+    // Command Request Strings
+    private static final Template EXIT = new Template("Type \"exit\" to EXIT GAME");
+    private static final Template FOLD = new Template("Type \"fold\" to FOLD");
+    private static final Template CHECK = new Template("Type \"check\" to CHECK");
+    private static final Template BET = new Template("Type \"bet\" to BET");
+    private static final Template ENTER_BET = new Template("Enter your bet amount: ");
     String _name;
+    // Pause between hands, so players can read the results
+    long _dealDelayMillis = 250;
+    // The turn clock, time bank and disconnect grace period
+    final TurnRules _rules;
+    // How many hands to deal before stopping, and what to do after each one
+    long _handLimit = Long.MAX_VALUE;
+    Runnable _onHandFinished;
+
+    // Threads that all games' events run on, and the timer for pauses and turns
+    private static final ExecutorService TABLES = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory("poker-table-"));
+    private static final TimingWheel TIMER = new TimingWheel("poker-table-timer", 10, 512);
+    // Runs each task on the calling thread, for games played by one thread
+    public static final Executor DIRECT = new Executor() {
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    private final SerialExecutor _events;
+    // Where finished hands are written, if anywhere; set once by Main
+    private static volatile HandHistoryLog _handHistory;
+    private final HandRecorder _recorder = new HandRecorder();
+    private long _handNumber;
+    private long _handsPlayed;
+    // Seats taken or promised to joining players; the lobby reads these
+    private final AtomicInteger _seats = new AtomicInteger();
+    private volatile List<String> _playerNames = Collections.emptyList();
+    private final Runnable _startHand = new Runnable() {
+        public void run() {
+            startHand();
+        }
+    };
+    private final Runnable _queueStartHand = new Runnable() {
+        public void run() {
+            _events.execute(_startHand);
+        }
+    };
 
     public Game(String name, Messenger messenger) {
+        this(name, messenger, TABLES);
+    }
+
+    /**
+     * A game whose events run on the supplied executor, one at a time.
+     */
+    Game(String name, Messenger messenger, Executor executor) {
+        this(name, messenger, executor, TurnRules.DEFAULT);
+    }
+
+    Game(String name, Messenger messenger, Executor executor, TurnRules rules) {
         _name = name;
         _messenger = messenger;
+        _events = new SerialExecutor(executor);
+        _rules = rules;
+    }
+
+    /**
+     * Creates a game of the type the player typed in, or returns null if
+     * there is no such type.
+     */
+    static Game newGame(String type, String name, Messenger messenger) {
+        return newGame(type, name, messenger, TABLES);
+    }
+
+    static Game newGame(String type, String name, Messenger messenger, Executor executor) {
+        return newGame(type, name, messenger, executor, TurnRules.DEFAULT);
+    }
+
+    static Game newGame(String type, String name, Messenger messenger, Executor executor, TurnRules rules) {
+        if(type == null) { return null; }
+        type = type.trim().toLowerCase();
+        if(type.equals("five")) { return new Game(name, messenger, executor, rules); }
+        if(type.equals("holdem")) { return new HoldemGame(name, messenger, executor, rules); }
+        if(type.equals("omaha")) { return new OmahaGame(name, messenger, executor, rules); }
+        return null;
+    }
+
+    /**
+     * Sends every game's finished hands to the log.
+     */
+    static void setHandHistory(HandHistoryLog handHistory) {
+        _handHistory = handHistory;
+    }
+
+    /**
+     * Seats the player who created the game, and starts dealing.
+     */
+    void start(final Player creator) {
+        _events.execute(new Runnable() {
+            public void run() {
+                _messenger.addLineToMsg("You have created a game: " + _name);
+                _newPlayerQueue.add(creator);
+                addNewPlayers();
+                play();
+            }
+        });
     }
 
     /**
      * Add the joining player to a queue. Only really add them to the game at
      * the end of a round.
      */
-    void addPlayerToNewPlayerQueue(Player newPlayer) {
-        _newPlayerQueue.add(newPlayer);
-        if(_players.size() == 0) { addNewPlayers(); }
+    void addPlayerToNewPlayerQueue(final Player newPlayer) {
+        _events.execute(new Runnable() {
+            public void run() {
+                _newPlayerQueue.add(newPlayer);
+                if(_players.size() == 0) { addNewPlayers(); }
+                play();
+            }
+        });
+    }
+
+    /**
+     * A line the player typed. It is acted on when it is the player's turn;
+     * until then it waits, as it did in the player's socket before.
+     */
+    void handleInput(final Player player, final String input) {
+        final long startNanos = System.nanoTime();
+        _events.execute(new Runnable() {
+            public void run() {
+                if(!_players.contains(player) && !_newPlayerQueue.contains(player)) { return; }
+                if(input.trim().equals(BinaryProtocol.RESYNC_REQUEST)) {
+                    resync(player);
+                    return;
+                }
+                if(player != _currentPlayer) {
+                    typedAhead(player, input);
+                    return;
+                }
+                String command = input.trim().toLowerCase();
+                int timed = timedCommandOf(command);
+                if(_awaitingBet) { handleBet(player, command); }
+                else { handleCommand(player, command); }
+                if(timed >= 0) { ServerMetrics.gameCommand(timed, startNanos); }
+            }
+        });
+    }
+
+    /**
+     * Keeps a line the player typed before their turn, unless they have
+     * already typed as many as the game keeps; then it is dropped, and the
+     * player told so.
+     */
+    private void typedAhead(Player player, String input) {
+        if(player._pendingInput.size() < Consts.MAX_PENDING_INPUT) {
+            player._pendingInput.add(input);
+            return;
+        }
+        _messenger.addLineToMsg("Wait for your turn. Ignored: " + input.trim());
+        send(player);
+    }
+
+    /**
+     * Which of the ServerMetrics game commands the line is, or -1. A bet is
+     * timed by its amount, which is when the bet is made.
+     */
+    private int timedCommandOf(String command) {
+        if(_awaitingBet) { return ServerMetrics.BET; }
+        if(command.equals("fold")) { return ServerMetrics.FOLD; }
+        if(command.equals("check")) { return ServerMetrics.CHECK; }
+        if(command.equals("exit")) { return ServerMetrics.EXIT; }
+        return -1;
+    }
+
+    /**
+     * The player's connection is gone. They keep their seat, and act by the
+     * clock, until the grace period is over; then they exit at their turn.
+     */
+    void disconnected(final Player player) {
+        _events.execute(new Runnable() {
+            public void run() {
+                player._connected = false;
+                TIMER.schedule(new Runnable() {
+                    public void run() {
+                        handleInput(player, "exit");
+                    }
+                }, _rules._disconnectGraceMillis);
+            }
+        });
+    }
+
+    /**
+     * Sends the spectator everything that happens at the table from now on,
+     * starting with the table as it is.
+     */
+    void addSpectator(final Player spectator) {
+        _events.execute(new Runnable() {
+            public void run() {
+                if(_spectators.contains(spectator)) { return; }
+                _spectators.add(spectator);
+                updateListeners();
+                sendTableState(spectator);
+            }
+        });
+    }
+
+    /**
+     * Sends the whole table to a binary client that asked for it, after
+     * missing a version of it.
+     */
+    void resync(final Player player) {
+        _events.execute(new Runnable() {
+            public void run() {
+                if(player._out instanceof ClientWriter) {
+                    ((ClientWriter) player._out).forgetTableState();
+                    sendTableState(player);
+                }
+            }
+        });
+    }
+
+    void removeSpectator(final Player spectator) {
+        _events.execute(new Runnable() {
+            public void run() {
+                _spectators.remove(spectator);
+                updateListeners();
+            }
+        });
+    }
+
+    /**
+     * Promises the caller a seat, unless the game is full.
+     */
+    boolean reserveSeat() {
+        int seats;
+        do {
+            seats = _seats.get();
+            if(seats >= MAX_PLAYERS) { return false; }
+        } while(!_seats.compareAndSet(seats, seats + 1));
+        return true;
+    }
+
+    /**
+     * True once every player has left, and nobody is on their way in.
+     */
+    boolean isEmpty() {
+        return _seats.get() == 0;
     }
 
-    boolean canAddPlayer() {
-        return _players.size() + _newPlayerQueue.size() != MAX_PLAYERS;
+    /**
+     * How many seats are taken or promised. Safe to call from any thread.
+     */
+    int getSeatCount() {
+        return _seats.get();
+    }
+
+    /**
+     * The names of the seated players, as of the last player to come or go.
+     * Safe to call from any thread.
+     */
+    List<String> getPlayerNames() {
+        return _playerNames;
+    }
+
+    /**
+     * How many hands the game has finished.
+     */
+    long getHandsPlayed() {
+        return _handsPlayed;
+    }
+
+    /**
+     * The bet to match, and the chips bet so far this hand. Only valid on the
+     * game's thread, e.g. for a PlayerAgent.
+     */
+    long getMinBet() {
+        return _minBet;
+    }
+
+    long getPot() {
+        return _pot;
+    }
+
+    /**
+     * Deals from the deck from now on, e.g. one with a seeded random
+     * generator so a simulation can be played again.
+     */
+    void setDeck(PokerDeck deck) {
+        _deck = deck;
+    }
+
+    private void updatePlayerNames() {
+        ArrayList<String> names = new ArrayList<String>(_players.size());
+        for(Player player : _players) {
+            names.add(player._name);
+        }
+        _playerNames = Collections.unmodifiableList(names);
     }
 
     /**
      * Add all the players waiting to join the game. Clear the waiting queue.
      */
     private void addNewPlayers() {
+        if(_newPlayerQueue.isEmpty()) { return; }
         for(Player newPlayer : _newPlayerQueue) {
+            newPlayer._timeBankMillis = _rules._timeBankMillis;
             _players.add(newPlayer);
+            updateListeners();
             _messenger.addLineToMsg("Welcome to game: " + this._name);
-            _messenger.sendClientMsg(newPlayer._out);
+            send(newPlayer);
+            broadcastEvent(newPlayer._name + " joined the table");
         }
         _newPlayerQueue.clear();
+        updatePlayerNames();
+    }
+
+    /**
+     * Tells everybody at the table what just happened.
+     */
+    private void broadcastEvent(String event) {
+        if(!hasListeners()) { return; }
+        _broadcaster.addLineToMsg(event);
+        broadcast(_broadcaster.encodeBroadcast());
+    }
+
+    /**
+     * Sends everybody at the table what changed in the chip stacks, bets and
+     * pot, if anything did. Returns false if nothing was sent.
+     */
+    private boolean broadcastTableState() {
+        if(!hasListeners()) { return false; }
+        _tableState.setNumSeats(_players.size());
+        for(int i = 0; i < _players.size(); i++) {
+            Player player = _players.get(i);
+            _tableState.setSeat(i, player._name, player._chips, player._bet);
+        }
+        _tableState.setPot(_pot, _minBet);
+        Broadcast state = _tableState.publish(this);
+        if(state == null) { return false; }
+        broadcast(state);
+        return true;
+    }
+
+    /**
+     * Makes sure the player has the table as it is now. Their ClientWriter
+     * sends the whole table if they don't have the version before it.
+     */
+    private void sendTableState(Player player) {
+        if(!broadcastTableState() && _tableState.getLatest() != null) {
+            offer(player, _tableState.getLatest());
+        }
+    }
+
+    private void broadcast(Broadcast broadcast) {
+        for(Player player : _players) {
+            offer(player, broadcast);
+        }
+        for(Player spectator : _spectators) {
+            offer(spectator, broadcast);
+        }
+    }
+
+    private static void offer(Player player, Broadcast broadcast) {
+        if(player._out instanceof ClientWriter) {
+            ((ClientWriter) player._out).offer(broadcast);
+        }
+    }
+
+    /**
+     * Whether anybody at the table would get a broadcast, so nothing is
+     * encoded for a table of text clients or agents.
+     */
+    private boolean hasListeners() {
+        return _listening;
+    }
+
+    /**
+     * Works out hasListeners again, after somebody sits down, leaves or
+     * starts or stops watching. A client can't change protocol while at the
+     * table, since its lines all come to the game.
+     */
+    private void updateListeners() {
+        _listening = false;
+        for(Player player : _players) {
+            if(isListening(player)) { _listening = true; }
+        }
+        for(Player spectator : _spectators) {
+            if(isListening(spectator)) { _listening = true; }
+        }
+    }
+
+    private static boolean isListening(Player player) {
+        return player._out instanceof ClientWriter && ((ClientWriter) player._out).isBinary();
+    }
+
+    /**
+     * Whether anybody at the table, seated or watching, is a client rather
+     * than an agent, so there is somebody to describe the showdown to.
+     */
+    private boolean hasClients() {
+        for(Player player : _players) {
+            if(player._agent == null) { return true; }
+        }
+        return !_spectators.isEmpty();
+    }
+
+    /**
+     * Sends the player the message composed so far. An agent isn't sent
+     * anything, so the message is dropped.
+     */
+    private void send(Player player) {
+        if(player._agent != null) { _messenger.discardMsg(); }
+        else { _messenger.sendClientMsg(player._out); }
     }
 
     /**
      * Create new hands for each player, every round.
      */
     private void deal() {
-        PokerDeck _deck = new PokerDeck();
+        _deck.reset();
+        dealHands(_deck);
+    }
+
+    /**
+     * Deals each player their own cards at the start of a hand.
+     */
+    protected void dealHands(PokerDeck deck) {
         for(Player player : _players) {
-            PokerCard[] hand = new PokerCard[PokerHand.NUM_CARDS];
+            int[] hand = new int[PokerHand.NUM_CARDS];
             for(int i = 0; i < PokerHand.NUM_CARDS; i++) {
-                hand[i] = _deck.dealCard();
+                hand[i] = deck.dealCardId();
             }
             player._hand = new PokerHand(hand);
         }
     }
 
+    /**
+     * Deals the next street of community cards, once a round of betting is
+     * over. Returns false when there are no more streets to deal.
+     */
+    protected boolean dealNextStreet(PokerDeck deck) {
+        return false;
+    }
+
+    /**
+     * The strength of the player's hand at the showdown, as HandEvaluator
+     * gives it: higher is better, and equal strengths tie.
+     */
+    protected int getHandStrength(Player player) {
+        return player._hand.getStrength();
+    }
+
+    /**
+     * Describes the cards the supplied player holds, or can play with.
+     */
+    protected String describeHand(Player player) {
+        return player._hand.toString();
+    }
+
+    /**
+     * The cards the supplied player holds, as a card set.
+     */
+    protected long getHandCards(Player player) {
+        return player._hand.getCardSet();
+    }
+
+    /**
+     * The community cards dealt so far, as a card set.
+     */
+    protected long getBoardCards() {
+        return CardSet.EMPTY;
+    }
+
     private void addPlayersHandToMsg(Player player) {
-        _messenger.addLineToMsg("Your Hand");
-        _messenger.addLineToMsg(player._hand.toString());
+        _messenger.addHandToMsg(getHandCards(player), getBoardCards(), describeHand(player));
         _messenger.addMsgSplit();
     }
 
     private void addPlayerStatus() {
         for(Player player : _players) {
-            _messenger.addLineToMsg("main.com.poker.server.Player Chip Stacks");
-            _messenger.addLineToMsg("\t" + player._name);
-            _messenger.addLineToMsg("\t\tChips: " + player._chips);
-            _messenger.addLineToMsg("\t\tBet: " + player._bet);
+            _messenger.addSeatToMsg(player._name, player._chips, player._bet);
         }
         _messenger.addMsgSplit();
     }
 
     private void addCommandRequest() {
-        _messenger.addLineToMsg("Type \"exit\" to EXIT GAME");
-        _messenger.addLineToMsg("Type \"fold\" to FOLD");
-        _messenger.addLineToMsg("Type \"check\" to CHECK");
-        _messenger.addLineToMsg("Type \"bet\" to BET");
+        _messenger.addMenuOptionToMsg(EXIT);
+        _messenger.addMenuOptionToMsg(FOLD);
+        _messenger.addMenuOptionToMsg(CHECK);
+        _messenger.addMenuOptionToMsg(BET);
         _messenger.addMsgSplit();
     }
 
     private void addBetRequest() {
         _messenger.addLineToMsg("Minimum Bet: " + _minBet);
-        _messenger.addLineToMsg("Enter your bet amount: ");
+        _messenger.addPromptToMsg(ENTER_BET);
     }
 
     private void addTotalPotAndMinBetToMsg() {
         updateMinBetAndPot();
-        _messenger.addLineToMsg("Total Pot: " + _pot);
-        _messenger.addLineToMsg("Min Bet: " + _minBet);
+        _messenger.addPotToMsg(_pot, _minBet);
         _messenger.addMsgSplit();
     }
 
@@ -119,19 +607,36 @@ public class Game {
     }
 
     private void buildLastHandStatsMsg() {
+        // Results nobody was asked to act after, say at a table of agents, are stale
+        _lastHandStats.setLength(0);
+        _lastHandMsgLines = 0;
         _lastHandStats.append("Winning hands\n");
         _lastHandMsgLines++;
         for(Player player : _winners) {
-            _lastHandStats.append("\t\"" + player._name + "\": " + player._hand.toString() + "\n");
+            _lastHandStats.append("\t\"" + player._name + "\": " + describeHand(player) + "\n");
             _lastHandMsgLines++;
         }
         _lastHandStats.append("Losing hands\n");
         _lastHandMsgLines++;
         for(Player player : _playersInHand) {
-            _lastHandStats.append("\t\"" + player._name + "\": " + player._hand.toString() + "\n");
+            _lastHandStats.append("\t\"" + player._name + "\": " + describeHand(player) + "\n");
             _lastHandMsgLines++;
         }
-        _messenger.addLineToMsg("Winners each won: " + _lastPot);
+        _messenger.addLineToMsg(describeWinnings());
+    }
+
+    /**
+     * What the winners of the last hand were paid: one amount if they all
+     * won the same, otherwise each winner's.
+     */
+    private String describeWinnings() {
+        int numWinners = _winners.size();
+        if(_winnings[0] == _winnings[numWinners - 1]) { return "Winners each won: " + _winnings[0]; }
+        StringBuilder won = new StringBuilder("Winners won:");
+        for(int i = 0; i < numWinners; i++) {
+            won.append(i == 0 ? " " : ", ").append(_winners.get(i)._name).append(' ').append(_winnings[i]);
+        }
+        return won.toString();
     }
 
     /**
@@ -154,6 +659,17 @@ public class Game {
         _pot = newPot;
     }
 
+    /**
+     * Open a new round of betting for the players still in the hand. Bets
+     * carry over, so everyone starts the street level with the minimum bet.
+     */
+    private void startNextStreet() {
+        for(Player player : _playersInHand) {
+            player._hasPlayed = false;
+        }
+        _takingBets = true;
+    }
+
     /**
      * Determine whether the round is over
      */
@@ -169,47 +685,94 @@ public class Game {
      * hand stats message, and reset all appropriate member variables.
      */
     private void handleFinishHand() {
-        if(_playersInHand.size() == 0) { return; }
-        Player bestHanded = _playersInHand.get(0);
-
-        for(int i = 1; i < _playersInHand.size(); i++) {
-            if(bestHanded._hand.compareTo(_playersInHand.get(i)._hand) < 0) {
-                bestHanded = _playersInHand.get(i);
-                _winners.clear();
-                _winners.add(bestHanded);
+        ServerMetrics.handCompleted();
+        _handsPlayed++;
+        long pot = _pot;
+        _winners.clear();
+        if(_playersInHand.size() > 0) {
+            if(_playersInHand.size() > 1) {
+                // Run out any streets left, so every hand is complete
+                while(dealNextStreet(_deck)) { }
             }
-            else if(bestHanded._hand.compareTo(_playersInHand.get(i)._hand) == 0) {
-                _winners.add(_playersInHand.get(i));
+            int ranked = rankShowdown();
+            // Everybody tied with the best hand wins, in table order
+            for(int i = 0; i < ranked && _showdownStrengths[i] == _showdownStrengths[0]; i++) {
+                _winners.add(_showdown[i]);
             }
-        }
+            _playersInHand.removeAll(_winners);
 
-        if(_winners.size() == 0) { _winners.add(bestHanded); }
-        _playersInHand.removeAll(_winners);
-
-        _pot = _pot / _winners.size();
-        _lastPot = _pot;
+            // The chips that don't split evenly go one each to the first winners
+            int numWinners = _winners.size();
+            for(int i = 0; i < numWinners; i++) {
+                _winnings[i] = _pot / numWinners + (i < _pot % numWinners ? 1 : 0);
+            }
 
-        buildLastHandStatsMsg();
+            if(hasClients()) {
+                buildLastHandStatsMsg();
+                broadcastEvent("Showdown\n" + _lastHandStats + describeWinnings());
+            }
 
-        // Pay the winners
-        for(Player player : _winners) {
-            player._chips += _pot;
+            // Pay the winners
+            for(int i = 0; i < numWinners; i++) {
+                _winners.get(i).addChips(_winnings[i], ChipLedger.WIN);
+            }
         }
 
+        logHand(pot);
+        if(_onHandFinished != null) { _onHandFinished.run(); }
         resetForDeal();
     }
 
+    /**
+     * Works out each hand in the showdown once, and orders the players by
+     * it, best first, into _showdown; players who tie stay in table order.
+     * Returns how many there are. A player nobody called isn't ranked, so
+     * their cards needn't be complete.
+     */
+    private int rankShowdown() {
+        int count = _playersInHand.size();
+        if(count == 1) {
+            _showdown[0] = _playersInHand.get(0);
+            _showdownStrengths[0] = 0;
+            return 1;
+        }
+        for(int i = 0; i < count; i++) {
+            Player player = _playersInHand.get(i);
+            int strength = getHandStrength(player);
+            int at = i;
+            while(at > 0 && _showdownStrengths[at - 1] < strength) {
+                _showdown[at] = _showdown[at - 1];
+                _showdownStrengths[at] = _showdownStrengths[at - 1];
+                at--;
+            }
+            _showdown[at] = player;
+            _showdownStrengths[at] = strength;
+        }
+        return count;
+    }
+
+    /**
+     * Hands the finished hand to the hand history log, if there is one.
+     */
+    private void logHand(long pot) {
+        HandHistoryLog handHistory = _handHistory;
+        if(handHistory == null) { return; }
+        byte[] record = _recorder.finishHand(++_handNumber, _name, getBoardCards(), pot, _winners, _winnings);
+        if(record != null) {
+            handHistory.append(record);
+        }
+    }
+
+    /**
+     * Sets up the next hand, and deals it once the pause between hands is
+     * over.
+     */
     private void resetForDeal() {
         _pot = 0L;
         _minBet = 0L;
         _takingBets = false;
 
         addNewPlayers();
-        try {
-            Thread.sleep(250);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
         for(Player player : _players) {
             player._bet = 0;
             player._lastBet = 0;
@@ -218,112 +781,273 @@ public class Game {
         }
         _actionIndex++;
         if(_actionIndex >= _players.size()) { _actionIndex = 0; }
-        play();
+
+        if(_dealDelayMillis > 0) {
+            TIMER.schedule(_queueStartHand, _dealDelayMillis);
+        }
+        else {
+            _events.execute(_startHand);
+        }
     }
 
     /**
-     * Command pattern to handle player commands. Delegates the command to one
-     * of 4 inner classes.
+     * Asks the player for their command. A line they typed ahead of their
+     * turn is handled as the answer right away.
      */
-    private void handleCommand(Player player) {
-        String playerInput;
+    private void requestCommand(Player player) {
+        _currentPlayer = player;
+        _awaitingBet = false;
+        if(player._agent != null) {
+            if(!_agentsActing) { actForAgents(); }
+            return;
+        }
         addCommandRequest();
-        _messenger.sendClientMsg(player._out);
+        send(player);
+        handlePendingInput(player);
+    }
+
+    private void handlePendingInput(Player player) {
+        String input = player._pendingInput.poll();
+        if(input != null) {
+            handleInput(player, input);
+        }
+    }
+
+    /**
+     * Command pattern to handle player commands. Delegates the command to one
+     * of 4 inner classes. An empty line passes the turn.
+     */
+    private void handleCommand(Player player, String playerInput) {
+        if(playerInput.equals("")) { endTurn(player); return; }
+        if(playerInput.equals("bet")) { new Bet().execute(player); return; }
+        if(playerInput.equals("fold")) { new Fold().execute(player); return; }
+        if(playerInput.equals("check")) { new Check().execute(player); return; }
+        if(playerInput.equals("exit")) { new ExitGame().execute(player); return; }
+        requestCommand(player);
+    }
 
+    /**
+     * Handle a player's bet command, validate bet amount.
+     */
+    private void handleBet(Player player, String input) {
         try {
-            while((playerInput = player._in.readLine().trim().toLowerCase()) != null && !playerInput.equals("")) {
-                if(playerInput.equals("bet")) { new Bet().execute(player); return; }
-                if(playerInput.equals("fold")) { new Fold().execute(player); return; }
-                if(playerInput.equals("check")) { new Check().execute(player); return; }
-                if(playerInput.equals("exit")) { new ExitGame().execute(player); return; }
-                handleCommand(player);
+            Long playerBet = Long.parseLong(input);
+            if(playerBet > player._chips) {
+                _messenger.addLineToMsg("You don't have enough chips.");
+                requestCommand(player);
+            }
+            else if(playerBet < _minBet) {
+                _messenger.addLineToMsg("You must bet at least: " + _minBet);
+                requestCommand(player);
+            }
+            else {
+                placeBet(player, playerBet);
             }
-        } catch (IOException e) {
-            _messenger.addFailedToMsg();
-            new ExitGame().execute(player);
+        } catch (NumberFormatException e) {
+            _messenger.addClientErrorToMsg(input);
+            requestCommand(player);
         }
     }
 
+    private void placeBet(Player player, long playerBet) {
+        // A raise replaces the player's earlier bet, which comes back first
+        long refund = player._alreadyBet ? player._lastBet : 0L;
+        player._bet = playerBet;
+        player._lastBet = playerBet;
+        player._alreadyBet = true;
+        player.addChips(refund - playerBet, ChipLedger.BET);
+        updateMinBetAndPot();
+        _recorder.addAction(player, HandRecord.BET, playerBet);
+        broadcastEvent(player._name + " bets " + playerBet);
+        broadcastTableState();
+        endTurn(player);
+    }
+
     /**
-     * Handle a player's bet command, validate bet amount.
+     * Asks agents for their moves for as long as it's an agent's turn. An
+     * agent's move that makes it another agent's turn comes back to this
+     * loop, rather than going deeper, so the stack stays flat; and the next
+     * hand is still dealt as an event of its own.
      */
-    private void handleBet(Player player) {
+    private void actForAgents() {
+        _agentsActing = true;
         try {
-            String input;
-            while(( input = player._in.readLine().trim().toLowerCase()) != null) {
-                try {
-                    Long playerBet = Long.parseLong(input);
-                    if(playerBet > player._chips) {
-                        _messenger.addLineToMsg("You don't have enough chips.");
-                        handleCommand(player);
-                    }
-                    else if(playerBet < _minBet) {
-                        _messenger.addLineToMsg("You must bet at least: " + _minBet);
-                        handleCommand(player);
-                    }
-                    else {
-                        if(player._alreadyBet) {
-                            player._chips += player._lastBet;
-                            player._bet = playerBet;
-                            player._lastBet = playerBet;
-                            player._chips -= playerBet;
-                        }
-                        else {
-                            player._bet = playerBet;
-                            player._lastBet = playerBet;
-                            player._chips -= playerBet;
-                            player._alreadyBet = true;
-                        }
-                        updateMinBetAndPot();
-//                        if(!stillTakingBets()) { handleFinishHand(); }
-                        break;
-                    }
-                } catch (NumberFormatException e) {
-                    _messenger.addClientErrorToMsg(input);
-                    handleCommand(player);
-                }
+            Player player;
+            while((player = _currentPlayer) != null && player._agent != null) {
+                handleAgentMove(player, player._agent.act(player, this));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+        finally {
+            _agentsActing = false;
         }
     }
 
     /**
-     * main.com.poker.server.Main turn method. Handles round robin-ing through all of the players in
-     * the game.
+     * Makes the move an agent picked, under the same rules as a client's
+     * command. A move the game wouldn't take folds.
+     */
+    private void handleAgentMove(Player player, long move) {
+        if(move == PlayerAgent.EXIT) { new ExitGame().execute(player); }
+        else if(move == PlayerAgent.CHECK && player._bet >= _minBet) { new Check().execute(player); }
+        else if(move >= _minBet && move <= player._chips) { placeBet(player, move); }
+        else { new Fold().execute(player); }
+    }
+
+    /**
+     * Starts dealing hands, unless the game already is.
      */
     void play() {
-        while(_players.size() != 0) {
-            _playersInHand.clear();
-            _playersInHand.addAll(_players);
-            deal();
-            for(Player player : _players) {
-                PokerHand.sortCardsInHand(player._hand._cards);
+        if(!_playing) {
+            startHand();
+        }
+    }
+
+    /**
+     * Deals a hand to everybody at the table, and asks the first player to
+     * act. Stops dealing once the table is empty.
+     */
+    private void startHand() {
+        _playing = _players.size() != 0 && _handsPlayed < _handLimit;
+        if(!_playing) { return; }
+        _playersInHand.clear();
+        _playersInHand.addAll(_players);
+        deal();
+        if(_handHistory != null) {
+            _recorder.startHand(System.currentTimeMillis());
+            for(Player player : _playersInHand) {
+                _recorder.addSeat(player, getHandCards(player));
             }
+        }
 
-            _takingBets = true;
+        _takingBets = true;
+        _turn = 0;
+        broadcastTableState();
+        requestNextPlayer();
+    }
 
-            int playerIndex;
-            int i = 0;
-            while(_takingBets) {
-                if(_actionIndex + i >= _playersInHand.size()) {
-                    playerIndex = _actionIndex + i - _playersInHand.size();
-                }
-                else { playerIndex = _actionIndex + i; }
-                Player player = _playersInHand.get(playerIndex);
-                addHandResultsToMsg();
-                addPlayerStatus();
-                addPlayersHandToMsg(player);
-                addTotalPotAndMinBetToMsg();
-                handleCommand(player);
-                player._hasPlayed = true;
-                _takingBets = stillTakingBets();
-                i++;
-                if(i >= _playersInHand.size()) { i = 0; }
-            }
-            _winners.clear();
+    /**
+     * main.com.poker.server.Main turn method. Handles round robin-ing through all of the players in
+     * the game.
+     */
+    private void requestNextPlayer() {
+        if(_playersInHand.size() == 0) {
             handleFinishHand();
+            return;
+        }
+        Player player = _playersInHand.get((_actionIndex + _turn) % _playersInHand.size());
+        if(player._agent != null) {
+            // An agent is asked straight away, so it has no clock
+            updateMinBetAndPot();
+            broadcastTableState();
+            requestCommand(player);
+            return;
         }
+        addHandResultsToMsg();
+        if(isListening(player)) {
+            // Binary clients are kept up to date by the table state broadcasts
+            updateMinBetAndPot();
+            broadcastTableState();
+            addPlayersHandToMsg(player);
+        }
+        else {
+            addPlayerStatus();
+            addPlayersHandToMsg(player);
+            addTotalPotAndMinBetToMsg();
+        }
+        startTurnClock();
+        requestCommand(player);
+    }
+
+    /**
+     * Starts the action clock for the turn that's about to be asked for.
+     */
+    private void startTurnClock() {
+        _onTimeBank = false;
+        scheduleTurnTimeout(_rules._actionTimeMillis);
+    }
+
+    private void scheduleTurnTimeout(long delayMillis) {
+        final long turnId = ++_turnId;
+        _turnClock = TIMER.schedule(new Runnable() {
+            public void run() {
+                _events.execute(new Runnable() {
+                    public void run() {
+                        turnTimedOut(turnId);
+                    }
+                });
+            }
+        }, delayMillis);
+    }
+
+    /**
+     * Stops the clock once the player has acted, and takes any time they
+     * used from their time bank.
+     */
+    private void stopTurnClock(Player player) {
+        _turnId++;
+        if(_turnClock != null) {
+            _turnClock.cancel();
+            _turnClock = null;
+        }
+        if(_onTimeBank) {
+            long usedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - _timeBankStartNanos);
+            player._timeBankMillis = Math.max(player._timeBankMillis - usedMillis, 0);
+            _onTimeBank = false;
+        }
+    }
+
+    /**
+     * The current player's time is up. Starts their time bank, if they have
+     * one left and are still connected; otherwise acts for them.
+     */
+    private void turnTimedOut(long turnId) {
+        Player player = _currentPlayer;
+        if(turnId != _turnId || player == null) { return; }
+        _turnClock = null;
+        if(!_onTimeBank && player._connected && player._timeBankMillis > 0) {
+            _onTimeBank = true;
+            _timeBankStartNanos = System.nanoTime();
+            _messenger.addLineToMsg("Time is up. Using your time bank: "
+                    + TimeUnit.MILLISECONDS.toSeconds(player._timeBankMillis) + " seconds");
+            send(player);
+            scheduleTurnTimeout(player._timeBankMillis);
+            return;
+        }
+        if(_onTimeBank) {
+            player._timeBankMillis = 0;
+            _onTimeBank = false;
+        }
+        player._pendingInput.clear();
+        if(_rules._autoCheck && player._bet >= _minBet) {
+            _messenger.addLineToMsg("You ran out of time, and checked.");
+            send(player);
+            new Check().execute(player);
+        }
+        else {
+            _messenger.addLineToMsg("You ran out of time, and folded.");
+            send(player);
+            new Fold().execute(player);
+        }
+    }
+
+    /**
+     * The player has acted. Moves on to the next player, the next street, or
+     * the showdown.
+     */
+    private void endTurn(Player player) {
+        stopTurnClock(player);
+        _currentPlayer = null;
+        _awaitingBet = false;
+        player._hasPlayed = true;
+        _takingBets = stillTakingBets();
+        if(!_takingBets && _playersInHand.size() > 1 && dealNextStreet(_deck)) {
+            startNextStreet();
+        }
+        _turn++;
+        if(_turn >= _playersInHand.size()) { _turn = 0; }
+
+        if(_takingBets) { requestNextPlayer(); }
+        else { handleFinishHand(); }
     }
 
     /**
@@ -332,10 +1056,18 @@ public class Game {
     private class ExitGame implements GameCommand {
         public void execute(Player player) {
             _messenger.addExitingGame();
-            _messenger.sendClientMsg(player._out);
-            player._exitingGame = true;
+            send(player);
             _playersInHand.remove(player);
             _players.remove(player);
+            _recorder.addAction(player, HandRecord.EXIT, player._bet);
+            updatePlayerNames();
+            updateListeners();
+            broadcastEvent(player._name + " left the table");
+            broadcastTableState();
+            _seats.decrementAndGet();
+            player._pendingInput.clear();
+            endTurn(player);
+            player.exitedGame();
         }
     }
 
@@ -347,7 +1079,9 @@ public class Game {
             if(_playersInHand.size() > 1) {
                 _playersInHand.remove(player);
             }
-            if(!stillTakingBets()) { handleFinishHand(); }
+            _recorder.addAction(player, HandRecord.FOLD, player._bet);
+            broadcastEvent(player._name + " folds");
+            endTurn(player);
         }
     }
 
@@ -359,9 +1093,13 @@ public class Game {
         public void execute(Player player) {
             if(player._bet < _minBet) {
                 _messenger.addLineToMsg("You must either match or beat the minimum bet: " + _minBet);
-                handleCommand(player);
+                requestCommand(player);
+            }
+            else {
+                _recorder.addAction(player, HandRecord.CHECK, player._bet);
+                broadcastEvent(player._name + " checks");
+                endTurn(player);
             }
-            if(!stillTakingBets()) { handleFinishHand(); }
         }
     }
 
@@ -372,9 +1110,24 @@ public class Game {
     private class Bet implements GameCommand {
         public void execute(Player player) {
             addBetRequest();
-            _messenger.sendClientMsg(player._out);
-            handleBet(player);
-            if(!stillTakingBets()) { handleFinishHand(); }
+            send(player);
+            _awaitingBet = true;
+            handlePendingInput(player);
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final String _prefix;
+        private final AtomicInteger _count = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            _prefix = prefix;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, _prefix + _count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
         }
     }
  }
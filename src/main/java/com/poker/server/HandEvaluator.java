@@ -0,0 +1,306 @@
+package com.poker.server;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Turns five cards into a single int strength. A higher strength is a better
+ * hand, equal strengths tie. The hand ranking sits in the top bits, and the
+ * tie break ranks (grouped cards first, then kickers, highest first) are
+ * packed four bits apiece below it.
+ *
+ * Everything is looked up in tables built once, when the class loads:
+ * hands with five different ranks are indexed by their 13 bit rank mask, and
+ * hands with a paired rank are found by the product of one prime per rank.
+ * Evaluating a hand allocates nothing and never reorders the cards.
+ *
+ * evaluateCardSet() finds the best five of five to seven cards in constant
+ * time, for games with community cards. If a suit holds five or more cards,
+ * the best flush is looked up by that suit's rank mask; no other hand can beat
+ * it with only seven cards. Otherwise the number of cards held of each rank,
+ * packed three bits per rank, is looked up in a table of every possible rank
+ * count, each already resolved to its best five cards.
+ *
+ * As with the original ranking, an ace is only ever high, so A-2-3-4-5 is not
+ * a straight.
+ */
+public final class HandEvaluator {
+    private static final int NUM_RANKS = PokerCard.NUM_RANKS;
+    static final int RANKING_SHIFT = 20;
+    private static final int[] PRIMES = { 2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41 };
+    private static final PokerHand.HandRanking[] RANKINGS = PokerHand.HandRanking.values();
+
+    // Five distinct ranks, indexed by rank mask
+    private static final int[] FLUSHES = new int[1 << NUM_RANKS];
+    private static final int[] UNIQUE_RANKS = new int[1 << NUM_RANKS];
+
+    // Paired ranks, open addressed on the prime product (4888 of them)
+    private static final int PRODUCT_BITS = 14;
+    private static final int[] PRODUCT_KEYS = new int[1 << PRODUCT_BITS];
+    private static final int[] PRODUCT_STRENGTHS = new int[1 << PRODUCT_BITS];
+
+    // Best flush among five to seven suited cards, indexed by rank mask
+    private static final int[] BEST_FLUSHES = new int[1 << NUM_RANKS];
+
+    // A rank mask spread out to one three bit count per rank
+    private static final long[] SPREAD_COUNTS = new long[1 << NUM_RANKS];
+
+    // Five to seven cards, open addressed on packed rank counts (73775 of them)
+    static final int MAX_CARDS = 7;
+    private static final int COUNTS_BITS = 17;
+    private static final long[] COUNTS_KEYS = new long[1 << COUNTS_BITS];
+    private static final int[] COUNTS_STRENGTHS = new int[1 << COUNTS_BITS];
+
+    static {
+        int[] counts = new int[NUM_RANKS];
+        for(int a = 0; a < NUM_RANKS; a++) {
+            for(int b = a; b < NUM_RANKS; b++) {
+                for(int c = b; c < NUM_RANKS; c++) {
+                    for(int d = c; d < NUM_RANKS; d++) {
+                        for(int e = d; e < NUM_RANKS; e++) {
+                            if(a == e) { continue; } // five of a kind
+                            counts[a]++; counts[b]++; counts[c]++; counts[d]++; counts[e]++;
+                            int mask = (1 << a) | (1 << b) | (1 << c) | (1 << d) | (1 << e);
+                            if(Integer.bitCount(mask) == PokerHand.NUM_CARDS) {
+                                UNIQUE_RANKS[mask] = computeStrength(counts, false);
+                                FLUSHES[mask] = computeStrength(counts, true);
+                            }
+                            else {
+                                putProduct(PRIMES[a] * PRIMES[b] * PRIMES[c] * PRIMES[d] * PRIMES[e],
+                                        computeStrength(counts, false));
+                            }
+                            counts[a] = 0; counts[b] = 0; counts[c] = 0; counts[d] = 0; counts[e] = 0;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Masks only ever grow, so the best flush without any one card is known
+        for(int mask = 0; mask < BEST_FLUSHES.length; mask++) {
+            for(int rank = 0; rank < NUM_RANKS; rank++) {
+                if((mask & (1 << rank)) != 0) { SPREAD_COUNTS[mask] += 1L << (3 * rank); }
+            }
+            int size = Integer.bitCount(mask);
+            if(size == PokerHand.NUM_CARDS) { BEST_FLUSHES[mask] = FLUSHES[mask]; }
+            else if(size > PokerHand.NUM_CARDS) {
+                for(int rest = mask; rest != 0; rest &= rest - 1) {
+                    int without = mask & ~Integer.lowestOneBit(rest);
+                    BEST_FLUSHES[mask] = Math.max(BEST_FLUSHES[mask], BEST_FLUSHES[without]);
+                }
+            }
+        }
+        putAllCounts(counts, 0, 0, 0L);
+    }
+
+    private HandEvaluator() { }
+
+    /**
+     * Returns the strength of the first five cards in the supplied array.
+     */
+    public static int evaluate(PokerCard[] cards) {
+        int mask = 0;
+        int product = 1;
+        boolean flush = true;
+        PokerDeck.Suit suit = cards[0]._suit;
+        for(int i = 0; i < PokerHand.NUM_CARDS; i++) {
+            int rank = cards[i]._rank.ordinal();
+            mask |= 1 << rank;
+            product *= PRIMES[rank];
+            flush &= cards[i]._suit == suit;
+        }
+        return lookup(mask, product, flush);
+    }
+
+    /**
+     * Returns the strength of the first five card ids in the supplied array.
+     */
+    public static int evaluate(int[] cards) {
+        int mask = 0;
+        int product = 1;
+        boolean flush = true;
+        int suit = PokerCard.suitOf(cards[0]);
+        for(int i = 0; i < PokerHand.NUM_CARDS; i++) {
+            int rank = PokerCard.rankOf(cards[i]);
+            mask |= 1 << rank;
+            product *= PRIMES[rank];
+            flush &= PokerCard.suitOf(cards[i]) == suit;
+        }
+        return lookup(mask, product, flush);
+    }
+
+    /**
+     * Returns the strength of the best five cards in a CardSet holding five
+     * to seven cards.
+     */
+    public static int evaluateCardSet(long cards) {
+        int hearts = CardSet.suitMask(cards, 0);
+        int spades = CardSet.suitMask(cards, 1);
+        int diamonds = CardSet.suitMask(cards, 2);
+        int clubs = CardSet.suitMask(cards, 3);
+        if(Integer.bitCount(hearts) >= PokerHand.NUM_CARDS) { return BEST_FLUSHES[hearts]; }
+        if(Integer.bitCount(spades) >= PokerHand.NUM_CARDS) { return BEST_FLUSHES[spades]; }
+        if(Integer.bitCount(diamonds) >= PokerHand.NUM_CARDS) { return BEST_FLUSHES[diamonds]; }
+        if(Integer.bitCount(clubs) >= PokerHand.NUM_CARDS) { return BEST_FLUSHES[clubs]; }
+        return getCountsStrength(SPREAD_COUNTS[hearts] + SPREAD_COUNTS[spades] +
+                SPREAD_COUNTS[diamonds] + SPREAD_COUNTS[clubs]);
+    }
+
+    /**
+     * Evaluates the first count CardSets in cardSets, five to seven cards
+     * each, into the matching slots of strengths.
+     */
+    public static void evaluateCardSets(long[] cardSets, int[] strengths, int count) {
+        for(int i = 0; i < count; i++) {
+            strengths[i] = evaluateCardSet(cardSets[i]);
+        }
+    }
+
+    /**
+     * Returns the prime standing for a card's rank. The product of five cards'
+     * primes, together with their rank mask, identifies their ranks.
+     */
+    static int rankPrimeOf(int card) {
+        return PRIMES[PokerCard.rankOf(card)];
+    }
+
+    /**
+     * Returns the strength of five cards from their rank mask and the product
+     * of their rank primes, ignoring flushes.
+     */
+    static int evaluateRanks(int rankMask, int product) {
+        return lookup(rankMask, product, false);
+    }
+
+    /**
+     * Returns the strength of the best flush among five to seven cards of one
+     * suit, from their rank mask.
+     */
+    static int evaluateFlush(int rankMask) {
+        return BEST_FLUSHES[rankMask];
+    }
+
+    private static int lookup(int mask, int product, boolean flush) {
+        if(Integer.bitCount(mask) == PokerHand.NUM_CARDS) {
+            return flush ? FLUSHES[mask] : UNIQUE_RANKS[mask];
+        }
+        return getProductStrength(product);
+    }
+
+    /**
+     * Returns the canonical ranking encoded in a strength.
+     */
+    public static PokerHand.HandRanking getHandRanking(int strength) {
+        return RANKINGS[strength >>> RANKING_SHIFT];
+    }
+
+    private static int hashProduct(int product) {
+        return (product * 0x9E3779B1) >>> (32 - PRODUCT_BITS);
+    }
+
+    private static void putProduct(int product, int strength) {
+        int slot = hashProduct(product);
+        while(PRODUCT_KEYS[slot] != 0) {
+            slot = (slot + 1) & (PRODUCT_KEYS.length - 1);
+        }
+        PRODUCT_KEYS[slot] = product;
+        PRODUCT_STRENGTHS[slot] = strength;
+    }
+
+    private static int getProductStrength(int product) {
+        int slot = hashProduct(product);
+        while(PRODUCT_KEYS[slot] != product) {
+            slot = (slot + 1) & (PRODUCT_KEYS.length - 1);
+        }
+        return PRODUCT_STRENGTHS[slot];
+    }
+
+    private static int hashCounts(long counts) {
+        return (int) ((counts * 0x9E3779B97F4A7C15L) >>> (64 - COUNTS_BITS));
+    }
+
+    private static int getCountsStrength(long counts) {
+        int slot = hashCounts(counts);
+        while(COUNTS_KEYS[slot] != counts) {
+            slot = (slot + 1) & (COUNTS_KEYS.length - 1);
+        }
+        return COUNTS_STRENGTHS[slot];
+    }
+
+    /**
+     * Fills the rank counts table with every way of holding five to seven
+     * cards, at most four of a rank.
+     */
+    private static void putAllCounts(int[] counts, int rank, int size, long key) {
+        if(rank == NUM_RANKS) {
+            if(size < PokerHand.NUM_CARDS) { return; }
+            int slot = hashCounts(key);
+            while(COUNTS_KEYS[slot] != 0) {
+                slot = (slot + 1) & (COUNTS_KEYS.length - 1);
+            }
+            COUNTS_KEYS[slot] = key;
+            COUNTS_STRENGTHS[slot] = bestOfCounts(counts, new int[NUM_RANKS], 0, 0);
+            return;
+        }
+        for(int n = 0; n <= 4 && size + n <= MAX_CARDS; n++) {
+            counts[rank] = n;
+            putAllCounts(counts, rank + 1, size + n, key + ((long) n << (3 * rank)));
+        }
+        counts[rank] = 0;
+    }
+
+    /**
+     * Tries every five card subset of the supplied rank counts, ignoring
+     * flushes. Only used to fill the tables.
+     */
+    private static int bestOfCounts(int[] counts, int[] chosen, int rank, int size) {
+        if(size == PokerHand.NUM_CARDS) { return computeStrength(chosen, false); }
+        if(rank == NUM_RANKS) { return -1; }
+        int best = -1;
+        for(int n = 0; n <= counts[rank] && size + n <= PokerHand.NUM_CARDS; n++) {
+            chosen[rank] = n;
+            best = Math.max(best, bestOfCounts(counts, chosen, rank + 1, size + n));
+        }
+        chosen[rank] = 0;
+        return best;
+    }
+
+    /**
+     * Works out the strength of five cards from the number of cards held of
+     * each rank. Only used to fill the tables.
+     */
+    static int computeStrength(int[] counts, boolean flush) {
+        int strength = 0;
+        int shift = RANKING_SHIFT;
+        int largestGroup = 0;
+        int numPairs = 0;
+
+        // Pack ranks ordered by group size, then rank, highest first
+        for(int size = 4; size > 0; size--) {
+            for(int rank = NUM_RANKS - 1; rank >= 0; rank--) {
+                if(counts[rank] != size) { continue; }
+                shift -= 4;
+                strength |= rank << shift;
+                if(size > largestGroup) { largestGroup = size; }
+                if(size == 2) { numPairs++; }
+            }
+        }
+
+        PokerHand.HandRanking ranking;
+        if(largestGroup == 4) { ranking = PokerHand.HandRanking.FOUR_OF_A_KIND; }
+        else if(largestGroup == 3) {
+            ranking = numPairs == 1 ? PokerHand.HandRanking.FULL_HOUSE : PokerHand.HandRanking.THREE_OF_A_KIND;
+        }
+        else if(numPairs == 2) { ranking = PokerHand.HandRanking.TWO_PAIR; }
+        else if(numPairs == 1) { ranking = PokerHand.HandRanking.PAIR; }
+        else {
+            boolean straight = (strength >>> (RANKING_SHIFT - 4) & 0xF) - (strength & 0xF) == 4;
+            if(straight && flush) { ranking = PokerHand.HandRanking.STRAIGH_FLUSH; }
+            else if(flush) { ranking = PokerHand.HandRanking.FLUSH; }
+            else if(straight) { ranking = PokerHand.HandRanking.STRAIGHT; }
+            else { ranking = PokerHand.HandRanking.HIGH_CARD; }
+        }
+        return (ranking.ordinal() << RANKING_SHIFT) | strength;
+    }
+}
@@ -0,0 +1,187 @@
+package com.poker.server;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * The durable history of every finished hand, for audits and disputes.
+ * Games hand their encoded HandRecords to append, which only puts them on a
+ * lock-free queue; one writer thread copies them into memory-mapped segment
+ * files, so a game never waits on the disk.
+ *
+ * A segment is a file of a fixed size, named for its place in the log. Each
+ * record in it is an int length followed by that many bytes; a length of 0
+ * marks the end of what's been written. The writer fills in the length after
+ * the bytes, so a reader never sees half a record. HandHistoryReader reads
+ * the segments back in order.
+ */
+public final class HandHistoryLog {
+    static final String SEGMENT_PREFIX = "hands-";
+    static final String SEGMENT_SUFFIX = ".log";
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final File _dir;
+    private final int _segmentSize;
+    private final ConcurrentLinkedQueue<byte[]> _records = new ConcurrentLinkedQueue<byte[]>();
+    private final Thread _writer;
+    private volatile boolean _writerIdle;
+    private volatile boolean _closed;
+    private long _segmentIndex;
+    private MappedByteBuffer _segment;
+    private boolean _dirty;
+
+    /**
+     * Opens the log in the directory, creating it if needed, and carries on
+     * after the last record already there.
+     */
+    public HandHistoryLog(File dir, int segmentSize) throws IOException {
+        if(segmentSize < 16) {
+            throw new IllegalArgumentException("Segment too small: " + segmentSize);
+        }
+        if(!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Couldn't create " + dir);
+        }
+        _dir = dir;
+        _segmentSize = segmentSize;
+
+        File[] segments = listSegments(dir);
+        if(segments.length == 0) {
+            openSegment(0);
+        }
+        else {
+            File last = segments[segments.length - 1];
+            openSegment(segmentIndex(last));
+            skipWrittenRecords();
+        }
+
+        _writer = new Thread(new Runnable() {
+            public void run() {
+                writeRecords();
+            }
+        }, "poker-hand-history");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    /**
+     * Queues the record to be written. Never blocks. Records appended after
+     * close are dropped.
+     */
+    public void append(byte[] record) {
+        if(_closed) { return; }
+        _records.offer(record);
+        if(_writerIdle) {
+            LockSupport.unpark(_writer);
+        }
+    }
+
+    /**
+     * Writes every record appended so far, forces it to disk, and stops the
+     * writer.
+     */
+    public void close() throws InterruptedException {
+        _closed = true;
+        LockSupport.unpark(_writer);
+        _writer.join();
+    }
+
+    private void writeRecords() {
+        while(true) {
+            byte[] record = _records.poll();
+            if(record != null) {
+                write(record);
+                continue;
+            }
+            if(_dirty) {
+                _segment.force();
+                _dirty = false;
+            }
+            if(_closed && _records.isEmpty()) { return; }
+            _writerIdle = true;
+            if(_records.isEmpty() && !_closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            _writerIdle = false;
+        }
+    }
+
+    private void write(byte[] record) {
+        // Room for the length, and for the 0 that ends the segment
+        int needed = 4 + record.length + 4;
+        if(needed > _segmentSize) {
+            System.err.println("Hand record of " + record.length + " bytes is bigger than a segment, dropped");
+            return;
+        }
+        try {
+            if(_segment.remaining() < needed) {
+                _segment.force();
+                openSegment(_segmentIndex + 1);
+            }
+            int start = _segment.position();
+            _segment.position(start + 4);
+            _segment.put(record);
+            _segment.putInt(start, record.length);
+            _dirty = true;
+        } catch (IOException e) {
+            System.err.println("Couldn't write hand history: " + e.getMessage());
+        }
+    }
+
+    private void openSegment(long index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segmentFile(_dir, index), "rw");
+        try {
+            file.setLength(_segmentSize);
+            _segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _segmentSize);
+        }
+        finally {
+            // The mapping stays valid once the file is closed
+            file.close();
+        }
+        _segmentIndex = index;
+    }
+
+    private void skipWrittenRecords() {
+        int length;
+        while(_segment.remaining() >= 8 && (length = _segment.getInt(_segment.position())) > 0
+                && length <= _segment.remaining() - 8) {
+            _segment.position(_segment.position() + 4 + length);
+        }
+    }
+
+    static File segmentFile(File dir, long index) {
+        return new File(dir, String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    static long segmentIndex(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * The segment files in the directory, oldest first.
+     */
+    static File[] listSegments(File dir) {
+        File[] segments = dir.listFiles(new FilenameFilter() {
+            public boolean accept(File parent, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if(segments == null) { return new File[0]; }
+        // The zero padded index sorts by name
+        Arrays.sort(segments);
+        return segments;
+    }
+}
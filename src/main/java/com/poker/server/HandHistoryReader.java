@@ -0,0 +1,59 @@
+package com.poker.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Reads a HandHistoryLog back, oldest hand first, one segment after another.
+ * It sees the segments that were there when it was opened, and can run while
+ * the server is still writing to them.
+ */
+public final class HandHistoryReader {
+    private final File[] _segments;
+    private int _nextSegment;
+    private MappedByteBuffer _segment;
+    private byte[] _record = new byte[256];
+
+    public HandHistoryReader(File dir) {
+        _segments = HandHistoryLog.listSegments(dir);
+    }
+
+    /**
+     * Returns the next hand, or null once every segment has been read.
+     */
+    public HandRecord next() throws IOException {
+        while(true) {
+            if(_segment == null) {
+                if(_nextSegment == _segments.length) { return null; }
+                _segment = map(_segments[_nextSegment++]);
+            }
+            int length = _segment.remaining() >= 4 ? _segment.getInt() : 0;
+            if(length <= 0 || length > _segment.remaining()) {
+                _segment = null;
+                continue;
+            }
+            if(length > _record.length) {
+                _record = new byte[Math.max(length, _record.length * 2)];
+            }
+            _segment.get(_record, 0, length);
+            return HandRecord.decode(_record, 0, length);
+        }
+    }
+
+    private static MappedByteBuffer map(File segment) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(segment, "r");
+        try {
+            return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+        finally {
+            file.close();
+        }
+    }
+}
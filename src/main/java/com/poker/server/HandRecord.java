@@ -0,0 +1,188 @@
+package com.poker.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * One finished hand, as read back from the hand history log. A record is
+ * written by HandRecorder, big-endian, in this order:
+ *
+ *   time (long, epoch millis), hand number (long), table name (UTF),
+ *   seat count (byte), then per seat: name (UTF), card count (byte), card ids,
+ *   board card count (byte), board card ids,
+ *   action count (short), then per action: seat (byte), action (byte),
+ *   amount (long),
+ *   pot (long),
+ *   winner count (byte), then per winner: seat (byte), amount won (long).
+ *
+ * UTF is DataOutput's: a two byte length, then modified UTF-8. Card ids are
+ * the deck's, 0 to 51, one byte each.
+ */
+public final class HandRecord {
+    public static final int CHECK = 0;
+    public static final int BET = 1;
+    public static final int FOLD = 2;
+    public static final int EXIT = 3;
+
+    private final long _timeMillis;
+    private final long _handNumber;
+    private final String _table;
+    private final List<Seat> _seats;
+    private final byte[] _board;
+    private final List<Action> _actions;
+    private final long _pot;
+    private final byte[] _winners;
+    private final long[] _amountsWon;
+
+    private HandRecord(long timeMillis, long handNumber, String table, List<Seat> seats, byte[] board,
+                       List<Action> actions, long pot, byte[] winners, long[] amountsWon) {
+        _timeMillis = timeMillis;
+        _handNumber = handNumber;
+        _table = table;
+        _seats = seats;
+        _board = board;
+        _actions = actions;
+        _pot = pot;
+        _winners = winners;
+        _amountsWon = amountsWon;
+    }
+
+    /**
+     * Decodes a record from the bytes HandRecorder produced.
+     */
+    public static HandRecord decode(byte[] bytes, int offset, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+        long timeMillis = in.readLong();
+        long handNumber = in.readLong();
+        String table = in.readUTF();
+        int numSeats = in.readUnsignedByte();
+        List<Seat> seats = new ArrayList<Seat>(numSeats);
+        for(int i = 0; i < numSeats; i++) {
+            String name = in.readUTF();
+            seats.add(new Seat(name, readCards(in)));
+        }
+        byte[] board = readCards(in);
+        int numActions = in.readUnsignedShort();
+        List<Action> actions = new ArrayList<Action>(numActions);
+        for(int i = 0; i < numActions; i++) {
+            int seat = in.readUnsignedByte();
+            int type = in.readUnsignedByte();
+            actions.add(new Action(seat, type, in.readLong()));
+        }
+        long pot = in.readLong();
+        int numWinners = in.readUnsignedByte();
+        byte[] winners = new byte[numWinners];
+        long[] amountsWon = new long[numWinners];
+        for(int i = 0; i < numWinners; i++) {
+            winners[i] = in.readByte();
+            amountsWon[i] = in.readLong();
+        }
+        return new HandRecord(timeMillis, handNumber, table, Collections.unmodifiableList(seats), board,
+                Collections.unmodifiableList(actions), pot, winners, amountsWon);
+    }
+
+    private static byte[] readCards(DataInputStream in) throws IOException {
+        byte[] cards = new byte[in.readUnsignedByte()];
+        in.readFully(cards);
+        return cards;
+    }
+
+    public long getTimeMillis() {
+        return _timeMillis;
+    }
+
+    public long getHandNumber() {
+        return _handNumber;
+    }
+
+    public String getTable() {
+        return _table;
+    }
+
+    public List<Seat> getSeats() {
+        return _seats;
+    }
+
+    public byte[] getBoard() {
+        return _board.clone();
+    }
+
+    public List<Action> getActions() {
+        return _actions;
+    }
+
+    public long getPot() {
+        return _pot;
+    }
+
+    /**
+     * The indexes, into getSeats, of the players who won the pot.
+     */
+    public byte[] getWinners() {
+        return _winners.clone();
+    }
+
+    /**
+     * What each of the winners was paid, in the same order as getWinners.
+     * When the pot doesn't split evenly, the first winners get a chip more.
+     */
+    public long[] getAmountsWon() {
+        return _amountsWon.clone();
+    }
+
+    public static final class Seat {
+        private final String _name;
+        private final byte[] _cards;
+
+        Seat(String name, byte[] cards) {
+            _name = name;
+            _cards = cards;
+        }
+
+        public String getName() {
+            return _name;
+        }
+
+        public byte[] getCards() {
+            return _cards.clone();
+        }
+    }
+
+    public static final class Action {
+        private final int _seat;
+        private final int _type;
+        private final long _amount;
+
+        Action(int seat, int type, long amount) {
+            _seat = seat;
+            _type = type;
+            _amount = amount;
+        }
+
+        public int getSeat() {
+            return _seat;
+        }
+
+        /**
+         * One of CHECK, BET, FOLD, or EXIT.
+         */
+        public int getType() {
+            return _type;
+        }
+
+        /**
+         * The player's bet after the action.
+         */
+        public long getAmount() {
+            return _amount;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.poker.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Collects what happens in a game's current hand, and encodes it as a
+ * HandRecord once the hand is over. A game keeps one of these and reuses it
+ * hand after hand, on the game's thread; only the finished record's bytes
+ * are handed to the HandHistoryLog.
+ */
+final class HandRecorder {
+    private final List<Player> _seats = new ArrayList<Player>(Game.MAX_PLAYERS);
+    private final long[] _seatCards = new long[Game.MAX_PLAYERS];
+    private byte[] _actionSeats = new byte[32];
+    private byte[] _actionTypes = new byte[32];
+    private long[] _actionAmounts = new long[32];
+    private int _numActions;
+    private long _timeMillis;
+    private boolean _recording;
+    private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream(512);
+    private final DataOutputStream _out = new DataOutputStream(_bytes);
+
+    void startHand(long timeMillis) {
+        _seats.clear();
+        _numActions = 0;
+        _timeMillis = timeMillis;
+        _recording = true;
+    }
+
+    /**
+     * Seats a player dealt into the hand, with the cards they were dealt.
+     */
+    void addSeat(Player player, long cards) {
+        if(_seats.size() == _seatCards.length) { return; }
+        _seatCards[_seats.size()] = cards;
+        _seats.add(player);
+    }
+
+    void addAction(Player player, int type, long amount) {
+        if(!_recording) { return; }
+        int seat = _seats.indexOf(player);
+        if(seat < 0) { return; }
+        if(_numActions == _actionTypes.length) {
+            _actionSeats = Arrays.copyOf(_actionSeats, _numActions * 2);
+            _actionTypes = Arrays.copyOf(_actionTypes, _numActions * 2);
+            _actionAmounts = Arrays.copyOf(_actionAmounts, _numActions * 2);
+        }
+        _actionSeats[_numActions] = (byte) seat;
+        _actionTypes[_numActions] = (byte) type;
+        _actionAmounts[_numActions] = amount;
+        _numActions++;
+    }
+
+    /**
+     * Encodes the hand, and gets ready for the next one. amountsWon holds
+     * what each of the winners was paid, in the same order. Returns null if
+     * no hand was started.
+     */
+    byte[] finishHand(long handNumber, String table, long board, long pot, List<Player> winners, long[] amountsWon) {
+        if(!_recording) { return null; }
+        _recording = false;
+        _bytes.reset();
+        try {
+            _out.writeLong(_timeMillis);
+            _out.writeLong(handNumber);
+            _out.writeUTF(table);
+            _out.writeByte(_seats.size());
+            for(int i = 0; i < _seats.size(); i++) {
+                _out.writeUTF(_seats.get(i)._name);
+                writeCards(_seatCards[i]);
+            }
+            writeCards(board);
+            _out.writeShort(Math.min(_numActions, 0xFFFF));
+            for(int i = 0; i < _numActions && i < 0xFFFF; i++) {
+                _out.writeByte(_actionSeats[i]);
+                _out.writeByte(_actionTypes[i]);
+                _out.writeLong(_actionAmounts[i]);
+            }
+            _out.writeLong(pot);
+            int numWinners = 0;
+            for(Player winner : winners) {
+                if(_seats.contains(winner)) { numWinners++; }
+            }
+            _out.writeByte(numWinners);
+            for(int i = 0; i < winners.size(); i++) {
+                int seat = _seats.indexOf(winners.get(i));
+                if(seat < 0) { continue; }
+                _out.writeByte(seat);
+                _out.writeLong(amountsWon[i]);
+            }
+        } catch (IOException e) {
+            // Can't happen writing to memory
+            throw new IllegalStateException(e);
+        }
+        _seats.clear();
+        return _bytes.toByteArray();
+    }
+
+    private void writeCards(long cards) throws IOException {
+        _out.writeByte(CardSet.size(cards));
+        for(long rest = cards; rest != CardSet.EMPTY; ) {
+            int card = CardSet.firstCard(rest);
+            _out.writeByte(card);
+            rest = CardSet.remove(rest, card);
+        }
+    }
+}
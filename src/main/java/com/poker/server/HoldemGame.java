@@ -0,0 +1,90 @@
+package com.poker.server;
+
+import com.poker.Messenger;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A Texas Hold'em game. Each player is dealt two hole cards, and shares a
+ * five card board dealt over three streets: the flop, the turn and the river.
+ * There is a round of betting before the flop and after each street.
+ *
+ * At the showdown each player plays the best five of their seven cards, which
+ * HandEvaluator looks up in constant time.
+ */
+public class HoldemGame extends Game {
+    public static final int NUM_HOLE_CARDS = 2;
+    private static final int[] STREET_SIZES = { 3, 1, 1 };
+    private long _board = CardSet.EMPTY;
+    private int _street;
+
+    public HoldemGame(String name, Messenger messenger) {
+        super(name, messenger);
+    }
+
+    HoldemGame(String name, Messenger messenger, Executor executor, TurnRules rules) {
+        super(name, messenger, executor, rules);
+    }
+
+    @Override
+    protected void dealHands(PokerDeck deck) {
+        _board = CardSet.EMPTY;
+        _street = 0;
+        for(Player player : _players) {
+            player._holeCards = CardSet.EMPTY;
+            for(int i = 0; i < getNumHoleCards(); i++) {
+                player._holeCards = CardSet.add(player._holeCards, deck.dealCardId());
+            }
+        }
+    }
+
+    @Override
+    protected boolean dealNextStreet(PokerDeck deck) {
+        if(_street == STREET_SIZES.length) { return false; }
+        for(int i = 0; i < STREET_SIZES[_street]; i++) {
+            _board = CardSet.add(_board, deck.dealCardId());
+        }
+        _street++;
+        return true;
+    }
+
+    /**
+     * Game runs out the board before any showdown, so there are always seven
+     * cards to rank.
+     */
+    @Override
+    protected int getHandStrength(Player player) {
+        return getHandStrength(player._holeCards, _board);
+    }
+
+    @Override
+    protected long getHandCards(Player player) {
+        return player._holeCards;
+    }
+
+    @Override
+    protected long getBoardCards() {
+        return _board;
+    }
+
+    @Override
+    protected String describeHand(Player player) {
+        return "Hole: " + CardSet.toString(player._holeCards) + "  Board: " + CardSet.toString(_board);
+    }
+
+    protected int getNumHoleCards() {
+        return NUM_HOLE_CARDS;
+    }
+
+    /**
+     * Returns the strength of the best hand the hole cards can make with the
+     * full board.
+     */
+    protected int getHandStrength(long holeCards, long board) {
+        return HandEvaluator.evaluateCardSet(holeCards | board);
+    }
+}
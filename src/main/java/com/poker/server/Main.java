@@ -1,11 +1,14 @@
 package com.poker.server;
 
-import main.com.poker.Consts;
+import com.poker.Consts;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
+import javax.management.JMException;
 
 /**
  * Created by: John Paul Wallway
@@ -14,16 +17,37 @@ import java.util.HashMap;
  *
  *  Objects of this type handle accepting new client connections.
  *  They spin up a new main.com.poker.server.PokerServer Thread for each new connection.
+ *
+ *  Run with "nio [event loops]" to serve every connection from a few selector
+ *  event loops instead, see main.com.poker.server.NioPokerServer. Run with
+ *  "virtual" to give each connection a virtual thread rather than an OS thread,
+ *  when the JVM has them (Java 21 and up).
  */
 public class Main {
 
-    // These are the objects that are actually shared between all clients.
-    // Make them volatile to keep them very up to date.
-    private static volatile HashMap<String, Game> _games = new HashMap<String, Game>();
-    private static volatile HashMap<String, Player> _players = new HashMap<String, Player>();
+    // The players and games that are actually shared between all clients.
+    private static Registry _registry;
 
     public static void main(String[] args) throws IOException
     {
+        openHandHistory();
+        _registry = new Registry(openChipLedger());
+        startMetrics();
+
+        if(args.length > 0 && args[0].equals("nio")) {
+            int numLoops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            runNio(numLoops);
+            return;
+        }
+
+        Method startVirtualThread = null;
+        if(args.length > 0 && args[0].equals("virtual")) {
+            startVirtualThread = getStartVirtualThread();
+            if(startVirtualThread == null) {
+                System.err.println("This JVM has no virtual threads, using a thread per client.");
+            }
+        }
+
         ServerSocket serverSocket = null;
 
         try {
@@ -38,7 +62,13 @@ public class Main {
                     Socket newClientSocket = serverSocket.accept();
                     System.out.println(newClientSocket.getInetAddress());
                     System.out.println(newClientSocket.getLocalPort());
-                    new PokerServer(newClientSocket, _games, _players);
+                    PokerServer session = new PokerServer(newClientSocket, _registry);
+                    if(startVirtualThread != null) {
+                        startVirtualThread(startVirtualThread, session);
+                    }
+                    else {
+                        new Thread(session).start();
+                    }
                 }
             }
             catch (IOException e)
@@ -64,4 +94,99 @@ public class Main {
             }
         }
     }
+
+    /**
+     * Shows the server's metrics over JMX, and prints them every so often.
+     * The server runs without them in JMX if they can't be registered.
+     */
+    private static void startMetrics() {
+        ServerMetrics metrics = new ServerMetrics(_registry);
+        try {
+            metrics.register();
+        }
+        catch (JMException e) {
+            System.err.println("Couldn't register the server metrics: " + e.getMessage());
+        }
+        metrics.startDump(System.out, Consts.METRICS_DUMP_SECONDS);
+    }
+
+    /**
+     * Logs every finished hand. The server runs without a hand history if the
+     * log can't be opened.
+     */
+    private static void openHandHistory() {
+        try {
+            Game.setHandHistory(new HandHistoryLog(new File(Consts.HAND_HISTORY_DIR),
+                    HandHistoryLog.DEFAULT_SEGMENT_SIZE));
+        }
+        catch (IOException e) {
+            System.err.println("Couldn't open the hand history in " + Consts.HAND_HISTORY_DIR + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the ledger that keeps players' chips between runs, and commits
+     * it when the server shuts down. Returns null, and players start with
+     * fresh chips every time, if it can't be opened.
+     */
+    private static ChipLedger openChipLedger() {
+        final ChipLedger ledger;
+        try {
+            ledger = new ChipLedger(new File(Consts.LEDGER_DIR));
+        }
+        catch (IOException e) {
+            System.err.println("Couldn't open the chip ledger in " + Consts.LEDGER_DIR + ": " + e.getMessage());
+            return null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                try {
+                    ledger.close();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        return ledger;
+    }
+
+    /**
+     * Thread.startVirtualThread, looked up at run time since the server is
+     * still built for Java 8. Null when the JVM doesn't have it.
+     */
+    private static Method getStartVirtualThread() {
+        try {
+            return Thread.class.getMethod("startVirtualThread", Runnable.class);
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static void startVirtualThread(Method startVirtualThread, Runnable session) {
+        try {
+            startVirtualThread.invoke(null, session);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void runNio(int numLoops) {
+        NioPokerServer server = new NioPokerServer(_registry, numLoops);
+        try {
+            server.bind(Consts.PORT);
+        }
+        catch (IOException e)
+        {
+            System.err.println("Couldn't bind to port: " + Consts.PORT);
+            System.exit(1);
+        }
+        System.out.println ("Connection Channel Created with " + numLoops + " event loops");
+        server.run();
+    }
 }
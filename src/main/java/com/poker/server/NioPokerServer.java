@@ -0,0 +1,434 @@
+package com.poker.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.poker.ClientWriter;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Accepts clients like main.com.poker.server.Main, but serves all of their
+ * sockets from a few selector event loops instead of a thread per client.
+ *
+ * The event loops only frame bytes into lines and write queued output. Each
+ * client still gets a PokerServer session with the usual Player streams, so the
+ * wire protocol is the same one PokerClient already speaks. Lines are queued per
+ * client, and a pooled thread runs them through PokerServer.handleLine only
+ * while there is something to run. Games are driven by their players' lines
+ * too, so no client holds a thread while it waits, in the lobby or in a game.
+ */
+public class NioPokerServer implements Runnable {
+    static final int READ_BUFFER_SIZE = 8192;
+    static final int MAX_LINE_LENGTH = 8192;
+
+    // Marks the end of a client's lines; compared by reference
+    private static final String END_OF_STREAM = new String("");
+
+    private final Registry _registry;
+    private final EventLoop[] _loops;
+    private final ExecutorService _sessions = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new NamedThreadFactory("poker-session-"));
+    private ServerSocketChannel _serverChannel;
+    private volatile boolean _running;
+
+    public NioPokerServer(Registry registry, int numLoops) {
+        if(numLoops < 1) {
+            throw new IllegalArgumentException("Need at least one event loop: " + numLoops);
+        }
+        _registry = registry;
+        _loops = new EventLoop[numLoops];
+    }
+
+    /**
+     * Binds the server socket, and starts the event loops. A port of 0 picks
+     * any free port, see getLocalPort.
+     */
+    public void bind(int port) throws IOException {
+        _serverChannel = ServerSocketChannel.open();
+        _serverChannel.bind(new InetSocketAddress(port));
+        _running = true;
+        for(int i = 0; i < _loops.length; i++) {
+            _loops[i] = new EventLoop();
+            Thread thread = new Thread(_loops[i], "poker-event-loop-" + i);
+            thread.start();
+        }
+    }
+
+    public int getLocalPort() {
+        return _serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts clients until close is called, handing them to the event loops
+     * in turn.
+     */
+    public void run() {
+        int next = 0;
+        try {
+            while(_running) {
+                SocketChannel channel = _serverChannel.accept();
+                channel.configureBlocking(false);
+                _loops[next].register(channel);
+                next = (next + 1) % _loops.length;
+            }
+        } catch (IOException e) {
+            if(_running) {
+                System.err.println("Accept failed.");
+            }
+        }
+    }
+
+    /**
+     * Stops accepting, and closes every client and event loop.
+     */
+    public void close() throws IOException {
+        _running = false;
+        _serverChannel.close();
+        for(EventLoop loop : _loops) {
+            if(loop != null) { loop.close(); }
+        }
+        _sessions.shutdownNow();
+    }
+
+    /**
+     * Selects on a share of the clients' sockets. Reads are framed into lines
+     * here; writes are queued by any thread and flushed here.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector _selector;
+        private final ConcurrentLinkedQueue<SocketChannel> _newChannels = new ConcurrentLinkedQueue<SocketChannel>();
+        private final ConcurrentLinkedQueue<Connection> _flushes = new ConcurrentLinkedQueue<Connection>();
+        private final ByteBuffer _readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        EventLoop() throws IOException {
+            _selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            _newChannels.offer(channel);
+            _selector.wakeup();
+        }
+
+        void flush(Connection connection) {
+            _flushes.offer(connection);
+            _selector.wakeup();
+        }
+
+        void close() throws IOException {
+            _selector.wakeup();
+            for(SelectionKey key : _selector.keys()) {
+                ((Connection) key.attachment()).close();
+            }
+            _selector.close();
+        }
+
+        public void run() {
+            try {
+                while(_running) {
+                    _selector.select();
+                    registerNewChannels();
+                    Connection connection;
+                    while((connection = _flushes.poll()) != null) {
+                        connection.write();
+                    }
+
+                    Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                    while(keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        connection = (Connection) key.attachment();
+                        if(key.isValid() && key.isReadable()) {
+                            connection.read(_readBuffer);
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                // Closed by NioPokerServer.close
+            } catch (IOException e) {
+                System.err.println("Event loop failed: " + e);
+            }
+        }
+
+        private void registerNewChannels() {
+            SocketChannel channel;
+            while((channel = _newChannels.poll()) != null) {
+                Connection connection = new Connection(channel, this);
+                try {
+                    connection._key = channel.register(_selector, SelectionKey.OP_READ, connection);
+                } catch (ClosedChannelException e) {
+                    continue;
+                }
+                connection._session.open();
+            }
+        }
+    }
+
+    /**
+     * One client: its socket, the lines read from it that haven't been handled
+     * yet, and the output waiting to be written to it.
+     */
+    private final class Connection implements Runnable {
+        private final SocketChannel _channel;
+        private final EventLoop _loop;
+        private final PokerServer _session;
+        private final ConcurrentLinkedQueue<String> _lines = new ConcurrentLinkedQueue<String>();
+        private final AtomicBoolean _handling = new AtomicBoolean();
+        private final ArrayDeque<ByteBuffer> _output = new ArrayDeque<ByteBuffer>();
+        private final AtomicBoolean _flushing = new AtomicBoolean();
+        private volatile SelectionKey _key;
+        private byte[] _line = new byte[128];
+        private int _lineLength;
+        private volatile boolean _closeWhenFlushed;
+        private boolean _disconnected;
+
+        Connection(SocketChannel channel, EventLoop loop) {
+            _channel = channel;
+            _loop = loop;
+            Player client = new Player();
+            client._out = new ClientWriter(new ChannelOutputStream(this));
+            _session = new PokerServer(client, _registry);
+        }
+
+        /**
+         * Reads what the socket has, and queues every complete line. Called
+         * on the event loop.
+         */
+        void read(ByteBuffer buffer) {
+            boolean newLines = false;
+            try {
+                int numRead;
+                while((numRead = _channel.read(buffer)) > 0) {
+                    buffer.flip();
+                    while(buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if(b == '\n') {
+                            _lines.offer(takeLine());
+                            newLines = true;
+                        }
+                        else if(_lineLength == MAX_LINE_LENGTH) {
+                            System.err.println("Line too long from " + _channel.getRemoteAddress());
+                            buffer.clear();
+                            close();
+                            return;
+                        }
+                        else {
+                            if(_lineLength == _line.length) {
+                                _line = Arrays.copyOf(_line, _line.length * 2);
+                            }
+                            _line[_lineLength++] = b;
+                        }
+                    }
+                    buffer.clear();
+                }
+                if(numRead < 0) {
+                    close();
+                }
+            } catch (IOException e) {
+                buffer.clear();
+                close();
+            }
+            if(newLines) {
+                handleLines();
+            }
+        }
+
+        private String takeLine() {
+            int length = _lineLength;
+            if(length > 0 && _line[length - 1] == '\r') { length--; }
+            _lineLength = 0;
+            return new String(_line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Starts handling the queued lines on a pooled thread, unless one is
+         * already doing so.
+         */
+        private void handleLines() {
+            if(_handling.compareAndSet(false, true)) {
+                try {
+                    _sessions.execute(this);
+                } catch (RuntimeException e) {
+                    // Shut down by NioPokerServer.close
+                    _handling.set(false);
+                }
+            }
+        }
+
+        public void run() {
+            do {
+                String line;
+                while((line = _lines.poll()) != null) {
+                    if(line == END_OF_STREAM) {
+                        disconnect();
+                        continue;
+                    }
+                    // Both ways out keep _handling set, so no later line,
+                    // nor the end of stream, reaches the finished session
+                    try {
+                        _session.handleLine(line);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        close();
+                        disconnect();
+                        return;
+                    }
+                    if(!_session.isRunning()) {
+                        _closeWhenFlushed = true;
+                        queueFlush();
+                        disconnect();
+                        return;
+                    }
+                }
+                _handling.set(false);
+            } while(!_lines.isEmpty() && _handling.compareAndSet(false, true));
+        }
+
+        private void disconnect() {
+            if(!_disconnected) {
+                _disconnected = true;
+                _session.disconnected();
+            }
+        }
+
+        /**
+         * Writes the bytes straight to the socket when nothing is queued
+         * ahead of them, and queues whatever the socket doesn't take. Only
+         * that rest is copied, so callers can reuse their buffer.
+         */
+        void send(byte[] bytes, int offset, int length) {
+            synchronized (_output) {
+                if(_output.isEmpty()) {
+                    try {
+                        int written = _channel.write(ByteBuffer.wrap(bytes, offset, length));
+                        offset += written;
+                        length -= written;
+                    } catch (IOException e) {
+                        close();
+                        return;
+                    }
+                    if(length == 0) { return; }
+                }
+                _output.add(ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + length)));
+            }
+            queueFlush();
+        }
+
+        private void queueFlush() {
+            if(_flushing.compareAndSet(false, true)) {
+                _loop.flush(this);
+            }
+        }
+
+        /**
+         * Writes as much queued output as the socket takes, all of it in one
+         * gathering write, and waits for the socket to be writable if some is
+         * left. Called on the event loop.
+         */
+        void write() {
+            _flushing.set(false);
+            if(!_key.isValid()) { return; }
+            try {
+                synchronized (_output) {
+                    if(!_output.isEmpty()) {
+                        _channel.write(_output.toArray(new ByteBuffer[_output.size()]));
+                        while(!_output.isEmpty() && !_output.peek().hasRemaining()) {
+                            _output.poll();
+                        }
+                    }
+                    if(!_output.isEmpty()) {
+                        _key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+                _key.interestOps(SelectionKey.OP_READ);
+                if(_closeWhenFlushed) {
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if(_key != null) { _key.cancel(); }
+            try {
+                _channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            synchronized (_output) {
+                _output.clear();
+            }
+            // Let the session take the client out of any game
+            _lines.offer(END_OF_STREAM);
+            handleLines();
+        }
+    }
+
+    /**
+     * Under Player._out for a client on an event loop. The ClientWriter hands
+     * it whole messages, which go straight to the connection.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+        private final Connection _connection;
+
+        ChannelOutputStream(Connection connection) {
+            _connection = connection;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            _connection.send(bytes, offset, length);
+        }
+
+        @Override
+        public void close() {
+            _connection._closeWhenFlushed = true;
+            _connection.queueFlush();
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String _prefix;
+        private final AtomicInteger _count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            _prefix = prefix;
+        }
+
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, _prefix + _count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
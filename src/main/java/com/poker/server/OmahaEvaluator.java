@@ -0,0 +1,151 @@
+package com.poker.server;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Finds the strength of an Omaha hand, where a player must use exactly two of
+ * their four hole cards and three of the five board cards. Strengths are the
+ * same ints HandEvaluator hands out, so they compare with any other hand.
+ *
+ * Rather than ranking all 60 combinations as five card hands, flushes and
+ * everything else are handled apart:
+ * - A flush needs two hole cards and three board cards of one suit, which
+ *   the suit masks show straight away. Only those combinations are ranked.
+ * - Without flushes a hand only depends on its ranks. Hole pairs and board
+ *   triples are reduced to rank masks and prime products, repeated ranks are
+ *   skipped, and each remaining combination is one five card table lookup.
+ * - With no pair on the board, nothing but a flush can beat a flush, so the
+ *   second step is skipped whenever a flush has been found.
+ *
+ * As with HandEvaluator, evaluating allocates nothing: the few small arrays
+ * the second step works in are kept per thread.
+ */
+public final class OmahaEvaluator {
+    public static final int NUM_HOLE_CARDS = 4;
+    public static final int NUM_BOARD_CARDS = 5;
+    private static final int NUM_HOLE_PAIRS = 6;
+    private static final int NUM_BOARD_TRIPLES = 10;
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * The arrays one evaluation works in, kept per thread so evaluating
+     * allocates nothing.
+     */
+    private static class Scratch {
+        final int[] _pairs = new int[NUM_HOLE_PAIRS];
+        final int[] _pairMasks = new int[NUM_HOLE_PAIRS];
+        final int[] _triples = new int[NUM_BOARD_TRIPLES];
+        final int[] _tripleMasks = new int[NUM_BOARD_TRIPLES];
+        final int[] _primes = new int[NUM_BOARD_CARDS];
+        final int[] _ranks = new int[NUM_BOARD_CARDS];
+    }
+
+    private OmahaEvaluator() { }
+
+    /**
+     * Returns the strength of the best hand made from two of the four hole
+     * cards and three of the five board cards.
+     */
+    public static int evaluate(long holeCards, long board) {
+        int best = getBestFlush(holeCards, board);
+        boolean pairedBoard = Integer.bitCount(CardSet.rankMask(board)) < NUM_BOARD_CARDS;
+        if(best >= 0 && !pairedBoard) { return best; }
+
+        Scratch scratch = SCRATCH.get();
+        int[] pairs = scratch._pairs;
+        int[] pairMasks = scratch._pairMasks;
+        int numPairs = getDistinctProducts(holeCards, 2, pairs, pairMasks, scratch);
+        int[] triples = scratch._triples;
+        int[] tripleMasks = scratch._tripleMasks;
+        int numTriples = getDistinctProducts(board, 3, triples, tripleMasks, scratch);
+        for(int i = 0; i < numPairs; i++) {
+            for(int j = 0; j < numTriples; j++) {
+                int strength = HandEvaluator.evaluateRanks(pairMasks[i] | tripleMasks[j], pairs[i] * triples[j]);
+                if(strength > best) { best = strength; }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the strength of the best flush or straight flush, or -1 when no
+     * suit has two hole cards and three board cards.
+     */
+    private static int getBestFlush(long holeCards, long board) {
+        int best = -1;
+        for(int suit = 0; suit < PokerCard.NUM_SUITS; suit++) {
+            int hole = CardSet.suitMask(holeCards, suit);
+            int common = CardSet.suitMask(board, suit);
+            if(Integer.bitCount(hole) < 2 || Integer.bitCount(common) < 3) { continue; }
+            for(int first = hole; first != 0; first &= first - 1) {
+                for(int second = first & (first - 1); second != 0; second &= second - 1) {
+                    int pair = Integer.lowestOneBit(first) | Integer.lowestOneBit(second);
+                    best = Math.max(best, getBestFlushWith(pair, common));
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int getBestFlushWith(int pair, int common) {
+        int best = -1;
+        for(int a = common; a != 0; a &= a - 1) {
+            for(int b = a & (a - 1); b != 0; b &= b - 1) {
+                for(int c = b & (b - 1); c != 0; c &= c - 1) {
+                    int mask = pair | Integer.lowestOneBit(a) | Integer.lowestOneBit(b) | Integer.lowestOneBit(c);
+                    best = Math.max(best, HandEvaluator.evaluateFlush(mask));
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Fills products and masks with the rank prime products and rank masks of
+     * every way to choose size cards (two or three) from the set, leaving out
+     * repeated ranks. Returns how many there are.
+     */
+    private static int getDistinctProducts(long cards, int size, int[] products, int[] masks, Scratch scratch) {
+        int[] primes = scratch._primes;
+        int[] ranks = scratch._ranks;
+        int numCards = 0;
+        for(long rest = cards; rest != CardSet.EMPTY; rest &= rest - 1) {
+            int card = CardSet.firstCard(rest);
+            primes[numCards] = HandEvaluator.rankPrimeOf(card);
+            ranks[numCards++] = 1 << PokerCard.rankOf(card);
+        }
+
+        int numProducts = 0;
+        for(int a = 0; a < numCards; a++) {
+            for(int b = a + 1; b < numCards; b++) {
+                if(size == 2) {
+                    numProducts = addDistinct(products, masks, numProducts,
+                            primes[a] * primes[b], ranks[a] | ranks[b]);
+                    continue;
+                }
+                for(int c = b + 1; c < numCards; c++) {
+                    numProducts = addDistinct(products, masks, numProducts,
+                            primes[a] * primes[b] * primes[c], ranks[a] | ranks[b] | ranks[c]);
+                }
+            }
+        }
+        return numProducts;
+    }
+
+    private static int addDistinct(int[] products, int[] masks, int numProducts, int product, int mask) {
+        for(int i = 0; i < numProducts; i++) {
+            if(products[i] == product) { return numProducts; }
+        }
+        products[numProducts] = product;
+        masks[numProducts] = mask;
+        return numProducts + 1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.poker.server;
+
+import com.poker.Messenger;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * An Omaha game. It is dealt and bet just like Hold'em, but each player gets
+ * four hole cards, and at the showdown must play exactly two of them with
+ * three cards from the board.
+ */
+public class OmahaGame extends HoldemGame {
+
+    public OmahaGame(String name, Messenger messenger) {
+        super(name, messenger);
+    }
+
+    OmahaGame(String name, Messenger messenger, Executor executor, TurnRules rules) {
+        super(name, messenger, executor, rules);
+    }
+
+    @Override
+    protected int getNumHoleCards() {
+        return OmahaEvaluator.NUM_HOLE_CARDS;
+    }
+
+    @Override
+    protected int getHandStrength(long holeCards, long board) {
+        return OmahaEvaluator.evaluate(holeCards, board);
+    }
+}
@@ -2,6 +2,7 @@ package com.poker.server;
 
 import java.io.BufferedReader;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 
 /**
  * Created by: John Paul Wallway
@@ -12,7 +13,8 @@ import java.io.PrintWriter;
  */
 public class Player {
     public PokerHand _hand;
-    public long _chips = 10000;
+    public long _holeCards = CardSet.EMPTY;
+    public long _chips = ChipLedger.STARTING_CHIPS;
     public String _name = "";
     public PrintWriter _out;
     public BufferedReader _in;
@@ -20,5 +22,50 @@ public class Player {
     public boolean _alreadyBet = false;
     public boolean _hasPlayed;
     public long _lastBet = 0L;
-    public boolean _exitingGame;
+    public volatile boolean _exitingGame;
+    // Only the game's thread touches these: lines typed before the player's
+    // turn, up to Consts.MAX_PENDING_INPUT of them, the time bank left, and
+    // whether the player is still connected
+    ArrayDeque<String> _pendingInput = new ArrayDeque<String>();
+    long _timeBankMillis;
+    boolean _connected = true;
+    private volatile Runnable _onGameExit;
+    // Where the player's chip movements are recorded, once they're registered
+    volatile ChipLedger _ledger;
+    // Plays the seat in process, for a player with no connection
+    PlayerAgent _agent;
+
+    /**
+     * Adds the amount, or takes it if negative, from the player's chips, and
+     * records the move in the ledger.
+     */
+    void addChips(long amount, int reason) {
+        _chips += amount;
+        ChipLedger ledger = _ledger;
+        if(ledger != null && amount != 0) {
+            ledger.record(_name, amount, reason);
+        }
+    }
+
+    /**
+     * Sets what to do when the player leaves the game they're joining. Call
+     * before the player is handed to the game, so an early exit isn't missed.
+     */
+    void joiningGame(Runnable onGameExit) {
+        _exitingGame = false;
+        _onGameExit = onGameExit;
+    }
+
+    /**
+     * Called by the game once the player is out of it. Runs the action set by
+     * joiningGame, once.
+     */
+    void exitedGame() {
+        _exitingGame = true;
+        Runnable onGameExit = _onGameExit;
+        _onGameExit = null;
+        if(onGameExit != null) {
+            onGameExit.run();
+        }
+    }
 }
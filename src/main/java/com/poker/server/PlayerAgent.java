@@ -0,0 +1,38 @@
+package com.poker.server;
+
+import java.util.SplittableRandom;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Plays a seat in process, instead of a client over a connection. When it is
+ * the player's turn the game asks the agent for a move straight away, on the
+ * game's own thread, and sends the player no messages and runs no clock.
+ *
+ * An agent sees what a client would: the player's cards, chips and bet, and
+ * the game's board, pot and minimum bet.
+ */
+interface PlayerAgent {
+    // What act returns, besides an amount to bet
+    long CHECK = -1;
+    long FOLD = -2;
+    long EXIT = -3;
+
+    /**
+     * Returns the player's whole bet for the hand, which has to be at least
+     * the game's minimum bet and no more than their chips; or CHECK, FOLD or
+     * EXIT. A move the game wouldn't take folds, as running out of time does.
+     */
+    long act(Player player, Game game);
+
+    /**
+     * Makes the agent for a seat. Every table gets its own agents, with a
+     * random generator of their own, so an agent can keep state without
+     * locking.
+     */
+    interface Factory {
+        PlayerAgent newAgent(int seat, SplittableRandom random);
+    }
+}
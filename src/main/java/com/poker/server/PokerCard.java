@@ -6,8 +6,23 @@ package com.poker.server;
  * Professor: Brent Lagesse
  *
  * This class represents a typical playing card.
+ *
+ * Cards are also known by a primitive id from 0 to 51, suit major, in the same
+ * order PokerDeck lays them out. The deck, hands and CardSets deal in ids;
+ * a PokerCard is then only needed to render a card, and the 52 shared views
+ * returned by of() make that free.
  */
 public class PokerCard {
+    public static final int NUM_SUITS = 4;
+    public static final int NUM_RANKS = 13;
+    public static final int NUM_CARDS = NUM_SUITS * NUM_RANKS;
+    private static final PokerCard[] VIEWS = new PokerCard[NUM_CARDS];
+    static {
+        for(int id = 0; id < NUM_CARDS; id++) {
+            VIEWS[id] = new PokerCard(PokerDeck.Suit.values()[suitOf(id)], PokerDeck.Rank.values()[rankOf(id)]);
+        }
+    }
+
     public PokerDeck.Suit _suit;
     public PokerDeck.Rank _rank;
 
@@ -16,6 +31,29 @@ public class PokerCard {
         _rank = rank;
     }
 
+    /**
+     * Returns the shared, read only view of the card with the supplied id.
+     */
+    public static PokerCard of(int id) {
+        return VIEWS[id];
+    }
+
+    public static int id(PokerDeck.Suit suit, PokerDeck.Rank rank) {
+        return suit.ordinal() * NUM_RANKS + rank.ordinal();
+    }
+
+    public static int rankOf(int id) {
+        return id % NUM_RANKS;
+    }
+
+    public static int suitOf(int id) {
+        return id / NUM_RANKS;
+    }
+
+    public int getId() {
+        return id(_suit, _rank);
+    }
+
     @Override
     public String toString() {
         return _rank.toString() + " of " + _suit.toString();
@@ -1,36 +1,73 @@
 package com.poker.server;
 
-import java.util.ArrayList;
-import java.util.Random;
-
 /**
  * Created by: John Paul Wallway
  * UWB: CSS 432, Spring 2014
  * Professor: Brent Lagesse
  *
- * This object holds 52 PokerCards, randomly arranged in an array.
- * No safety net here, yet. If you pull out too many cards,
- * you're going to get an exception. The contract could be improved.
+ * This object holds the ids of 52 PokerCards in a primitive array, and deals
+ * them with a partial Fisher-Yates shuffle: each card dealt is swapped in from
+ * a random position among the cards still left, so every deal is O(1).
+ *
+ * A deck is meant to be kept for the life of a table. reset() gathers all the
+ * cards back in without allocating anything. Dealing from an empty deck
+ * throws an IllegalStateException.
+ *
+ * Unless told otherwise, decks shuffle with SecureShuffleRandom.
  */
 public class PokerDeck {
     public static enum Suit { HEARTS, SPADES, DIAMONDS, CLUBS; }
     public static enum Rank { TWO, THREE, FOUR, FIVE, SIX, SEVEN, EIGHT, NINE, TEN, JACK, QUEEN, KING, ACE; }
-    private int _numSuits = 4;
-    private int _numRanks = 13;
-    private ArrayList<PokerCard> _deck = new ArrayList<PokerCard>(_numSuits * _numRanks);
-    private Random _rand;
+    private int[] _deck = new int[PokerCard.NUM_CARDS];
+    private int _dealt;
+    private ShuffleRandom _rand;
 
     public PokerDeck() {
-        _rand = new Random();
-        for(int i = 0; i < _numSuits; i++) {
-            for(int j = 0; j < _numRanks; j++) {
-                _deck.add(new PokerCard( Suit.values()[i], Rank.values()[j] ));
-            }
+        this(SecureShuffleRandom.getInstance());
+    }
+
+    public PokerDeck(ShuffleRandom rand) {
+        _rand = rand;
+        for(int id = 0; id < PokerCard.NUM_CARDS; id++) {
+            _deck[id] = id;
         }
     }
 
+    /**
+     * Returns every dealt card to the deck. The order the cards were left in
+     * doesn't matter, since each deal picks uniformly from what remains.
+     */
+    void reset() {
+        _dealt = 0;
+    }
+
+    int cardsLeft() {
+        return _deck.length - _dealt;
+    }
+
     PokerCard dealCard() {
-        int card = _rand.nextInt(_deck.size());
-        return _deck.remove(card);
+        return PokerCard.of(dealCardId());
+    }
+
+    int dealCardId() {
+        if(_dealt == _deck.length) {
+            throw new IllegalStateException("No cards left in the deck");
+        }
+        int index = _dealt + _rand.nextInt(_deck.length - _dealt);
+        int card = _deck[index];
+        _deck[index] = _deck[_dealt];
+        _deck[_dealt++] = card;
+        return card;
+    }
+
+    /**
+     * Returns the cards that have not been dealt yet.
+     */
+    long remainingCards() {
+        long set = CardSet.EMPTY;
+        for(int i = _dealt; i < _deck.length; i++) {
+            set = CardSet.add(set, _deck[i]);
+        }
+        return set;
     }
 }
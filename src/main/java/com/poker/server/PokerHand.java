@@ -1,9 +1,5 @@
 package com.poker.server;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-
 /**
  * Created by: John Paul Wallway
  * UWB: CSS 432, Spring 2014
@@ -11,297 +7,174 @@ import java.util.HashMap;
  *
  * Objects of this type represent a typical poker hand.
  * The class implements comparable, allowing comparisons with other PokerHands.
- * It also provide a static sort method.
+ *
+ * A hand is an immutable value, so it can be shared between threads and used
+ * as a key in a map or a set. Everything about it is packed into one long
+ * when it's built: the strength from HandEvaluator in the top bits, then the
+ * five card ids, six bits apiece, highest rank first and hearts first among
+ * equal ranks. Two hands holding the same cards get the same key whatever
+ * order the cards were given in, and equals, hashCode and compareTo all go by
+ * the key alone.
+ *
+ * compareTo orders hands by strength, then by their cards, so different hands
+ * of equal strength don't compare as equal. Use compareStrength to find out
+ * whether one hand beats, or ties with, another at the showdown.
  */
-public class PokerHand implements Comparable<PokerHand> {
+public final class PokerHand implements Comparable<PokerHand> {
     public static enum HandRanking {
         HIGH_CARD, PAIR, TWO_PAIR, THREE_OF_A_KIND,
         STRAIGHT, FLUSH, FULL_HOUSE, FOUR_OF_A_KIND, STRAIGH_FLUSH
     }
 
     public static final int NUM_CARDS = 5;
-    public PokerCard[] _cards = new PokerCard[NUM_CARDS];
-    public PokerHand(PokerCard[] cards) {
-        for(int i = 0; i < NUM_CARDS; i++) {
-            _cards[i] = cards[i];
-        }
-    }
+    private static final int CARD_BITS = 6;
+    private static final int CARD_MASK = (1 << CARD_BITS) - 1;
+    private static final int STRENGTH_SHIFT = NUM_CARDS * CARD_BITS;
 
-    /**
-     * Compares the current 'this' main.com.poker.server.PokerHand with the supplied main.com.poker.server.PokerHand.
-     * It returns positive, if this main.com.poker.server.PokerHand is a better hand; negative,
-     * if this hand is worse than the supplied hand; and 0, if this hand
-     * ties in rank with the supplied hand.
-     */
-    public int compareTo(PokerHand thatHand) {
-        HandRanking thisHandRank = getHandRanking(_cards);
-        HandRanking thatHandRank = getHandRanking(thatHand._cards);
-        if(thisHandRank.ordinal() > thatHandRank.ordinal()) { return 1; }
-        else if( thisHandRank.ordinal() < thatHandRank.ordinal()) { return -1; }
-        else {
-            return getTieBreakValue(_cards, thatHand._cards, thatHandRank);
-        }
-    }
-
-    /**
-     * Returns the canonical ranking for a poker hand.
-     */
-    private HandRanking getHandRanking(PokerCard[] hand) {
-        if(isStraightFlush(hand)) { return HandRanking.STRAIGH_FLUSH; }
-        if(isFourOfAKind(hand)) { return HandRanking.FOUR_OF_A_KIND; }
-        if(isFullHouse(hand)) { return HandRanking.FULL_HOUSE; }
-        if(isFlush(hand)) { return HandRanking.FLUSH; }
-        if(isStraight(hand)) { return HandRanking.STRAIGHT; }
-        if(isThreeOfAKind(hand)) { return HandRanking.THREE_OF_A_KIND; }
-        if(isTwoPair(hand)) { return HandRanking.TWO_PAIR; }
-        if(isPair(hand)) { return HandRanking.PAIR; }
-        return HandRanking.HIGH_CARD;
-    }
-
-    /**
-     * Breaks ties among equally ranked PokerHands.
-     */
-    private int getTieBreakValue(PokerCard[] thisHand, PokerCard[] thatHand, HandRanking rank) {
-        switch(rank) {
-            case HIGH_CARD: case STRAIGHT: case FLUSH: case STRAIGH_FLUSH:
-                return tieBreakWithHighCard(thisHand, thatHand, 5);
-            case PAIR: return tieBreakOfAKind(thisHand, thatHand, 5, 2);
-            case TWO_PAIR: return tieBreakTwoPair(thisHand, thatHand);
-            case THREE_OF_A_KIND: return tieBreakOfAKind(thisHand, thatHand, 5, 3);
-            case FULL_HOUSE: return tieBreakFullHouse(thisHand, thatHand);
-            case FOUR_OF_A_KIND: return tieBreakOfAKind(thisHand, thatHand, 5, 4);
-        }
-        return 0;
-    }
+    private final long _key;
 
-    /**
-     * Ignores hand ranking, and determines winning hand according to highest cards.
-     */
-    private int tieBreakWithHighCard(PokerCard[] thisHand, PokerCard[] thatHand, int numToCompare) {
-        sortCardsInHand(thisHand);
-        sortCardsInHand(thatHand);
-        for(int i = 0; i < numToCompare; i++) {
-            if(thisHand[i]._rank.ordinal() > thatHand[i]._rank.ordinal()) { return 1; }
-            else if(thisHand[i]._rank.ordinal() < thatHand[i]._rank.ordinal()) { return -1; }
-        }
-        return 0;
+    public PokerHand(PokerCard[] cards) {
+        this(idsOf(cards));
     }
 
     /**
-     *  Breaks ties among two hands having the same canonical ranking,
-     *  e.g. two hands that are both Three of a Kinds.
+     * Builds a hand from card ids, which must be five different cards.
      */
-    private int tieBreakOfAKind(PokerCard[] thisHand, PokerCard[] thatHand, int handSize, int ofAKind) {
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> thisSeq = splitIntoSequences(thisHand, handSize);
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> thatSeq = splitIntoSequences(thatHand, handSize);
-        int thisOfAKindRank = 0;
-        int thatOfAKindRank = 0;
-        for(ArrayList<PokerCard> cards : thisSeq.values()) {
-            if(cards.size() == ofAKind) {
-                thisOfAKindRank = cards.get(0)._rank.ordinal();
+    public PokerHand(int[] cardIds) {
+        int[] ids = new int[NUM_CARDS];
+        long set = CardSet.EMPTY;
+        for(int i = 0; i < NUM_CARDS; i++) {
+            int id = cardIds[i];
+            set = CardSet.add(set, id);
+            // Insertion sort into canonical order
+            int j = i;
+            while(j > 0 && before(id, ids[j - 1])) {
+                ids[j] = ids[j - 1];
+                j--;
             }
+            ids[j] = id;
         }
-        for(ArrayList<PokerCard> cards : thatSeq.values()) {
-            if(cards.size() == ofAKind) {
-                thatOfAKindRank = cards.get(0)._rank.ordinal();
-            }
+        if(CardSet.size(set) != NUM_CARDS) {
+            throw new IllegalArgumentException("Not five different cards: " + CardSet.toString(set));
         }
 
-        if(thisOfAKindRank > thatOfAKindRank) { return 1; }
-        else if(thisOfAKindRank < thatOfAKindRank) { return -1; }
-        else {
-            return tieBreakWithHighCard(thisHand, thatHand, handSize);
+        long key = HandEvaluator.evaluate(ids);
+        for(int id : ids) {
+            key = key << CARD_BITS | id;
         }
+        _key = key;
     }
 
-    /**
-     * Breaks ties among two hands that are both Two of a Kind.
-     */
-    private int tieBreakTwoPair(PokerCard[] thisHand, PokerCard[] thatHand) {
-    HashMap<PokerDeck.Rank, ArrayList<PokerCard>> thisSeq = splitIntoSequences(thisHand, NUM_CARDS);
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> thatSeq = splitIntoSequences(thatHand, NUM_CARDS);
-        int thisHighPairRank = 0;
-        int thatHighPairRank = 0;
-        for(ArrayList<PokerCard> cards : thisSeq.values()) {
-            if(cards.size() == 2 && cards.get(0)._rank.ordinal() > thisHighPairRank) {
-                thisHighPairRank = cards.get(0)._rank.ordinal();
-            }
-        }
-        for(ArrayList<PokerCard> cards : thatSeq.values()) {
-            if(cards.size() == 2 && cards.get(0)._rank.ordinal() > thisHighPairRank) {
-                thisHighPairRank = cards.get(0)._rank.ordinal();
-            }
-        }
-
-        if(thisHighPairRank > thatHighPairRank) { return 1; }
-        else if(thisHighPairRank < thatHighPairRank) { return -1; }
-        else {
-            ArrayList<PokerCard> thisForRemoving = new ArrayList<PokerCard>(Arrays.asList(thisHand));
-            ArrayList<PokerCard> thatForRemoving = new ArrayList<PokerCard>(Arrays.asList(thisHand));
-
-            for(int i = 0; i < NUM_CARDS; i++) {
-                if(thisForRemoving.get(i)._rank.ordinal() == thisHighPairRank) {
-                    thisForRemoving.remove(i);
-                }
-                if(thatForRemoving.get(i)._rank.ordinal() == thisHighPairRank) {
-                    thatForRemoving.remove(i);
-                }
-            }
-            return tieBreakOfAKind((PokerCard[]) thisForRemoving.toArray(), (PokerCard[]) thatForRemoving.toArray(), 3, 2);
+    private static int[] idsOf(PokerCard[] cards) {
+        int[] ids = new int[NUM_CARDS];
+        for(int i = 0; i < NUM_CARDS; i++) {
+            ids[i] = cards[i].getId();
         }
+        return ids;
     }
 
     /**
-     * Breaks ties among two hands that are both Full Houses.
+     * True if the first card comes before the second in a hand: higher ranks
+     * first, then by suit.
      */
-    private int tieBreakFullHouse(PokerCard[] thisHand, PokerCard[] thatHand) {
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> thisSeq = splitIntoSequences(thisHand, NUM_CARDS);
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> thatSeq = splitIntoSequences(thatHand, NUM_CARDS);
-
-        int thisThreeRank = 0;
-        int thatThreeRank = 0;
-        int thisPairRank = 0;
-        int thatPairRank = 0;
-        for(ArrayList<PokerCard> cards : thisSeq.values()) {
-            if(cards.size() == 3) { thisThreeRank = cards.get(0)._rank.ordinal(); }
-            if(cards.size() == 2) { thisPairRank = cards.get(0)._rank.ordinal(); }
-        }
-
-        for(ArrayList<PokerCard> cards : thatSeq.values()) {
-            if(cards.size() == 3) { thatThreeRank = cards.get(0)._rank.ordinal(); }
-            if(cards.size() == 2) { thatPairRank = cards.get(0)._rank.ordinal(); }
-        }
-
-        if(thisThreeRank > thatThreeRank) { return 1; }
-        else if(thisThreeRank < thatThreeRank) { return -1; }
-        else {
-            if(thisPairRank > thatPairRank) { return 1; }
-            else if(thisPairRank < thatPairRank) { return -1; }
-            else { return 0; }
-        }
+    private static boolean before(int card, int thatCard) {
+        int rank = PokerCard.rankOf(card);
+        int thatRank = PokerCard.rankOf(thatCard);
+        return rank != thatRank ? rank > thatRank : card < thatCard;
     }
 
     /**
-     * Sorts the cards in the supplied main.com.poker.server.PokerCard[] from highest to lowest.
+     * Compares the current 'this' PokerHand with the supplied PokerHand.
+     * It returns positive, if this PokerHand is a better hand, or as good a
+     * hand with later cards; negative, if it is worse, or as good with
+     * earlier cards; and 0 only if both hands hold the same cards.
      */
-    static void sortCardsInHand(PokerCard[] hand) {
-        int highCardIndex;
-        int highCardRank;
-        PokerCard temp;
-        for(int i = 0; i < NUM_CARDS; i++) {
-            highCardIndex = i;
-            highCardRank = hand[i]._rank.ordinal();
-            for(int j = i + 1; j < NUM_CARDS; j++) {
-                if(hand[j]._rank.ordinal() > highCardRank) {
-                    highCardIndex = j;
-                    highCardRank = hand[j]._rank.ordinal();
-                }
-            }
-            temp = hand[i];
-            hand[i] = hand[highCardIndex];
-            hand[highCardIndex] = temp;
-        }
+    public int compareTo(PokerHand thatHand) {
+        return Long.compare(_key, thatHand._key);
     }
 
-    private boolean isStraightFlush(PokerCard[] hand) {
-        return isFlush(hand) && isStraight(hand);
+    /**
+     * Compares the hands as the showdown does. It returns positive, if this
+     * PokerHand is a better hand; negative, if this hand is worse than the
+     * supplied hand; and 0, if this hand ties in rank with the supplied hand.
+     */
+    public int compareStrength(PokerHand thatHand) {
+        return Integer.compare(getStrength(), thatHand.getStrength());
     }
 
-    private boolean isFourOfAKind(PokerCard[] hand) {
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> splitHand = splitIntoSequences(hand, 5);
-        for(ArrayList<PokerCard> cards : splitHand.values()) {
-            if(cards.size() == 4) { return true; }
-        }
-        return false;
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PokerHand && ((PokerHand) o)._key == _key;
     }
 
-    private boolean isFullHouse(PokerCard[] hand) {
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> splitHand = splitIntoSequences(hand, 5);
-        boolean hasThreeOfAKind = false;
-        boolean hasPair = false;
-        for(ArrayList<PokerCard> cards : splitHand.values()) {
-            if(cards.size() == 3) { hasThreeOfAKind = true; }
-            if(cards.size() == 2) { hasPair = true; }
-        }
-        return hasPair && hasThreeOfAKind;
+    @Override
+    public int hashCode() {
+        return Long.hashCode(_key);
     }
 
-    private boolean isFlush(PokerCard[] hand) {
-        PokerDeck.Suit firstSuit = hand[0]._suit;
-        for(int i = 1; i < NUM_CARDS; i++) {
-            if(firstSuit != hand[i]._suit) {
-                return false;
-            }
-        }
-        return true;
+    /**
+     * The canonical key for this hand: hands are equal only if their keys are,
+     * and keys order the same way compareTo does.
+     */
+    public long getKey() {
+        return _key;
     }
 
-    private boolean isStraight(PokerCard[] hand) {
-        PokerDeck.Rank lastRank = hand[0]._rank;
-        for(int i = 0; i < NUM_CARDS - 1; i++) {
-            if( (lastRank.ordinal() - 1) != hand[i + 1]._rank.ordinal() ||
-                    (i == 3 &&
-                            lastRank == PokerDeck.Rank.TWO &&
-                            hand[i + 1]._rank == PokerDeck.Rank.ACE
-                    )
-              ) {
-                return false;
-            }
-            lastRank = hand[i + 1]._rank;
-        }
-        return true;
+    /**
+     * The hand's strength from HandEvaluator: higher is better, and equal
+     * strengths tie.
+     */
+    public int getStrength() {
+        return (int) (_key >>> STRENGTH_SHIFT);
     }
 
-    private boolean isThreeOfAKind(PokerCard[] hand) {
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> splitHand = splitIntoSequences(hand, 5);
-        for(ArrayList<PokerCard> cards : splitHand.values()) {
-            if(cards.size() == 3) { return true; }
-        }
-        return false;
+    /**
+     * Returns the canonical ranking for this poker hand.
+     */
+    public HandRanking getHandRanking() {
+        return HandEvaluator.getHandRanking(getStrength());
     }
 
-    private boolean isTwoPair(PokerCard[] hand) {
-        return getNumPairs(hand) == 2;
+    /**
+     * Returns the id of the card at the supplied index, from highest to lowest.
+     */
+    public int getCardId(int index) {
+        return (int) (_key >>> ((NUM_CARDS - 1 - index) * CARD_BITS)) & CARD_MASK;
     }
 
-    private boolean isPair(PokerCard[] hand) {
-        return getNumPairs(hand) == 1;
+    /**
+     * Returns the shared view of the card at the supplied index, from highest
+     * to lowest.
+     */
+    public PokerCard getCard(int index) {
+        return PokerCard.of(getCardId(index));
     }
 
-    private int getNumPairs(PokerCard[] hand) {
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> splitHand = splitIntoSequences(hand, 5);
-        int numPairs = 0;
-        for(ArrayList<PokerCard> cards : splitHand.values()) {
-            if(cards.size() == 2) {
-                numPairs++;
-            }
+    /**
+     * Returns a new array of the cards in this hand, from highest to lowest.
+     */
+    public PokerCard[] getCards() {
+        PokerCard[] cards = new PokerCard[NUM_CARDS];
+        for(int i = 0; i < NUM_CARDS; i++) {
+            cards[i] = getCard(i);
         }
-        return numPairs;
+        return cards;
     }
 
     /**
-     * This method is handy for determining rank and grouping cards of the same rank.
+     * Returns the cards in this hand as a CardSet.
      */
-    private HashMap<PokerDeck.Rank, ArrayList<PokerCard>> splitIntoSequences(PokerCard[] hand, int numCards) {
-        sortCardsInHand(hand);
-        HashMap<PokerDeck.Rank, ArrayList<PokerCard>> result = new HashMap<PokerDeck.Rank, ArrayList<PokerCard>>();
-        result.put(hand[0]._rank, new ArrayList<PokerCard>());
-        result.get(hand[0]._rank).add(hand[0]);
-        for(int i = 1; i < numCards; i++) {
-            if(result.keySet().contains(hand[i]._rank)) {
-                result.get(hand[i]._rank).add(hand[i]);
-            }
-            else {
-                result.put(hand[i]._rank, new ArrayList<PokerCard>());
-                result.get(hand[i]._rank).add(hand[i]);
-            }
+    public long getCardSet() {
+        long set = CardSet.EMPTY;
+        for(int i = 0; i < NUM_CARDS; i++) {
+            set = CardSet.add(set, getCardId(i));
         }
-        return result;
+        return set;
     }
 
     @Override
     public String toString() {
-        return "|| " + _cards[0].toString() + " | " + _cards[1].toString() + " | " +
-        _cards[2].toString() + " | " + _cards[3].toString() + " | " + _cards[4].toString() + " ||";
+        return "|| " + getCard(0).toString() + " | " + getCard(1).toString() + " | " +
+        getCard(2).toString() + " | " + getCard(3).toString() + " | " + getCard(4).toString() + " ||";
     }
 }
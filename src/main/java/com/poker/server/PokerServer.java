@@ -3,7 +3,11 @@ package com.poker.server;
 import java.net.*;
 import java.io.*;
 import java.util.HashMap;
-import main.com.poker.Messenger;
+import java.util.List;
+import com.poker.BinaryProtocol;
+import com.poker.ClientWriter;
+import com.poker.Messenger;
+import com.poker.Messenger.Template;
 
 /**
  * Created by: John Paul Wallway
@@ -14,27 +18,44 @@ import main.com.poker.Messenger;
  * So, there are one of these per client. The main.com.poker.server.PokerServer object handles main
  * main.com.poker.server.MenuCommand execution, adding players to the shared player list, creating games,
  * and adding them to the shared game list, etc.
+ *
+ * Menu input is handled one line at a time through handleLine. A command that
+ * needs an answer from the client (a user name, a game name) sends its prompt
+ * and waits for the next line instead of blocking on a read, so the same session
+ * can be driven by its own thread (run) or by NioPokerServer's event loops.
+ * While the client is in a game, its lines go to the game instead, and the
+ * game hands the client back to the menu once they exit.
+ *
+ * A client on the binary protocol can also watch a game. The game then sends
+ * it everything that happens at the table, until it types "exit".
  */
-public class PokerServer extends Thread
+public class PokerServer implements Runnable
 {
-    public static enum MenuOption { REGISTER, LIST_GAMES, CREATE_GAME, JOIN_GAME, EXIT_GAME, UNREGISTER, QUIT };
+    public static enum MenuOption { REGISTER, LIST_GAMES, CREATE_GAME, JOIN_GAME, EXIT_GAME, UNREGISTER, QUIT, BINARY_PROTOCOL, TEXT_PROTOCOL, WATCH_GAME };
 
     // Member Variables
     private Socket _clientSocket;
     private Messenger _messenger = new Messenger();
-    private HashMap<String, Game> _games = new HashMap<String, Game>();
-    private HashMap<String, Player> _players = new HashMap<String, Player>();
-    private HashMap<MenuOption, String> _menu = new HashMap<MenuOption, String>();
+    private Registry _registry;
+    private HashMap<MenuOption, Template> _menu = new HashMap<MenuOption, Template>();
     private Player _client;
-    private boolean _running;
+    private volatile boolean _running;
+    private Prompt _prompt;
+    private volatile Game _game;
+    // Set once the connection is gone; read by the game's exit callback
+    private volatile boolean _disconnected;
+    private Game _watching;
+    // The menu command the lines are for, while it waits on its prompts
+    private MenuOption _option;
 
     // Menu Item Strings
-    private static final String REGISTER = "Type \"register\" to sign up as an available player.";
-    private static final String LIST_GAMES = "Type \"list\" to list available games to join.";
-    private static final String CREATE_GAME = "Type \"create\" to create your own game";
-    private static final String JOIN_GAME = "Type \"join\" to join an available game.";
-    private static final String UNREGISTER = "Type \"unregister\" to unregister as an available player and leave the system.";
-    private static final String QUIT = "Type \"quit\" to disconnect from the server.";
+    private static final Template REGISTER = new Template("Type \"register\" to sign up as an available player.");
+    private static final Template LIST_GAMES = new Template("Type \"list\" to list available games to join.");
+    private static final Template CREATE_GAME = new Template("Type \"create\" to create your own game");
+    private static final Template JOIN_GAME = new Template("Type \"join\" to join an available game.");
+    private static final Template WATCH_GAME = new Template("Type \"watch\" to watch a game.");
+    private static final Template UNREGISTER = new Template("Type \"unregister\" to unregister as an available player and leave the system.");
+    private static final Template QUIT = new Template("Type \"quit\" to disconnect from the server.");
 
     // Make the command execution clean
     private HashMap<String, MenuOption> _selectionMap = new HashMap<String, MenuOption>() {
@@ -43,9 +64,12 @@ public class PokerServer extends Thread
         put("list", MenuOption.LIST_GAMES);
         put("create", MenuOption.CREATE_GAME);
         put("join", MenuOption.JOIN_GAME);
+        put("watch", MenuOption.WATCH_GAME);
         put("exit", MenuOption.EXIT_GAME);
         put("unregister", MenuOption.UNREGISTER);
         put("quit", MenuOption.QUIT);
+        put(BinaryProtocol.REQUEST, MenuOption.BINARY_PROTOCOL);
+        put(BinaryProtocol.TEXT_REQUEST, MenuOption.TEXT_PROTOCOL);
         }
     };
 
@@ -56,22 +80,26 @@ public class PokerServer extends Thread
             put(MenuOption.LIST_GAMES, new ListGames());
             put(MenuOption.CREATE_GAME, new CreateGame());
             put(MenuOption.JOIN_GAME, new JoinGame());
+            put(MenuOption.WATCH_GAME, new WatchGame());
             put(MenuOption.UNREGISTER, new Unregister());
             put(MenuOption.QUIT, new Quit());
+            put(MenuOption.BINARY_PROTOCOL, new SwitchProtocol(true));
+            put(MenuOption.TEXT_PROTOCOL, new SwitchProtocol(false));
         }
     };
 
     private void addMenuToMsg() {
-        for(String menuOption : _menu.values()) {
-            _messenger.addLineToMsg(menuOption);
+        for(Template menuOption : _menu.values()) {
+            _messenger.addMenuOptionToMsg(menuOption);
         }
     }
 
-    private synchronized void addPlayerListToMsg() {
-        if(_players.size() == 0) { return; } // don't append if there are no users
+    private void addPlayerListToMsg() {
+        List<Player> players = _registry.getPlayers();
+        if(players.size() == 0) { return; } // don't append if there are no users
         _messenger.addStringToLine("Current players: ");
 
-        for(Player player : _players.values()) {
+        for(Player player : players) {
             _messenger.addStringToLine("  \"" + player._name + "\"  ");
         }
         _messenger.addMsgSplit();
@@ -85,51 +113,166 @@ public class PokerServer extends Thread
     private void handleClientCommand(String clientCommand) {
         if(_selectionMap.keySet().contains(clientCommand)) {
             System.out.println("Executing command: " + clientCommand);
+            _option = _selectionMap.get(clientCommand);
             _commandMap.get(_selectionMap.get(clientCommand)).execute();
         }
         else {
             System.out.println("In else with clientCommand: " + clientCommand);
             _messenger.addClientErrorToMsg(clientCommand);
         }
+    }
+
+    /**
+     * Session for a client whose socket is read by this object's own thread.
+     */
+    public PokerServer(Socket clientSocket, Registry registry) {
+        _registry = registry;
+        _clientSocket = clientSocket;
+    }
+
+    /**
+     * Session for a client whose streams are already set up by the caller, which
+     * then feeds it lines through handleLine.
+     */
+    PokerServer(Player client, Registry registry) {
+        _registry = registry;
+        _client = client;
+    }
+
+    /**
+     * Greets the client and sends the first menu.
+     */
+    void open() {
+        ServerMetrics.connectionOpened();
+        _running = true;
+        _messenger.addGreetingToMsg();
+        _menu.put(MenuOption.REGISTER, REGISTER);
+        _menu.put(MenuOption.LIST_GAMES, LIST_GAMES);
+        _menu.put(MenuOption.QUIT, QUIT);
         addMenuToMsg();
         _messenger.sendClientMsg(_client._out);
     }
 
-    public PokerServer(Socket clientSocket, HashMap<String, Game> games, HashMap<String, Player> players) {
-        _games = games;
-        _players = players;
-        _clientSocket = clientSocket;
-        start();
+    boolean isRunning() {
+        return _running;
+    }
+
+    /**
+     * Handles one line from the client: either the answer to the last prompt,
+     * or a menu command. The menu is sent back once nothing is left waiting
+     * on an answer.
+     *
+     * Each line of a menu command, up to the menu being sent back, is timed
+     * for ServerMetrics. Lines for a game are timed by the game.
+     */
+    void handleLine(String inputLine) {
+        Game game = _game;
+        if(game != null) {
+            game.handleInput(_client, inputLine);
+            return;
+        }
+        long startNanos = System.nanoTime();
+        if(_watching != null) {
+            if(inputLine.trim().equals(BinaryProtocol.RESYNC_REQUEST)) { _watching.resync(_client); }
+            if(!inputLine.trim().equals("exit")) { return; }
+            _watching.removeSpectator(_client);
+            _watching = null;
+        }
+        else if(_prompt == null) {
+            if(inputLine.equals("")) { return; }
+            System.out.println("SERVER's inputLine from clientIn: " + inputLine);
+            handleClientCommand(inputLine);
+        }
+        else {
+            Prompt prompt = _prompt;
+            _prompt = null;
+            prompt.answer(inputLine);
+        }
+
+        if(_prompt == null && _game == null && _watching == null) {
+            addMenuToMsg();
+            _messenger.sendClientMsg(_client._out);
+        }
+        if(_option != null) {
+            ServerMetrics.menuCommand(_option, startNanos);
+            if(_prompt == null) { _option = null; }
+        }
+    }
+
+    /**
+     * The client's connection is gone. Tells any game they're in, which lets
+     * them go once its grace period is over. Their name stays taken until
+     * then, so nobody else can register it and share their chips' account
+     * while they're still seated.
+     */
+    void disconnected() {
+        ServerMetrics.connectionClosed();
+        _disconnected = true;
+        Game game = _game;
+        if(game != null) {
+            game.disconnected(_client);
+        }
+        else {
+            _registry.unregister(_client);
+        }
+        if(_watching != null) {
+            _watching.removeSpectator(_client);
+            _watching = null;
+        }
+    }
+
+    /**
+     * Hands the client to the game. When the game lets them go, the menu is
+     * sent again, on the game's thread, and lines come back to this session.
+     */
+    private void joinGame(final Game game) {
+        _game = game;
+        _client.joiningGame(new Runnable() {
+            public void run() {
+                _client._exitingGame = false;
+                // Before the menu goes out, so the answer to it comes here
+                _game = null;
+                _registry.removeGameIfEmpty(game);
+                if(_disconnected) {
+                    // The game has let go of them, so their name is free
+                    _registry.unregister(_client);
+                    return;
+                }
+                addMenuToMsg();
+                _messenger.sendClientMsg(_client._out);
+            }
+        });
+    }
+
+    /**
+     * Sends the prompt already added to the message, and hands the client's
+     * next line to the given answer.
+     */
+    private void ask(Prompt prompt) {
+        _messenger.sendClientMsg(_client._out);
+        _prompt = prompt;
     }
 
     /**
      * main.com.poker.server.Main menu loop to interact with PokerClients.
      */
     public void run() {
-        _running = true;
         System.out.println ("New PokerClient Thread Started");
 
         try {
             _client = new Player();
-            _client._out = new PrintWriter(_clientSocket.getOutputStream(), true);
+            _client._out = new ClientWriter(_clientSocket.getOutputStream());
             _client._in = new BufferedReader(new InputStreamReader( _clientSocket.getInputStream()));
 
             String inputLine;
-            _messenger.addGreetingToMsg();
-            _menu.put(MenuOption.REGISTER, REGISTER);
-            _menu.put(MenuOption.LIST_GAMES, LIST_GAMES);
-            _menu.put(MenuOption.QUIT, QUIT);
-            addMenuToMsg();
-            _messenger.sendClientMsg(_client._out);
+            open();
 
             // Continue to display options while client is not playing a game
             while (_running && (inputLine = _client._in.readLine()) != null) {
-                if(_client._in == null || _client._out == null) { _players.remove(_client); }
-                if(inputLine.equals("")) { continue; }
-                System.out.println("SERVER's inputLine from clientIn: " + inputLine);
-
-                handleClientCommand(inputLine);
+                if(_client._in == null || _client._out == null) { _registry.unregister(_client); }
+                handleLine(inputLine);
             }
+            disconnected();
 
             _client._out.close();
             _client._in.close();
@@ -143,34 +286,32 @@ public class PokerServer extends Thread
         }
     }
 
-    private class Register implements MenuCommand {
+    /**
+     * The rest of a command that is waiting on the client's next line.
+     */
+    private interface Prompt {
+        void answer(String input);
+    }
+
+    private class Register implements MenuCommand, Prompt {
         public void execute() {
-            String playerName = "";
-            try {
-                _messenger.addRequestUserToMsg();
-                _messenger.sendClientMsg(_client._out);
-                playerName = _client._in.readLine();
+            _messenger.addRequestUserToMsg();
+            ask(this);
+        }
 
-                // Only allow unique player names
-                if(_players.keySet().contains(playerName)) {
-                    addUserExists(playerName);
-                }
-                else {
-                    _client._name = playerName;
-                    _players.put(playerName, _client);
-                    addPlayerListToMsg();
-                    _messenger.addMsgSplit();
+        public void answer(String playerName) {
+            // Only allow unique player names
+            if(!_registry.register(playerName, _client)) {
+                addUserExists(playerName);
+            }
+            else {
+                addPlayerListToMsg();
+                _messenger.addMsgSplit();
 
-                    _menu.remove(MenuOption.REGISTER);
-                    _menu.put(MenuOption.CREATE_GAME, CREATE_GAME);
-                    _menu.put(MenuOption.JOIN_GAME, JOIN_GAME);
-                    _menu.put(MenuOption.UNREGISTER, UNREGISTER);
-                }
-            } catch (IOException e) {
-                _messenger.addFailedToMsg();
-                _messenger.sendClientMsg(_client._out);
-                e.printStackTrace();
-                System.exit(1);
+                _menu.remove(MenuOption.REGISTER);
+                _menu.put(MenuOption.CREATE_GAME, CREATE_GAME);
+                _menu.put(MenuOption.JOIN_GAME, JOIN_GAME);
+                _menu.put(MenuOption.UNREGISTER, UNREGISTER);
             }
         }
     }
@@ -182,110 +323,118 @@ public class PokerServer extends Thread
      */
     private class CreateGame implements MenuCommand {
         public void execute() {
-            String newGameName;
             _messenger.addRequestGameNameToMsg();
-            _messenger.sendClientMsg(_client._out);
-            try {
-                newGameName = _client._in.readLine();
-                if(!_players.keySet().contains(_client._name)) {
-                    _messenger.addLineToMsg("You are not registered!");
-                }
-                else if(_games.keySet().contains(newGameName)) {
-                    _messenger.addLineToMsg(newGameName + " already exists!");
-                    _messenger.addMsgSplit();
-                }
-                else {
-                    Game newGame = new Game(newGameName, _messenger);
-                    _games.put(newGameName, newGame);
-                    _messenger.addLineToMsg("You have created a game: " + newGame._name);
-
-                    newGame.addPlayerToNewPlayerQueue(_client);
-                    newGame.play();
-                    if((_games.get(newGameName) != null ) && (_games.get(newGameName)._players != null) &&
-                            (_games.get(newGameName)._players.size() == 0)) {
-                        _games.remove(newGameName);
+            ask(new Prompt() {
+                public void answer(String newGameName) {
+                    if(!_registry.isRegistered(_client)) {
+                        _messenger.addLineToMsg("You are not registered!");
+                    }
+                    else if(_registry.getGame(newGameName) != null) {
+                        _messenger.addLineToMsg(newGameName + " already exists!");
+                        _messenger.addMsgSplit();
+                    }
+                    else {
+                        _messenger.addRequestGameTypeToMsg();
+                        ask(new GameType(newGameName));
                     }
                 }
-            } catch (IOException e) {
-                _messenger.addFailedToMsg();
-                _messenger.sendClientMsg(_client._out);
+            });
+        }
+    }
 
-                _client._out.flush();
-                _client._out.close();
+    private class GameType implements Prompt {
+        private final String _newGameName;
 
-                try {
-                    _client._in.close();
-                    _clientSocket.close();
-                } catch (IOException e1) {
-                    e1.printStackTrace();
-                }
-                e.printStackTrace();
-                System.exit(1);
+        GameType(String newGameName) {
+            _newGameName = newGameName;
+        }
+
+        public void answer(String gameType) {
+            Game newGame = Game.newGame(gameType, _newGameName, new Messenger());
+            if(newGame == null) {
+                _messenger.addLineToMsg("There is no type of game: " + gameType);
+                _messenger.addMsgSplit();
+                return;
             }
+            if(!_registry.addGame(newGame)) {
+                _messenger.addLineToMsg(_newGameName + " already exists!");
+                _messenger.addMsgSplit();
+                return;
+            }
+
+            joinGame(newGame);
+            newGame.start(_client);
         }
     }
 
     /**
      * Executing client joins the named game, if it exists and they are
-     * registered. Server thread sleeps, waiting for the client to exit
-     * the game; then, return to the main menu.
+     * registered. The client returns to the main menu when the game signals
+     * that they have exited.
      */
-    private class JoinGame implements MenuCommand {
+    private class JoinGame implements MenuCommand, Prompt {
         public void execute() {
             _messenger.addRequestGameNameToMsg();
-            _messenger.sendClientMsg(_client._out);
-            try {
-                String gameName = _client._in.readLine();
-                if(_client == null || _client._name.equals("")) {
-                    _messenger.addLineToMsg("You are not registered! Please hit the enter key.");
-                }
-                else if(_games.keySet().contains(gameName)) {
-                    if(_games.get(gameName).canAddPlayer()) {
-                        _games.get(gameName).addPlayerToNewPlayerQueue(_client);
-                        _client._exitingGame = false;
-                        while (!_client._exitingGame) {
-                            Thread.sleep(1000);
-                        }
-                        _client._exitingGame = false;
-                        if((_games.get(gameName) != null) && (_games.get(gameName)._players != null) &&
-                                _games.get(gameName)._players.size() == 0) {
-                            _games.remove(gameName);
-                        }
-                    }
-                    else {
-                        _messenger.addLineToMsg("This game is full. " + Game.MAX_PLAYERS + " player max.");
-                        _messenger.addMsgSplit();
-                    }
+            ask(this);
+        }
+
+        public void answer(String gameName) {
+            if(_client == null || _client._name.equals("")) {
+                _messenger.addLineToMsg("You are not registered! Please hit the enter key.");
+            }
+            else if(_registry.getGame(gameName) != null) {
+                Game game = _registry.reserveSeat(gameName);
+                if(game != null) {
+                    joinGame(game);
+                    game.addPlayerToNewPlayerQueue(_client);
                 }
                 else {
-                    _messenger.addLineToMsg("There is no game: " + gameName);
+                    _messenger.addLineToMsg("This game is full. " + Game.MAX_PLAYERS + " player max.");
                     _messenger.addMsgSplit();
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+            }
+            else {
+                _messenger.addLineToMsg("There is no game: " + gameName);
+                _messenger.addMsgSplit();
             }
         }
     }
 
     /**
-     * Lists available games to play, and the players in the respective game.
+     * The client watches the named game, without taking a seat, until they
+     * type "exit".
      */
-    private class ListGames implements MenuCommand {
+    private class WatchGame implements MenuCommand, Prompt {
         public void execute() {
+            _messenger.addRequestGameNameToMsg();
+            ask(this);
+        }
 
-            for(Game game : _games.values()) {
-                if(game._players.size() == 0) {
-                    _games.remove(game);
-                }
+        public void answer(String gameName) {
+            Game game = _registry.getGame(gameName);
+            if(game == null) {
+                _messenger.addLineToMsg("There is no game: " + gameName);
+                _messenger.addMsgSplit();
+                return;
             }
+            _messenger.addLineToMsg("Watching game: " + gameName + ". Type \"exit\" to stop watching.");
+            _messenger.sendClientMsg(_client._out);
+            _watching = game;
+            game.addSpectator(_client);
+        }
+    }
+
+    /**
+     * Lists available games to play, and the players in the respective game.
+     */
+    private class ListGames implements MenuCommand {
+        public void execute() {
             _messenger.addLineToMsg("GAMES");
-            for(Game game : _games.values()) {
+            for(Game game : _registry.getGames()) {
                 _messenger.addLineToMsg("\"" + game._name + "\"");
                 _messenger.addLineToMsg("\tPlayers:");
-                for(Player player : game._players) {
-                    _messenger.addLineToMsg("\t\t\t \"" + player._name + "\" ");
+                for(String playerName : game.getPlayerNames()) {
+                    _messenger.addLineToMsg("\t\t\t \"" + playerName + "\" ");
                 }
             }
             _messenger.addMsgSplit();
@@ -298,7 +447,7 @@ public class PokerServer extends Thread
      */
     private class Unregister implements MenuCommand {
         public void execute() {
-            _players.remove(_client._name);
+            _registry.unregister(_client);
             _messenger.addRemovalToMsg();
             addPlayerListToMsg();
             _messenger.addMsgSplit();
@@ -316,11 +465,35 @@ public class PokerServer extends Thread
     private class Quit implements MenuCommand {
         public void execute() {
             // main.com.poker.server.Player is quiting. Remove them from list, if necessary.
-            if(_client != null && _client._name != null
-                    && _players.keySet().contains(_client._name)) {
-                _players.remove(_client._name);
+            if(_client != null && _client._name != null) {
+                _registry.unregister(_client);
             }
             _running = false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Switches the client to the binary protocol, or back to text. The reply,
+     * the menu, is the first message in the new protocol. A server without
+     * the binary protocol answers in text, which is how a client can tell.
+     */
+    private class SwitchProtocol implements MenuCommand {
+        private final boolean _binary;
+
+        SwitchProtocol(boolean binary) {
+            _binary = binary;
+        }
+
+        public void execute() {
+            if(_client._out instanceof ClientWriter) {
+                ((ClientWriter) _client._out).setBinary(_binary);
+                // Only binary clients are sent what happens at a table
+                if(_binary) { _menu.put(MenuOption.WATCH_GAME, WATCH_GAME); }
+                else { _menu.remove(MenuOption.WATCH_GAME); }
+            }
+            else {
+                _messenger.addClientErrorToMsg(_binary ? BinaryProtocol.REQUEST : BinaryProtocol.TEXT_REQUEST);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.poker.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * The registered players and the open games, shared by every client session.
+ * Every session changes these at once, so each change is a single atomic
+ * step on a concurrent map: two clients can't take the same name, and a game
+ * can't be removed as empty while somebody is taking a seat in it. Listings
+ * are copies, which never block and can't fail while others change the maps.
+ *
+ * With a ChipLedger, a player's chips belong to their name: registering picks
+ * up the balance the name left with, or opens an account for it.
+ */
+public class Registry {
+    private final ConcurrentHashMap<String, Player> _players = new ConcurrentHashMap<String, Player>();
+    private final ConcurrentHashMap<String, Game> _games = new ConcurrentHashMap<String, Game>();
+    private final ChipLedger _ledger;
+
+    public Registry() {
+        this(null);
+    }
+
+    public Registry(ChipLedger ledger) {
+        _ledger = ledger;
+    }
+
+    /**
+     * Registers the player under the name, unless somebody already has it.
+     */
+    boolean register(String name, Player player) {
+        if(_players.putIfAbsent(name, player) != null) { return false; }
+        player._name = name;
+        if(_ledger != null) {
+            player._chips = _ledger.openAccount(name);
+            player._ledger = _ledger;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the player, if they are registered. A name somebody else has
+     * since taken is left alone.
+     */
+    void unregister(Player player) {
+        _players.remove(player._name, player);
+    }
+
+    boolean isRegistered(Player player) {
+        return _players.get(player._name) == player;
+    }
+
+    public Player getPlayer(String name) {
+        return _players.get(name);
+    }
+
+    /**
+     * A copy of the registered players, in no particular order.
+     */
+    List<Player> getPlayers() {
+        return Collections.unmodifiableList(new ArrayList<Player>(_players.values()));
+    }
+
+    /**
+     * Opens the game, with a seat reserved for its creator, unless a game with
+     * its name is already open.
+     */
+    boolean addGame(Game game) {
+        game.reserveSeat();
+        return _games.putIfAbsent(game._name, game) == null;
+    }
+
+    public Game getGame(String name) {
+        return _games.get(name);
+    }
+
+    /**
+     * Reserves a seat in the named game, and returns the game. Returns null
+     * if the game is full or gone.
+     */
+    Game reserveSeat(String name) {
+        final Game[] reserved = new Game[1];
+        _games.computeIfPresent(name, new BiFunction<String, Game, Game>() {
+            public Game apply(String gameName, Game game) {
+                if(game.reserveSeat()) { reserved[0] = game; }
+                return game;
+            }
+        });
+        return reserved[0];
+    }
+
+    /**
+     * Closes the game if nobody is seated in it, or about to be.
+     */
+    void removeGameIfEmpty(final Game game) {
+        _games.computeIfPresent(game._name, new BiFunction<String, Game, Game>() {
+            public Game apply(String gameName, Game openGame) {
+                return openGame == game && game.isEmpty() ? null : openGame;
+            }
+        });
+    }
+
+    /**
+     * A copy of the open games, in no particular order.
+     */
+    List<Game> getGames() {
+        return Collections.unmodifiableList(new ArrayList<Game>(_games.values()));
+    }
+}
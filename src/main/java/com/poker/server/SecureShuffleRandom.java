@@ -0,0 +1,119 @@
+package com.poker.server;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A ShuffleRandom backed by SecureRandom, for tables playing for real chips.
+ *
+ * Shuffling threads never call SecureRandom themselves. A background thread
+ * keeps a pool of blocks filled with random ints, and each shuffling thread
+ * takes a whole block at a time from a lock free queue, then draws from it
+ * with no synchronization at all. Spent blocks go back to the filler to be
+ * reused. Only if the filler falls behind does a thread fill its own block.
+ *
+ * There is a single shared instance; the state lives in each thread.
+ */
+public class SecureShuffleRandom implements ShuffleRandom {
+    private static final int BLOCK_SIZE = 1024;
+    private static final int POOL_BLOCKS = 64;
+    private static final int LOW_WATER_BLOCKS = POOL_BLOCKS / 4;
+    private static final SecureShuffleRandom INSTANCE = new SecureShuffleRandom();
+
+    private final SecureRandom _secure = new SecureRandom();
+    private final ConcurrentLinkedQueue<int[]> _filled = new ConcurrentLinkedQueue<int[]>();
+    private final ConcurrentLinkedQueue<int[]> _spent = new ConcurrentLinkedQueue<int[]>();
+    private final AtomicInteger _numFilled = new AtomicInteger();
+    private final Thread _filler;
+
+    private final ThreadLocal<Block> _block = new ThreadLocal<Block>() {
+        @Override
+        protected Block initialValue() {
+            return new Block();
+        }
+    };
+
+    /**
+     * The block a thread is currently drawing from.
+     */
+    private static class Block {
+        int[] _values;
+        int _next;
+    }
+
+    public static SecureShuffleRandom getInstance() {
+        return INSTANCE;
+    }
+
+    private SecureShuffleRandom() {
+        _filler = new Thread("SecureShuffleRandom filler") {
+            @Override
+            public void run() {
+                byte[] bytes = new byte[BLOCK_SIZE * 4];
+                while(true) {
+                    while(_numFilled.get() < POOL_BLOCKS) {
+                        int[] values = _spent.poll();
+                        if(values == null) { values = new int[BLOCK_SIZE]; }
+                        fillBlock(values, bytes);
+                        _filled.offer(values);
+                        _numFilled.incrementAndGet();
+                    }
+                    LockSupport.park(this);
+                }
+            }
+        };
+        _filler.setDaemon(true);
+        _filler.start();
+    }
+
+    public int nextInt(int bound) {
+        if(bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        // Same unbiased reduction as java.util.Random.nextInt(int)
+        int r = nextBits() >>> 1;
+        int m = bound - 1;
+        if((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for(int u = r; u - (r = u % bound) + m < 0; u = nextBits() >>> 1) { }
+        return r;
+    }
+
+    private int nextBits() {
+        Block block = _block.get();
+        if(block._values == null || block._next == BLOCK_SIZE) {
+            nextBlock(block);
+        }
+        return block._values[block._next++];
+    }
+
+    private void nextBlock(Block block) {
+        if(block._values != null) { _spent.offer(block._values); }
+        block._values = _filled.poll();
+        block._next = 0;
+        if(block._values != null) {
+            if(_numFilled.decrementAndGet() < LOW_WATER_BLOCKS) {
+                LockSupport.unpark(_filler);
+            }
+        }
+        else {
+            // The filler has fallen behind, so pay for this block ourselves
+            LockSupport.unpark(_filler);
+            block._values = new int[BLOCK_SIZE];
+            fillBlock(block._values, new byte[BLOCK_SIZE * 4]);
+        }
+    }
+
+    private void fillBlock(int[] values, byte[] bytes) {
+        _secure.nextBytes(bytes);
+        ByteBuffer.wrap(bytes).asIntBuffer().get(values);
+    }
+}
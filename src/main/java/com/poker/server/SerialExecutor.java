@@ -0,0 +1,53 @@
+package com.poker.server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Runs tasks one at a time, in the order they were submitted, on a shared
+ * Executor. Many of these can share a small pool: each holds a pool thread
+ * only while it has tasks queued. A task that submits another task doesn't
+ * run it inline; it runs after the current task returns, so the stack stays
+ * flat even on an executor that runs tasks on the caller's thread.
+ */
+final class SerialExecutor implements Executor {
+    private final Executor _executor;
+    private final ConcurrentLinkedQueue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean _scheduled = new AtomicBoolean();
+    private final Runnable _runTasks = new Runnable() {
+        public void run() {
+            runTasks();
+        }
+    };
+
+    SerialExecutor(Executor executor) {
+        _executor = executor;
+    }
+
+    public void execute(Runnable task) {
+        _tasks.offer(task);
+        if(_scheduled.compareAndSet(false, true)) {
+            _executor.execute(_runTasks);
+        }
+    }
+
+    private void runTasks() {
+        do {
+            Runnable task;
+            while((task = _tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            _scheduled.set(false);
+            // Keep going if a task came in after the queue looked empty
+        } while(!_tasks.isEmpty() && _scheduled.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,254 @@
+package com.poker.server;
+
+import com.poker.Histogram;
+import com.poker.Messenger;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * What the server is doing: connected sockets, open tables and seats, hands
+ * completed, the latency of every menu and game command, and the size of
+ * every message Messenger sends.
+ *
+ * The server records as it goes, from any thread, through the static methods
+ * here. Counts are LongAdders and latencies go into Histograms, both striped
+ * across cores, so recording is a few uncontended increments and never
+ * allocates. A command's latency runs from when its line reaches the session
+ * or the game, to when it has been handled and its answers sent.
+ *
+ * An instance reads them, along with the registry's tables and seats, for JMX
+ * and for a text dump every so often.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+    // Game commands, in the order they're reported
+    static final int BET = 0;
+    static final int FOLD = 1;
+    static final int CHECK = 2;
+    static final int EXIT = 3;
+    private static final String[] GAME_COMMAND_NAMES = { "bet", "fold", "check", "exit" };
+
+    private static final LongAdder CONNECTIONS_OPENED = new LongAdder();
+    private static final LongAdder CONNECTIONS_CLOSED = new LongAdder();
+    private static final LongAdder HANDS_COMPLETED = new LongAdder();
+    private static final Histogram[] MENU_COMMANDS = newHistograms(PokerServer.MenuOption.values().length);
+    private static final Histogram[] GAME_COMMANDS = newHistograms(GAME_COMMAND_NAMES.length);
+
+    private final Registry _registry;
+    private final long _startNanos = System.nanoTime();
+    private long _lastSampleNanos = _startNanos;
+    private long _lastHands;
+    private volatile double _handsPerSecond;
+    private ScheduledExecutorService _dumper;
+
+    public ServerMetrics(Registry registry) {
+        _registry = registry;
+    }
+
+    static void connectionOpened() {
+        CONNECTIONS_OPENED.increment();
+    }
+
+    static void connectionClosed() {
+        CONNECTIONS_CLOSED.increment();
+    }
+
+    static void handCompleted() {
+        HANDS_COMPLETED.increment();
+    }
+
+    static void menuCommand(PokerServer.MenuOption option, long startNanos) {
+        MENU_COMMANDS[option.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    static void gameCommand(int command, long startNanos) {
+        GAME_COMMANDS[command].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     */
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.poker:type=ServerMetrics"));
+    }
+
+    /**
+     * Prints the metrics every period, on a daemon thread, starting one
+     * period from now.
+     */
+    public synchronized void startDump(final PrintStream out, long periodSeconds) {
+        if(_dumper != null) { return; }
+        _dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "poker-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        _dumper.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                out.print(dump());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The metrics as text. Also works out the hands per second since the
+     * last dump.
+     */
+    public synchronized String dump() {
+        sampleHandsPerSecond();
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Server metrics: %d sockets, %d tables, %d seats, %d hands (%.1f/s)%n",
+                getConnectedSockets(), getActiveTables(), getSeatedPlayers(), getHandsCompleted(), _handsPerSecond));
+        text.append(String.format("  %-22s %10s %10s %10s %10s %10s %10s%n", "latency (ms)", "count", "mean", "p50", "p90", "p99", "max"));
+        for(PokerServer.MenuOption option : PokerServer.MenuOption.values()) {
+            appendLatency(text, "menu " + name(option), MENU_COMMANDS[option.ordinal()]);
+        }
+        for(int i = 0; i < GAME_COMMAND_NAMES.length; i++) {
+            appendLatency(text, "game " + GAME_COMMAND_NAMES[i], GAME_COMMANDS[i]);
+        }
+        Histogram bytes = Messenger.getMessageSizes();
+        text.append(String.format("  message bytes: %d sent, mean %.0f, p50 %d, p99 %d, max %d%n", bytes.getCount(),
+                bytes.getMean(), bytes.getPercentile(0.5), bytes.getPercentile(0.99), bytes.getMax()));
+        return text.toString();
+    }
+
+    private static void appendLatency(StringBuilder text, String name, Histogram latency) {
+        if(latency.getCount() == 0) { return; }
+        text.append(String.format("  %-22s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, latency.getCount(),
+                latency.getMean() / 1000, latency.getPercentile(0.5) / 1000.0, latency.getPercentile(0.9) / 1000.0,
+                latency.getPercentile(0.99) / 1000.0, latency.getMax() / 1000.0));
+    }
+
+    private synchronized void sampleHandsPerSecond() {
+        long now = System.nanoTime();
+        long hands = HANDS_COMPLETED.sum();
+        if(now > _lastSampleNanos) {
+            _handsPerSecond = (hands - _lastHands) * 1e9 / (now - _lastSampleNanos);
+        }
+        _lastSampleNanos = now;
+        _lastHands = hands;
+    }
+
+    public long getConnectedSockets() {
+        return CONNECTIONS_OPENED.sum() - CONNECTIONS_CLOSED.sum();
+    }
+
+    public int getActiveTables() {
+        return _registry.getGames().size();
+    }
+
+    public int getSeatedPlayers() {
+        int seats = 0;
+        for(Game game : _registry.getGames()) {
+            seats += game.getSeatCount();
+        }
+        return seats;
+    }
+
+    public long getHandsCompleted() {
+        return HANDS_COMPLETED.sum();
+    }
+
+    /**
+     * Hands completed a second, between the last two dumps; or since the
+     * server started, if there hasn't been a dump.
+     */
+    public double getHandsPerSecond() {
+        if(_dumper == null) {
+            return HANDS_COMPLETED.sum() * 1e9 / Math.max(System.nanoTime() - _startNanos, 1);
+        }
+        return _handsPerSecond;
+    }
+
+    public Map<String, Stats> getMenuCommands() {
+        Map<String, Stats> stats = new LinkedHashMap<String, Stats>();
+        for(PokerServer.MenuOption option : PokerServer.MenuOption.values()) {
+            stats.put(name(option), new Stats(MENU_COMMANDS[option.ordinal()]));
+        }
+        return stats;
+    }
+
+    public Map<String, Stats> getGameCommands() {
+        Map<String, Stats> stats = new LinkedHashMap<String, Stats>();
+        for(int i = 0; i < GAME_COMMAND_NAMES.length; i++) {
+            stats.put(GAME_COMMAND_NAMES[i], new Stats(GAME_COMMANDS[i]));
+        }
+        return stats;
+    }
+
+    public Stats getMessageBytes() {
+        return new Stats(Messenger.getMessageSizes());
+    }
+
+    private static String name(PokerServer.MenuOption option) {
+        return option.name().toLowerCase().replace('_', ' ');
+    }
+
+    private static Histogram[] newHistograms(int count) {
+        Histogram[] histograms = new Histogram[count];
+        for(int i = 0; i < count; i++) {
+            histograms[i] = new Histogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * A histogram's numbers as of when it was read, as JMX shows them.
+     */
+    public static final class Stats {
+        private final long _count;
+        private final double _mean;
+        private final long _p50;
+        private final long _p90;
+        private final long _p99;
+        private final long _max;
+
+        Stats(Histogram histogram) {
+            _count = histogram.getCount();
+            _mean = histogram.getMean();
+            _p50 = histogram.getPercentile(0.5);
+            _p90 = histogram.getPercentile(0.9);
+            _p99 = histogram.getPercentile(0.99);
+            _max = histogram.getMax();
+        }
+
+        public long getCount() {
+            return _count;
+        }
+
+        public double getMean() {
+            return _mean;
+        }
+
+        public long getP50() {
+            return _p50;
+        }
+
+        public long getP90() {
+            return _p90;
+        }
+
+        public long getP99() {
+            return _p99;
+        }
+
+        public long getMax() {
+            return _max;
+        }
+    }
+}
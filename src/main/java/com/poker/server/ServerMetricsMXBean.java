@@ -0,0 +1,29 @@
+package com.poker.server;
+
+import java.util.Map;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * What ServerMetrics shows over JMX, under com.poker:type=ServerMetrics.
+ * Command latencies are in microseconds, message sizes in bytes.
+ */
+public interface ServerMetricsMXBean {
+    long getConnectedSockets();
+
+    int getActiveTables();
+
+    int getSeatedPlayers();
+
+    long getHandsCompleted();
+
+    double getHandsPerSecond();
+
+    Map<String, ServerMetrics.Stats> getMenuCommands();
+
+    Map<String, ServerMetrics.Stats> getGameCommands();
+
+    ServerMetrics.Stats getMessageBytes();
+}
@@ -0,0 +1,18 @@
+package com.poker.server;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * The source of randomness a PokerDeck shuffles with. Tables playing for real
+ * chips use SecureShuffleRandom; simulations, which only need speed and
+ * repeatable runs, use SplittableShuffleRandom.
+ */
+public interface ShuffleRandom {
+
+    /**
+     * Returns a uniformly distributed int from 0 (inclusive) to bound (exclusive).
+     */
+    public int nextInt(int bound);
+}
@@ -0,0 +1,230 @@
+package com.poker.server;
+
+import com.poker.Messenger;
+
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * Plays hands between PlayerAgents, in process, with no sockets and no
+ * pauses: for trying out strategies, and for checking the betting and payouts
+ * over many more hands than anybody could play by hand.
+ *
+ * Each thread runs a table of its own, a Game whose events run on that
+ * thread, with its own agents and its own seeded deck, so the threads share
+ * nothing while they play. Every hand starts each seat with a fresh stack of
+ * ChipLedger.STARTING_CHIPS, and what a seat won or lost is added up after
+ * it. The same seed, threads and agents play the same hands again.
+ *
+ * Usage: java com.poker.server.Simulator [game type] [players per table]
+ * [hands] [agents] [threads] [seed]
+ *
+ * The agents are "call" or "random", or several separated by commas, like
+ * "random,call", that take the seats in turn.
+ */
+public class Simulator {
+    private static final String USAGE =
+            "usage: java com.poker.server.Simulator [game type] [players per table] [hands] [agents] [threads] [seed]";
+
+    private final String _gameType;
+    private final int _tableSize;
+    private final PlayerAgent.Factory _agents;
+    private final int _numThreads;
+    private final long _seed;
+    private final long[] _chipsWon;
+    private long _handsPlayed;
+    private long _chipsUnpaid;
+    private long _elapsedNanos;
+
+    Simulator(String gameType, int tableSize, PlayerAgent.Factory agents, int numThreads, long seed) {
+        if(Game.newGame(gameType, "simulation", new Messenger(), Game.DIRECT) == null) {
+            throw new IllegalArgumentException("Not a game type: " + gameType);
+        }
+        if(tableSize < 2 || tableSize > Game.MAX_PLAYERS) {
+            throw new IllegalArgumentException("Players per table must be 2 to " + Game.MAX_PLAYERS + ": " + tableSize);
+        }
+        _gameType = gameType;
+        _tableSize = tableSize;
+        _agents = agents;
+        _numThreads = numThreads;
+        _seed = seed;
+        _chipsWon = new long[tableSize];
+    }
+
+    public static void main(String[] args) throws Exception {
+        try {
+            String gameType = args.length > 0 ? args[0] : "holdem";
+            int tableSize = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+            long hands = args.length > 2 ? Long.parseLong(args[2]) : 1000000;
+            String agents = args.length > 3 ? args[3] : "random";
+            int numThreads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+            long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+            Simulator simulator = new Simulator(gameType, tableSize, newAgents(agents), numThreads, seed);
+            simulator.run(hands);
+            simulator.printReport(System.out);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Plays the hands, shared out between the threads, and waits for them.
+     */
+    public void run(long hands) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(_seed);
+        Table[] tables = new Table[_numThreads];
+        Thread[] threads = new Thread[_numThreads];
+        for(int i = 0; i < _numThreads; i++) {
+            long share = hands / _numThreads + (i < hands % _numThreads ? 1 : 0);
+            tables[i] = new Table(i, share, random.split());
+            threads[i] = new Thread(tables[i], "simulator-" + i);
+        }
+        long start = System.nanoTime();
+        for(Thread thread : threads) {
+            thread.start();
+        }
+        for(int i = 0; i < _numThreads; i++) {
+            threads[i].join();
+            _handsPlayed += tables[i]._game.getHandsPlayed();
+            _chipsUnpaid += tables[i]._chipsUnpaid;
+            for(int seat = 0; seat < _tableSize; seat++) {
+                _chipsWon[seat] += tables[i]._chipsWon[seat];
+            }
+        }
+        _elapsedNanos = System.nanoTime() - start;
+    }
+
+    public long getHandsPlayed() {
+        return _handsPlayed;
+    }
+
+    /**
+     * What the seat won, or lost if negative, over all the hands.
+     */
+    public long getChipsWon(int seat) {
+        return _chipsWon[seat];
+    }
+
+    /**
+     * Chips that were bet but nobody was paid: what is left over when a pot
+     * doesn't split evenly, and bets left behind by players who exit.
+     */
+    public long getChipsUnpaid() {
+        return _chipsUnpaid;
+    }
+
+    public void printReport(PrintStream out) {
+        double seconds = _elapsedNanos / 1e9;
+        out.println("Game: " + _gameType + ", players per table: " + _tableSize + ", threads: " + _numThreads
+                + ", seed: " + _seed);
+        out.printf("Hands: %d in %.1f s, %.0f hands/s%n", _handsPlayed, seconds, _handsPlayed / seconds);
+        out.printf("%-8s %15s %15s%n", "seat", "chips won", "per hand");
+        for(int seat = 0; seat < _tableSize; seat++) {
+            out.printf("%-8s %15d %15.2f%n", "seat" + seat, _chipsWon[seat],
+                    _handsPlayed == 0 ? 0.0 : (double) _chipsWon[seat] / _handsPlayed);
+        }
+        out.println("Chips unpaid: " + _chipsUnpaid);
+    }
+
+    /**
+     * The named agents, which take the seats in turn.
+     */
+    static PlayerAgent.Factory newAgents(String names) {
+        final String[] agents = names.split(",");
+        for(String agent : agents) {
+            if(!agent.equals("call") && !agent.equals("random")) {
+                throw new IllegalArgumentException("Not an agent: " + agent);
+            }
+        }
+        return new PlayerAgent.Factory() {
+            public PlayerAgent newAgent(int seat, SplittableRandom random) {
+                String agent = agents[seat % agents.length];
+                return agent.equals("call") ? new CallingAgent() : new RandomAgent(random);
+            }
+        };
+    }
+
+    /**
+     * Checks when it can, and calls when it can't.
+     */
+    static final class CallingAgent implements PlayerAgent {
+        public long act(Player player, Game game) {
+            if(player._bet >= game.getMinBet()) { return CHECK; }
+            return game.getMinBet() <= player._chips ? game.getMinBet() : FOLD;
+        }
+    }
+
+    /**
+     * Mostly checks or calls, sometimes raises, and sometimes folds.
+     */
+    static final class RandomAgent implements PlayerAgent {
+        private final SplittableRandom _random;
+
+        RandomAgent(SplittableRandom random) {
+            _random = random;
+        }
+
+        public long act(Player player, Game game) {
+            long minBet = game.getMinBet();
+            int roll = _random.nextInt(100);
+            if(roll < 10 || minBet > player._chips) { return FOLD; }
+            if(roll < 30 && player._chips > minBet) {
+                return Math.min(minBet + 1 + _random.nextInt(100), player._chips);
+            }
+            return player._bet >= minBet ? CHECK : minBet;
+        }
+    }
+
+    /**
+     * One thread's table, and what its seats won.
+     */
+    private final class Table implements Runnable {
+        private final Game _game;
+        private final Player[] _players = new Player[_tableSize];
+        private final long[] _chipsWon = new long[_tableSize];
+        private long _chipsUnpaid;
+
+        Table(int id, long hands, SplittableRandom random) {
+            _game = Game.newGame(_gameType, "simulation-" + id, new Messenger(), Game.DIRECT);
+            _game._dealDelayMillis = 0;
+            _game._handLimit = hands;
+            _game.setDeck(new PokerDeck(new SplittableShuffleRandom(random.nextLong())));
+            _game._onHandFinished = new Runnable() {
+                public void run() {
+                    handFinished();
+                }
+            };
+            for(int seat = 0; seat < _tableSize; seat++) {
+                Player player = new Player();
+                player._name = "seat" + seat;
+                player._agent = _agents.newAgent(seat, random.split());
+                _players[seat] = player;
+                _game._players.add(player);
+            }
+        }
+
+        /**
+         * Deals every hand, on this thread; the game stops at its limit.
+         */
+        public void run() {
+            _game.play();
+        }
+
+        private void handFinished() {
+            long chips = 0;
+            for(int seat = 0; seat < _tableSize; seat++) {
+                Player player = _players[seat];
+                _chipsWon[seat] += player._chips - ChipLedger.STARTING_CHIPS;
+                chips += player._chips;
+                player._chips = ChipLedger.STARTING_CHIPS;
+            }
+            _chipsUnpaid += _tableSize * ChipLedger.STARTING_CHIPS - chips;
+        }
+    }
+}
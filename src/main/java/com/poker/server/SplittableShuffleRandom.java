@@ -0,0 +1,39 @@
+package com.poker.server;
+
+import java.util.SplittableRandom;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A fast, predictable ShuffleRandom for simulations. Like the SplittableRandom
+ * it wraps, an instance is not thread safe: give each deck its own, or split()
+ * one per worker.
+ */
+public class SplittableShuffleRandom implements ShuffleRandom {
+    private final SplittableRandom _rand;
+
+    public SplittableShuffleRandom() {
+        this(new SplittableRandom());
+    }
+
+    public SplittableShuffleRandom(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private SplittableShuffleRandom(SplittableRandom rand) {
+        _rand = rand;
+    }
+
+    public int nextInt(int bound) {
+        return _rand.nextInt(bound);
+    }
+
+    /**
+     * Returns a new, independent generator, e.g. for another thread.
+     */
+    public SplittableShuffleRandom split() {
+        return new SplittableShuffleRandom(_rand.split());
+    }
+}
@@ -0,0 +1,192 @@
+package com.poker.server;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * A hashed timing wheel: one thread, and a ring of buckets that it steps
+ * through one tick at a time. A timeout goes in the bucket its deadline
+ * falls in, with a count of the times the wheel must go round before it is
+ * due, so adding and cancelling are O(1) and each tick only looks at one
+ * bucket, however many timeouts are pending.
+ *
+ * Deadlines are rounded up to the next tick. Tasks run on the wheel's thread,
+ * so they should only hand work off, like a game queueing an event.
+ */
+final class TimingWheel {
+    private final long _tickNanos;
+    private final Bucket[] _wheel;
+    private final int _mask;
+    private final long _startNanos = System.nanoTime();
+    // Added from any thread; moved into buckets by the wheel's thread
+    private final ConcurrentLinkedQueue<Timeout> _added = new ConcurrentLinkedQueue<Timeout>();
+    private final ConcurrentLinkedQueue<Timeout> _cancelled = new ConcurrentLinkedQueue<Timeout>();
+    private long _tick;
+
+    /**
+     * Starts a wheel whose ticks are the given length; numBuckets is rounded
+     * up to a power of two.
+     */
+    TimingWheel(String name, long tickMillis, int numBuckets) {
+        _tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(Math.max(numBuckets, 1) - 1) << 1;
+        _wheel = new Bucket[Math.max(size, 1)];
+        for(int i = 0; i < _wheel.length; i++) {
+            _wheel[i] = new Bucket();
+        }
+        _mask = _wheel.length - 1;
+
+        Thread worker = new Thread(new Runnable() {
+            public void run() {
+                turn();
+            }
+        }, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs the task on the wheel's thread once the delay is over, unless the
+     * returned timeout is cancelled first.
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        long deadline = System.nanoTime() - _startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+        Timeout timeout = new Timeout(this, task, deadline);
+        _added.offer(timeout);
+        return timeout;
+    }
+
+    private void turn() {
+        while(true) {
+            long tickEnd = (_tick + 1) * _tickNanos;
+            long sleepNanos = tickEnd - (System.nanoTime() - _startNanos);
+            if(sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            removeCancelled();
+            addScheduled();
+            _wheel[(int) (_tick & _mask)].expire(tickEnd);
+            _tick++;
+        }
+    }
+
+    private void addScheduled() {
+        Timeout timeout;
+        while((timeout = _added.poll()) != null) {
+            if(timeout._state.get() != Timeout.PENDING) { continue; }
+            // Never schedule into a tick that has already gone by
+            long dueTick = Math.max((timeout._deadline + _tickNanos - 1) / _tickNanos - 1, _tick);
+            timeout._rounds = (dueTick - _tick) / _wheel.length;
+            _wheel[(int) (dueTick & _mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while((timeout = _cancelled.poll()) != null) {
+            if(timeout._bucket != null) {
+                timeout._bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * A task waiting on the wheel.
+     */
+    static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel _timer;
+        private final Runnable _task;
+        private final long _deadline;
+        private final AtomicInteger _state = new AtomicInteger(PENDING);
+        // Only the wheel's thread touches these
+        private long _rounds;
+        private Bucket _bucket;
+        private Timeout _next;
+        private Timeout _previous;
+
+        private Timeout(TimingWheel timer, Runnable task, long deadline) {
+            _timer = timer;
+            _task = task;
+            _deadline = deadline;
+        }
+
+        /**
+         * Stops the task from running. Returns false if it already has, or is
+         * about to.
+         */
+        boolean cancel() {
+            if(!_state.compareAndSet(PENDING, CANCELLED)) { return false; }
+            _timer._cancelled.offer(this);
+            return true;
+        }
+    }
+
+    /**
+     * The timeouts due in one slot of the wheel, as a doubly linked list.
+     */
+    private static final class Bucket {
+        private Timeout _head;
+        private Timeout _tail;
+
+        void add(Timeout timeout) {
+            timeout._bucket = this;
+            if(_head == null) {
+                _head = _tail = timeout;
+            }
+            else {
+                _tail._next = timeout;
+                timeout._previous = _tail;
+                _tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if(timeout._previous == null) { _head = timeout._next; }
+            else { timeout._previous._next = timeout._next; }
+            if(timeout._next == null) { _tail = timeout._previous; }
+            else { timeout._next._previous = timeout._previous; }
+            timeout._next = null;
+            timeout._previous = null;
+            timeout._bucket = null;
+        }
+
+        /**
+         * Runs every timeout due by the end of this tick, and counts down the
+         * rest, which are due on a later turn of the wheel.
+         */
+        void expire(long tickEnd) {
+            Timeout timeout = _head;
+            while(timeout != null) {
+                Timeout next = timeout._next;
+                if(timeout._rounds <= 0 && timeout._deadline <= tickEnd) {
+                    remove(timeout);
+                    if(timeout._state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                        try {
+                            timeout._task.run();
+                        } catch (RuntimeException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+                else {
+                    timeout._rounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
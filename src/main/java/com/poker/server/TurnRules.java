@@ -0,0 +1,31 @@
+package com.poker.server;
+
+import com.poker.Consts;
+
+/**
+ * Created by: John Paul Wallway
+ * UWB: CSS 432, Spring 2014
+ * Professor: Brent Lagesse
+ *
+ * How long a game gives its players to act, and what it does for a player
+ * who doesn't. Fixed when the game is made.
+ */
+final class TurnRules {
+    static final TurnRules DEFAULT = new TurnRules(Consts.ACTION_TIME_MILLIS, Consts.TIME_BANK_MILLIS,
+            Consts.DISCONNECT_GRACE_MILLIS, Consts.AUTO_CHECK);
+
+    final long _actionTimeMillis;
+    final long _timeBankMillis;
+    final long _disconnectGraceMillis;
+    final boolean _autoCheck;
+
+    TurnRules(long actionTimeMillis, long timeBankMillis, long disconnectGraceMillis, boolean autoCheck) {
+        if(actionTimeMillis <= 0 || timeBankMillis < 0 || disconnectGraceMillis < 0) {
+            throw new IllegalArgumentException("Turn times can't be negative, and a turn needs some time");
+        }
+        _actionTimeMillis = actionTimeMillis;
+        _timeBankMillis = timeBankMillis;
+        _disconnectGraceMillis = disconnectGraceMillis;
+        _autoCheck = autoCheck;
+    }
+}
@@ -0,0 +1,56 @@
+package com.poker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+    @Test
+    public void percentilesAreWithinABucketOfTheTruth() {
+        Histogram histogram = new Histogram();
+        for(int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000, histogram.getMax());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertWithin(5000, histogram.getPercentile(0.5));
+        assertWithin(9900, histogram.getPercentile(0.99));
+        assertEquals(10000, histogram.getPercentile(1.0));
+
+        // Small values are exact
+        Histogram small = new Histogram(1);
+        small.record(3);
+        small.record(7);
+        assertEquals(3, small.getPercentile(0.5));
+        histogram.add(small);
+        assertEquals(10002, histogram.getCount());
+    }
+
+    @Test
+    public void threadsRecordingAtOnceLoseNothing() throws InterruptedException {
+        final Histogram histogram = new Histogram(4);
+        Thread[] threads = new Thread[4];
+        for(int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for(int value = 0; value < 100000; value++) {
+                        histogram.record(value % 100);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400000, histogram.getCount());
+        assertEquals(99, histogram.getMax());
+        assertEquals(4 * 1000 * 4950, histogram.getSum());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected * 1.07);
+    }
+}
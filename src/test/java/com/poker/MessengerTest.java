@@ -0,0 +1,340 @@
+package com.poker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import com.poker.BinaryProtocol.Frame;
+import org.junit.Test;
+
+public class MessengerTest {
+    /**
+     * Typed parts must read exactly like the plain lines Game and PokerServer
+     * used to send, line count included.
+     */
+    @Test
+    public void typedPartsKeepTheTextProtocol() {
+        Messenger typed = new Messenger();
+        typed.addSeatToMsg("alice", 9900, 100);
+        typed.addSeatToMsg("bob", 10000, 0);
+        typed.addMsgSplit();
+        typed.addHandToMsg(0x3L, 0L, "Hole: [TWO of HEARTS, THREE of HEARTS]  Board: []");
+        typed.addMsgSplit();
+        typed.addPotToMsg(100, 100);
+        typed.addMenuOptionToMsg("Type \"bet\" to BET");
+        typed.addPromptToMsg("Enter your bet amount: ");
+
+        Messenger lines = new Messenger();
+        lines.addLineToMsg("main.com.poker.server.Player Chip Stacks");
+        lines.addLineToMsg("\talice");
+        lines.addLineToMsg("\t\tChips: 9900");
+        lines.addLineToMsg("\t\tBet: 100");
+        lines.addLineToMsg("main.com.poker.server.Player Chip Stacks");
+        lines.addLineToMsg("\tbob");
+        lines.addLineToMsg("\t\tChips: 10000");
+        lines.addLineToMsg("\t\tBet: 0");
+        lines.addMsgSplit();
+        lines.addLineToMsg("Your Hand");
+        lines.addLineToMsg("Hole: [TWO of HEARTS, THREE of HEARTS]  Board: []");
+        lines.addMsgSplit();
+        lines.addLineToMsg("Total Pot: 100");
+        lines.addLineToMsg("Min Bet: 100");
+        lines.addLineToMsg("Type \"bet\" to BET");
+        lines.addLineToMsg("Enter your bet amount: ");
+
+        assertEquals(sendText(lines), sendText(typed));
+    }
+
+    /**
+     * Encoding into the client's buffer must give the bytes PrintWriter would.
+     */
+    @Test
+    public void clientWriterTextMatchesPrintWriter() throws IOException {
+        Messenger.Template menuOption = new Messenger.Template("Type \"bet\" to BET");
+        for(int trial = 0; trial < 2; trial++) {
+            Messenger typed = new Messenger();
+            Messenger plain = new Messenger();
+            for(Messenger messenger : new Messenger[] { typed, plain }) {
+                messenger.addGreetingToMsg();
+                messenger.addStringToLine("Current players: ");
+                messenger.addStringToLine("  \"Zoë\"  \"\uD83C\uDCA1\"  \"\uD83C\"  ");
+                messenger.addMsgSplit();
+                messenger.addSeatToMsg("alice", Long.MIN_VALUE, -25);
+                messenger.addSeatToMsg("bob", Long.MAX_VALUE, 0);
+                messenger.addHandToMsg(1L, 2L, "Hole: [ACE of SPADES]");
+                messenger.addPotToMsg(1234567890123L, 7);
+                messenger.addMenuOptionToMsg(menuOption);
+                messenger.addClientErrorToMsg("huh");
+                messenger.addToMsgLineCount(3);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ClientWriter out = new ClientWriter(bytes);
+            typed.sendClientMsg(out);
+            String expected = sendText(plain).replace("\uD83C\"", "?\"");
+            assertEquals(expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void binaryClientsGetFrames() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClientWriter out = new ClientWriter(bytes);
+        out.setBinary(true);
+
+        Messenger messenger = new Messenger();
+        messenger.addLineToMsg("Welcome to game: t1");
+        messenger.addStringToLine("é");
+        messenger.addSeatToMsg("alice", 9900, 100);
+        messenger.addSeatToMsg("bob", 10000, 0);
+        messenger.addMsgSplit();
+        messenger.addHandToMsg(0x3L, 0x10L, "two hearts");
+        messenger.addPotToMsg(100, 50);
+        messenger.addMenuOptionToMsg("fold");
+        messenger.addMenuOptionToMsg("check");
+        messenger.addPromptToMsg("Enter your bet amount: ");
+        messenger.sendClientMsg(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Frame frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.TEXT, frame.getOpcode());
+        assertEquals("Welcome to game: t1\né", BinaryProtocol.getRemainingString(frame.getPayload()));
+
+        frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.TABLE_STATE, frame.getOpcode());
+        ByteBuffer seats = frame.getPayload();
+        assertEquals("alice", BinaryProtocol.getString(seats));
+        assertEquals(9900, seats.getLong());
+        assertEquals(100, seats.getLong());
+        assertEquals("bob", BinaryProtocol.getString(seats));
+        assertEquals(10000, seats.getLong());
+        assertEquals(0, seats.getLong());
+        assertFalse(seats.hasRemaining());
+
+        frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.HAND, frame.getOpcode());
+        assertEquals(0x3L, frame.getPayload().getLong());
+        assertEquals(0x10L, frame.getPayload().getLong());
+        assertEquals("two hearts", BinaryProtocol.getRemainingString(frame.getPayload()));
+
+        frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.POT, frame.getOpcode());
+        assertEquals(100, frame.getPayload().getLong());
+        assertEquals(50, frame.getPayload().getLong());
+
+        frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.MENU, frame.getOpcode());
+        assertEquals("fold", BinaryProtocol.getString(frame.getPayload()));
+        assertEquals("check", BinaryProtocol.getString(frame.getPayload()));
+
+        frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.PROMPT, frame.getOpcode());
+        assertEquals("Enter your bet amount: ", BinaryProtocol.getRemainingString(frame.getPayload()));
+
+        frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.END, frame.getOpcode());
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void waitingBroadcastsCoalesceAndGoOutInOrder() throws IOException {
+        final List<Runnable> writes = new ArrayList<Runnable>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClientWriter out = new ClientWriter(bytes, new Executor() {
+            public void execute(Runnable task) {
+                writes.add(task);
+            }
+        });
+        out.setBinary(true);
+
+        Object table = new Object();
+        TableState state = new TableState();
+        state.setNumSeats(1);
+        state.setSeat(0, "alice", 9900, 100);
+        state.setPot(100, 100);
+        out.offer(state.publish(table));
+        Messenger messenger = new Messenger();
+        messenger.addLineToMsg("alice bets 200");
+        out.offer(messenger.encodeBroadcast());
+        state.setSeat(0, "alice", 9700, 300);
+        state.setPot(300, 300);
+        out.offer(state.publish(table));
+        // Nothing is written on the caller's thread, and only one write is queued
+        assertEquals(0, bytes.size());
+        assertEquals(1, writes.size());
+
+        // A message sent straight to the client goes after what's waiting
+        messenger.addPromptToMsg("Enter your bet amount: ");
+        messenger.sendClientMsg(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Frame frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.TEXT, frame.getOpcode());
+        assertEquals("alice bets 200\n", BinaryProtocol.getRemainingString(frame.getPayload()));
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(in).getOpcode());
+        // Only the newer state, and whole, since the client never had the older
+        frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.TABLE_DELTA, frame.getOpcode());
+        TableState received = new TableState();
+        assertEquals(0, frame.getPayload().getLong(0));
+        assertTrue(received.apply(frame.getPayload()));
+        assertEquals(2, received.getVersion());
+        assertEquals(300, received.getPot());
+        assertEquals(9700, received.getChips(0));
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(in).getOpcode());
+        assertEquals(BinaryProtocol.PROMPT, BinaryProtocol.readFrame(in).getOpcode());
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(in).getOpcode());
+        assertEquals(0, in.available());
+
+        // The queued write finds nothing left
+        int written = bytes.size();
+        writes.get(0).run();
+        assertEquals(written, bytes.size());
+    }
+
+    /**
+     * A full outbox drops the oldest events, but keeps the table's state in
+     * its place and never holds more than MAX_OUTBOX.
+     */
+    @Test
+    public void fullOutboxDropsOldestEventsInOrder() throws IOException {
+        final List<Runnable> writes = new ArrayList<Runnable>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClientWriter out = new ClientWriter(bytes, new Executor() {
+            public void execute(Runnable task) {
+                writes.add(task);
+            }
+        });
+        out.setBinary(true);
+
+        TableState state = new TableState();
+        state.setNumSeats(1);
+        state.setSeat(0, "alice", 10000, 0);
+        out.offer(state.publish(new Object()));
+        Messenger messenger = new Messenger();
+        int numEvents = ClientWriter.MAX_OUTBOX + 10;
+        for(int i = 0; i < numEvents; i++) {
+            messenger.addLineToMsg("event " + i);
+            out.offer(messenger.encodeBroadcast());
+        }
+        writes.get(0).run();
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(BinaryProtocol.TABLE_DELTA, BinaryProtocol.readFrame(in).getOpcode());
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(in).getOpcode());
+        int numReceived = 1;
+        for(int i = numEvents - ClientWriter.MAX_OUTBOX + 1; i < numEvents; i++) {
+            Frame frame = BinaryProtocol.readFrame(in);
+            assertEquals("event " + i + "\n", BinaryProtocol.getRemainingString(frame.getPayload()));
+            assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(in).getOpcode());
+            numReceived++;
+        }
+        assertEquals(0, in.available());
+        assertEquals(ClientWriter.MAX_OUTBOX, numReceived);
+    }
+
+    /**
+     * A message to a client whose broadcasts are stuck on a slow socket is
+     * queued behind them, without waiting for the socket.
+     */
+    @Test(timeout = 5000)
+    public void slowClientsDoNotHoldUpTheTable() throws Exception {
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream slow = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int offset, int length) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                bytes.write(b, offset, length);
+            }
+        };
+        ClientWriter out = new ClientWriter(slow, new Executor() {
+            public void execute(Runnable task) {
+                new Thread(task).start();
+            }
+        });
+        out.setBinary(true);
+
+        Messenger messenger = new Messenger();
+        messenger.addLineToMsg("alice bets 200");
+        out.offer(messenger.encodeBroadcast());
+        writing.await();
+        messenger.addPromptToMsg("Enter your bet amount: ");
+        messenger.sendClientMsg(out);
+        assertEquals(0, bytes.size());
+
+        release.countDown();
+        List<Frame> frames = new ArrayList<Frame>();
+        while(frames.size() < 4) {
+            Thread.sleep(10);
+            frames.clear();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            while(in.available() > 0) {
+                frames.add(BinaryProtocol.readFrame(in));
+            }
+        }
+        assertEquals(BinaryProtocol.TEXT, frames.get(0).getOpcode());
+        assertEquals(BinaryProtocol.END, frames.get(1).getOpcode());
+        assertEquals(BinaryProtocol.PROMPT, frames.get(2).getOpcode());
+        assertEquals(BinaryProtocol.END, frames.get(3).getOpcode());
+    }
+
+    @Test
+    public void textClientsAreNotSentBroadcasts() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClientWriter out = new ClientWriter(bytes);
+        Messenger messenger = new Messenger();
+        messenger.addLineToMsg("alice folds");
+        out.offer(messenger.encodeBroadcast());
+        assertEquals(0, bytes.size());
+    }
+
+    @Test
+    public void largeMessagesGrowTheFrameBuffer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClientWriter out = new ClientWriter(bytes);
+        out.setBinary(true);
+        Messenger messenger = new Messenger();
+        StringBuilder expected = new StringBuilder();
+        for(int i = 0; i < 1000; i++) {
+            messenger.addLineToMsg("line " + i);
+            expected.append("line ").append(i).append('\n');
+        }
+        messenger.sendClientMsg(out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(expected.toString(), BinaryProtocol.getRemainingString(BinaryProtocol.readFrame(in).getPayload()));
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(in).getOpcode());
+    }
+
+    private static String sendText(Messenger messenger) {
+        StringWriter text = new StringWriter();
+        messenger.sendClientMsg(new PrintWriter(text));
+        return text.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package com.poker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.poker.BinaryProtocol.Frame;
+import com.poker.server.Game;
+import org.junit.Test;
+
+public class TableStateTest {
+    @Test
+    public void deltasOnlyCarryTheSeatsThatChanged() throws IOException {
+        Object table = new Object();
+        TableState server = fullTable();
+        Broadcast whole = server.publish(table);
+        assertNull(server.publish(table));
+
+        server.setSeat(3, "player3", 9500, 500);
+        server.setPot(500, 500);
+        Broadcast bet = server.publish(table);
+        assertTrue(bet.length() < whole.length() / 4);
+
+        TableState client = new TableState();
+        assertTrue(client.apply(payload(whole._bytes)));
+        assertTrue(client.apply(payload(bet._bytes)));
+        assertEquals(2, client.getVersion());
+        assertEquals(10, client.getNumSeats());
+        assertEquals("player3", client.getName(3));
+        assertEquals(500, client.getBet(3));
+        assertEquals("player9", client.getName(9));
+        assertEquals(10000, client.getChips(9));
+        assertEquals(500, client.getMinBet());
+    }
+
+    @Test
+    public void aClientThatMissedAVersionGetsTheWholeTable() throws IOException {
+        Object table = new Object();
+        TableState server = fullTable();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ClientWriter out = new ClientWriter(bytes, Game.DIRECT);
+        out.setBinary(true);
+        TableState client = new TableState();
+
+        out.offer(server.publish(table));
+        server.setSeat(0, "player0", 9900, 100);
+        server.publish(table);
+        server.setSeat(1, "player1", 9900, 100);
+        Broadcast next = server.publish(table);
+
+        // A client that applies a delta it can't follow on from notices
+        assertFalse(new TableState().apply(payload(next._bytes)));
+
+        // The writer knows this client never got the missed version
+        out.offer(next);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(client.apply(readState(in)));
+        assertTrue(client.apply(readState(in)));
+        assertEquals(3, client.getVersion());
+        assertEquals(100, client.getBet(0));
+        assertEquals(100, client.getBet(1));
+        assertEquals(0, in.available());
+
+        // And after a resync request, the whole table again
+        int before = bytes.size();
+        out.forgetTableState();
+        out.offer(next);
+        assertEquals(next._full.length, bytes.size() - before);
+    }
+
+    private static TableState fullTable() {
+        TableState state = new TableState();
+        state.setNumSeats(10);
+        for(int i = 0; i < 10; i++) {
+            state.setSeat(i, "player" + i, 10000, 0);
+        }
+        return state;
+    }
+
+    private static ByteBuffer readState(DataInputStream in) throws IOException {
+        Frame frame = BinaryProtocol.readFrame(in);
+        assertEquals(BinaryProtocol.TABLE_DELTA, frame.getOpcode());
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(in).getOpcode());
+        return frame.getPayload();
+    }
+
+    private static ByteBuffer payload(byte[] message) throws IOException {
+        return BinaryProtocol.readFrame(new DataInputStream(new ByteArrayInputStream(message))).getPayload();
+    }
+}
@@ -0,0 +1,33 @@
+package com.poker.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+
+import com.poker.server.NioPokerServer;
+import com.poker.server.Registry;
+import org.junit.Test;
+
+public class LoadGeneratorTest {
+    @Test(timeout = 30000)
+    public void botsFillTheirTablesAndPlay() throws Exception {
+        NioPokerServer server = new NioPokerServer(new Registry(), 2);
+        server.bind(0);
+        Thread acceptor = new Thread(server, "test-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            LoadGenerator generator = new LoadGenerator(new InetSocketAddress("localhost", server.getLocalPort()),
+                    12, 4, 3000, "random", 0, 2);
+            generator.run();
+            assertEquals(12, generator.getSeated());
+            assertTrue(generator.getHandsPlayed() > 0);
+            assertEquals(12, generator.getCount("register"));
+            assertTrue(generator.getCount("check") + generator.getCount("bet amount") > 0);
+        }
+        finally {
+            server.close();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 package com.poker.client;
 
-public class PokerClientTes {
+public class PokerClientTest {
 
 }
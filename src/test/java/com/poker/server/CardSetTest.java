@@ -0,0 +1,75 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.poker.server.PokerDeck.Rank;
+import com.poker.server.PokerDeck.Suit;
+import org.junit.Test;
+
+public class CardSetTest {
+
+    @Test
+    public void idsRoundTripThroughViews() {
+        for(int id = 0; id < PokerCard.NUM_CARDS; id++) {
+            PokerCard card = PokerCard.of(id);
+            assertEquals(id, card.getId());
+            assertEquals(card._rank.ordinal(), PokerCard.rankOf(id));
+            assertEquals(card._suit.ordinal(), PokerCard.suitOf(id));
+        }
+        assertSame(PokerCard.of(5), PokerCard.of(5));
+    }
+
+    @Test
+    public void addRemoveContains() {
+        int aceOfSpades = PokerCard.id(Suit.SPADES, Rank.ACE);
+        long set = CardSet.add(CardSet.EMPTY, aceOfSpades);
+        assertTrue(CardSet.contains(set, aceOfSpades));
+        assertEquals(1, CardSet.size(set));
+        assertEquals(aceOfSpades, CardSet.firstCard(set));
+
+        set = CardSet.remove(set, aceOfSpades);
+        assertFalse(CardSet.contains(set, aceOfSpades));
+        assertEquals(CardSet.EMPTY, set);
+        assertEquals(-1, CardSet.firstCard(set));
+    }
+
+    @Test
+    public void fullDeckHoldsEveryCard() {
+        long set = CardSet.EMPTY;
+        for(int id = 0; id < PokerCard.NUM_CARDS; id++) {
+            set = CardSet.add(set, id);
+        }
+        assertEquals(CardSet.FULL_DECK, set);
+        assertEquals(PokerCard.NUM_CARDS, CardSet.size(set));
+        assertEquals(0x1FFF, CardSet.rankMask(set));
+        for(int suit = 0; suit < PokerCard.NUM_SUITS; suit++) {
+            assertEquals(0x1FFF, CardSet.suitMask(set, suit));
+        }
+    }
+
+    @Test
+    public void rankAndSuitMasks() {
+        long set = CardSet.of(PokerCard.id(Suit.HEARTS, Rank.TWO), PokerCard.id(Suit.CLUBS, Rank.TWO),
+                PokerCard.id(Suit.CLUBS, Rank.KING));
+        assertEquals(1 | 1 << Rank.KING.ordinal(), CardSet.rankMask(set));
+        assertEquals(1, CardSet.suitMask(set, Suit.HEARTS.ordinal()));
+        assertEquals(1 | 1 << Rank.KING.ordinal(), CardSet.suitMask(set, Suit.CLUBS.ordinal()));
+        assertEquals(0, CardSet.suitMask(set, Suit.SPADES.ordinal()));
+    }
+
+    @Test
+    public void dealtHandsUseIds() {
+        PokerDeck deck = new PokerDeck();
+        int[] ids = new int[PokerHand.NUM_CARDS];
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = deck.dealCardId();
+        }
+        PokerHand hand = new PokerHand(ids);
+        assertEquals(CardSet.of(ids), hand.getCardSet());
+        assertEquals(HandEvaluator.evaluate(ids), HandEvaluator.evaluate(hand.getCards()));
+        assertEquals(CardSet.FULL_DECK & ~hand.getCardSet(), deck.remainingCards());
+    }
+}
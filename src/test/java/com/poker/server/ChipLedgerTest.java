@@ -0,0 +1,106 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChipLedgerTest {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void balancesSurviveARestart() throws Exception {
+        File dir = _folder.newFolder("ledger");
+        ChipLedger ledger = new ChipLedger(dir);
+        assertEquals(ChipLedger.STARTING_CHIPS, ledger.openAccount("alice"));
+        ledger.record("alice", -250, ChipLedger.BET);
+        ledger.openAccount("bob");
+        long last = ledger.record("bob", 250, ChipLedger.WIN);
+        ledger.sync(last);
+        assertEquals(9750L, (long) ledger.getBalance("alice"));
+        // Simulate a crash: the log is all there is
+        ChipLedger recovered = new ChipLedger(dir);
+        assertEquals(9750L, (long) recovered.getBalance("alice"));
+        assertEquals(10250L, (long) recovered.getBalance("bob"));
+        assertNull(recovered.getBalance("carol"));
+        recovered.close();
+    }
+
+    @Test
+    public void replaysTheLogAfterTheLatestSnapshot() throws Exception {
+        File dir = _folder.newFolder("ledger");
+        ChipLedger ledger = new ChipLedger(dir, 1, 16, 100);
+        ledger.openAccount("alice");
+        long last = 0;
+        for(int i = 0; i < 1000; i++) {
+            last = ledger.record("alice", i % 2 == 0 ? -10 : 5, ChipLedger.BET);
+        }
+        ledger.sync(last);
+        // Snapshots replace the older log files
+        assertTrue(dir.list().length <= 4);
+
+        // Simulate a crash, so only what was committed is there
+        ChipLedger recovered = new ChipLedger(dir);
+        assertEquals(ChipLedger.STARTING_CHIPS - 2500, (long) recovered.getBalance("alice"));
+        // New entries carry on the sequence
+        assertEquals(last + 1, recovered.record("alice", 1, ChipLedger.WIN));
+        recovered.close();
+
+        assertEquals(ChipLedger.STARTING_CHIPS - 2499, (long) new ChipLedger(dir).getBalance("alice"));
+    }
+
+    @Test
+    public void ignoresAPartlyWrittenLastEntry() throws Exception {
+        File dir = _folder.newFolder("ledger");
+        ChipLedger ledger = new ChipLedger(dir, 1, 1024, 1000000);
+        ledger.openAccount("alice");
+        ledger.sync(ledger.record("alice", -100, ChipLedger.BET));
+
+        // Crash part way through writing the last entry
+        File wal = dir.listFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(wal, "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+
+        ChipLedger recovered = new ChipLedger(dir);
+        assertEquals(ChipLedger.STARTING_CHIPS, (long) recovered.getBalance("alice"));
+        recovered.sync(recovered.record("alice", -1, ChipLedger.BET));
+        recovered.close();
+        assertEquals(ChipLedger.STARTING_CHIPS - 1, (long) new ChipLedger(dir).getBalance("alice"));
+    }
+
+    @Test
+    public void batchesManyEntriesIntoFewSyncs() throws Exception {
+        ChipLedger ledger = new ChipLedger(_folder.newFolder("ledger"), 5, 4096, 1000000);
+        long last = 0;
+        for(int i = 0; i < 10000; i++) {
+            last = ledger.record("player" + (i % 50), -1, ChipLedger.BET);
+        }
+        ledger.sync(last);
+        assertTrue("syncs: " + ledger.getSyncCount(), ledger.getSyncCount() < 100);
+        ledger.close();
+    }
+
+    @Test
+    public void registeringPicksUpTheSavedBalance() throws Exception {
+        File dir = _folder.newFolder("ledger");
+        ChipLedger ledger = new ChipLedger(dir);
+        Registry registry = new Registry(ledger);
+        Player alice = new Player();
+        registry.register("alice", alice);
+        alice.addChips(-500, ChipLedger.BET);
+        registry.unregister(alice);
+        ledger.close();
+
+        Player returning = new Player();
+        new Registry(new ChipLedger(dir)).register("alice", returning);
+        assertEquals(ChipLedger.STARTING_CHIPS - 500, returning._chips);
+    }
+}
@@ -0,0 +1,49 @@
+package com.poker.server;
+
+import static com.poker.server.PokerHandTest.cardSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class EquityCalculatorTest {
+    private final EquityCalculator _calculator = new EquityCalculator();
+
+    @Test
+    public void acesAgainstKingsPreflop() {
+        long[] hole = { cardSet("AH", "AS"), cardSet("KD", "KC") };
+        EquityResult result = _calculator.calculate(hole, CardSet.EMPTY, CardSet.EMPTY,
+                0.002, TimeUnit.SECONDS.toNanos(5));
+        assertTrue(result.toString(), result.getMaxStandardError() <= 0.002);
+        // 81.24% exactly, a little under the usual 81.9%, since aces only
+        // play high here. The tolerance is five standard errors
+        assertEquals(0.8124, result.getEquity(0), 0.01);
+        assertEquals(1.0, result.getEquity(0) + result.getEquity(1), 1e-9);
+    }
+
+    @Test
+    public void completeBoardIsExact() {
+        long[] hole = { cardSet("AH", "KH"), cardSet("QD", "QC"), cardSet("2S", "3S") };
+        long board = cardSet("QH", "JH", "TH", "4C", "5D");
+        EquityResult result = _calculator.calculate(hole, board, CardSet.EMPTY, 0.01, TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, result.getNumRunOuts());
+        assertEquals(1.0, result.getWinProbability(0), 0);
+        assertEquals(0.0, result.getEquity(2), 0);
+    }
+
+    @Test
+    public void splitPotsAreShared() {
+        long[] hole = { cardSet("2H", "3H"), cardSet("2D", "3D") };
+        long board = cardSet("AS", "KS", "QC", "JC", "TD");
+        EquityResult result = _calculator.calculate(hole, board, CardSet.EMPTY, 0.01, TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1.0, result.getTieProbability(1), 0);
+        assertEquals(0.5, result.getEquity(1), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sharedCardsAreRejected() {
+        long[] hole = { cardSet("AH", "AS"), cardSet("AH", "KC") };
+        _calculator.submit(hole, CardSet.EMPTY, CardSet.EMPTY, 0.01, 1000000);
+    }
+}
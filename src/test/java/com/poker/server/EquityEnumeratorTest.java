@@ -0,0 +1,98 @@
+package com.poker.server;
+
+import static com.poker.server.PokerHandTest.cardSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class EquityEnumeratorTest {
+    private final EquityEnumerator _enumerator = new EquityEnumerator();
+
+    @Test
+    public void flopMatchesCompareTo() {
+        long[] hole = { cardSet("AH", "KH"), cardSet("QS", "QD") };
+        long board = cardSet("QH", "7H", "2C");
+        EquityResult result = _enumerator.calculate(hole, board, CardSet.EMPTY);
+        assertEquals(990, result.getNumRunOuts());
+        assertSameAsCompareTo(hole, board, CardSet.EMPTY, result);
+    }
+
+    @Test
+    public void threeWayTurnWithDeadCardsMatchesCompareTo() {
+        long[] hole = { cardSet("AH", "AD"), cardSet("9S", "TS"), cardSet("5C", "5D") };
+        long board = cardSet("8S", "JS", "5H", "2D");
+        long dead = cardSet("3C", "KS");
+        EquityResult result = _enumerator.calculate(hole, board, dead);
+        assertEquals(52 - 6 - 4 - 2, result.getNumRunOuts());
+        assertSameAsCompareTo(hole, board, dead, result);
+    }
+
+    @Test
+    public void preflopAgreesWithSampling() {
+        long[] hole = { cardSet("AH", "AS"), cardSet("KD", "KC") };
+        EquityResult result = _enumerator.calculate(hole, CardSet.EMPTY, CardSet.EMPTY);
+        assertEquals(1712304, result.getNumRunOuts());
+        assertTrue(result.getTieProbability(0) > 0);
+
+        EquityResult sampled = new EquityCalculator().calculate(hole, CardSet.EMPTY, CardSet.EMPTY,
+                0.001, TimeUnit.SECONDS.toNanos(5));
+        assertEquals(result.getEquity(0), sampled.getEquity(0), 5 * sampled.getStandardError(0));
+    }
+
+    /**
+     * Settles every run out by picking each player's best five cards, and
+     * then the winners, with PokerHand comparisons alone.
+     */
+    private static void assertSameAsCompareTo(long[] hole, long board, long dead, EquityResult result) {
+        int[] deck = OmahaEvaluatorTest.toIds(EquityCalculator.getRemainingCards(hole, board, dead));
+        int numToDeal = OmahaEvaluator.NUM_BOARD_CARDS - CardSet.size(board);
+        double[] wins = new double[hole.length];
+        double[] ties = new double[hole.length];
+        long numRunOuts = 0;
+        for(int a = 0; a < deck.length; a++) {
+            for(int b = numToDeal == 2 ? a + 1 : deck.length - 1; b < deck.length; b++) {
+                long fullBoard = CardSet.add(board, deck[a]);
+                if(numToDeal == 2) { fullBoard = CardSet.add(fullBoard, deck[b]); }
+                PokerHand[] best = new PokerHand[hole.length];
+                for(int p = 0; p < hole.length; p++) {
+                    best[p] = bestByCompareTo(OmahaEvaluatorTest.toIds(hole[p] | fullBoard));
+                }
+                int numBest = 0;
+                PokerHand winner = null;
+                for(PokerHand hand : best) {
+                    if(winner == null || hand.compareStrength(winner) > 0) { winner = hand; numBest = 1; }
+                    else if(hand.compareStrength(winner) == 0) { numBest++; }
+                }
+                for(int p = 0; p < hole.length; p++) {
+                    if(best[p].compareStrength(winner) != 0) { continue; }
+                    if(numBest == 1) { wins[p]++; }
+                    else { ties[p]++; }
+                }
+                numRunOuts++;
+            }
+        }
+        assertEquals(numRunOuts, result.getNumRunOuts());
+        for(int p = 0; p < hole.length; p++) {
+            assertEquals(wins[p] / numRunOuts, result.getWinProbability(p), 0);
+            assertEquals(ties[p] / numRunOuts, result.getTieProbability(p), 0);
+        }
+    }
+
+    private static PokerHand bestByCompareTo(int[] seven) {
+        PokerHand best = null;
+        int[] five = new int[PokerHand.NUM_CARDS];
+        for(int skip1 = 0; skip1 < seven.length; skip1++) {
+            for(int skip2 = skip1 + 1; skip2 < seven.length; skip2++) {
+                int n = 0;
+                for(int i = 0; i < seven.length; i++) {
+                    if(i != skip1 && i != skip2) { five[n++] = seven[i]; }
+                }
+                PokerHand hand = new PokerHand(five);
+                if(best == null || hand.compareTo(best) > 0) { best = hand; }
+            }
+        }
+        return best;
+    }
+}
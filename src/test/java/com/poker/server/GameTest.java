@@ -0,0 +1,260 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.poker.BinaryProtocol;
+import com.poker.BinaryProtocol.Frame;
+import com.poker.ClientWriter;
+import com.poker.Consts;
+import com.poker.Messenger;
+import com.poker.TableState;
+import org.junit.Test;
+
+public class GameTest {
+    @Test
+    public void playsHandsDrivenByPlayerInput() {
+        Game game = Game.newGame("five", "test", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        StringWriter aliceOut = new StringWriter();
+        StringWriter bobOut = new StringWriter();
+        Player alice = player("alice", aliceOut);
+        Player bob = player("bob", bobOut);
+        AtomicInteger exits = new AtomicInteger();
+        alice.joiningGame(countExit(exits));
+        bob.joiningGame(countExit(exits));
+
+        game.start(alice);
+        assertTrue(aliceOut.toString().contains("You have created a game: test"));
+        assertTrue(aliceOut.toString().contains("Type \"check\" to CHECK"));
+
+        // Bob waits for the next hand, and types ahead of his turn
+        game.addPlayerToNewPlayerQueue(bob);
+        game.handleInput(bob, "check");
+        assertEquals(1, game._players.size());
+        assertEquals("", bobOut.toString());
+
+        game.handleInput(alice, "check");
+        assertEquals(2, game._players.size());
+        assertTrue(bobOut.toString().contains("Welcome to game: test"));
+
+        // Whoever acts first, both have checked once the hand turns over
+        game.handleInput(alice, "check");
+        assertTrue(bobOut.toString().contains("Winning hands"));
+
+        game.handleInput(alice, "exit");
+        game.handleInput(bob, "exit");
+        assertEquals(2, exits.get());
+        assertEquals(0, game._players.size());
+    }
+
+    @Test
+    public void rejectsBetsOverTheChipStack() {
+        Game game = Game.newGame("holdem", "test", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        StringWriter aliceOut = new StringWriter();
+        Player alice = player("alice", aliceOut);
+        game.start(alice);
+
+        game.handleInput(alice, "bet");
+        assertTrue(aliceOut.toString().contains("Enter your bet amount: "));
+        game.handleInput(alice, "20000");
+        assertTrue(aliceOut.toString().contains("You don't have enough chips."));
+        assertEquals(10000, alice._chips);
+
+        game.handleInput(alice, "bet");
+        game.handleInput(alice, "100");
+        assertTrue(aliceOut.toString().contains("Winners each won: 100"));
+    }
+
+    /**
+     * A valid bet ends the player's turn, so their next line is a command
+     * again rather than another bet amount.
+     */
+    @Test
+    public void validBetEndsTheTurn() {
+        Game game = Game.newGame("five", "test", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        StringWriter aliceOut = new StringWriter();
+        Player alice = player("alice", aliceOut);
+        game.start(alice);
+
+        game.handleInput(alice, "bet");
+        game.handleInput(alice, "100");
+        assertTrue(aliceOut.toString().contains("Winners each won: 100"));
+        int answered = aliceOut.toString().length();
+        game.handleInput(alice, "bet");
+        assertTrue(aliceOut.toString().substring(answered).contains("Enter your bet amount: "));
+    }
+
+    @Test
+    public void manyHandsKeepTheStackFlat() {
+        Game game = Game.newGame("holdem", "test", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        Player alice = player("alice", new Writer() {
+            public void write(char[] chars, int offset, int length) { }
+            public void flush() { }
+            public void close() { }
+        });
+        game.start(alice);
+
+        for(int i = 0; i < 10000; i++) {
+            game.handleInput(alice, "check");
+        }
+        assertEquals(1, game._players.size());
+    }
+
+    @Test
+    public void linesTypedAheadAreCapped() {
+        Game game = Game.newGame("five", "test", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        StringWriter bobOut = new StringWriter();
+        Player alice = player("alice", new StringWriter());
+        Player bob = player("bob", bobOut);
+        game.start(alice);
+        game.addPlayerToNewPlayerQueue(bob);
+
+        for(int i = 0; i < Consts.MAX_PENDING_INPUT; i++) {
+            game.handleInput(bob, "check");
+        }
+        assertEquals("", bobOut.toString());
+        game.handleInput(bob, "fold");
+        assertTrue(bobOut.toString().contains("Wait for your turn. Ignored: fold"));
+        assertEquals(Consts.MAX_PENDING_INPUT, bob._pendingInput.size());
+    }
+
+    @Test(timeout = 5000)
+    public void actsForPlayersWhoRunOutOfTime() throws InterruptedException {
+        Game game = Game.newGame("five", "test", new Messenger(), Game.DIRECT, new TurnRules(20, 30, 0, true));
+        game._dealDelayMillis = 0;
+        StringWriter aliceOut = new StringWriter();
+        Player alice = player("alice", aliceOut);
+        game.start(alice);
+
+        awaitOutput(aliceOut, "You ran out of time, and checked.");
+        assertTrue(aliceOut.toString().contains("Time is up. Using your time bank"));
+        assertEquals(0, alice._timeBankMillis);
+        game.handleInput(alice, "exit");
+
+        game = Game.newGame("five", "test", new Messenger(), Game.DIRECT, new TurnRules(20, 0, 0, false));
+        game._dealDelayMillis = 0;
+        aliceOut = new StringWriter();
+        alice = player("alice", aliceOut);
+        game.start(alice);
+        awaitOutput(aliceOut, "You ran out of time, and folded.");
+        assertEquals(1, game._players.size());
+    }
+
+    @Test(timeout = 5000)
+    public void disconnectedPlayersLeaveAfterTheGracePeriod() throws InterruptedException {
+        Game game = Game.newGame("five", "test", new Messenger(), Game.DIRECT,
+                new TurnRules(20, Consts.TIME_BANK_MILLIS, 50, true));
+        game._dealDelayMillis = 0;
+        StringWriter aliceOut = new StringWriter();
+        Player alice = player("alice", aliceOut);
+        game.start(alice);
+
+        game.disconnected(alice);
+        awaitOutput(aliceOut, "exiting the game");
+        assertEquals(0, game._players.size());
+        assertEquals(Consts.TIME_BANK_MILLIS, alice._timeBankMillis);
+    }
+
+    @Test
+    public void spectatorsAreToldWhatHappensAtTheTable() throws IOException {
+        Game game = Game.newGame("five", "test", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        Player alice = player("alice", new StringWriter());
+        ByteArrayOutputStream carolOut = new ByteArrayOutputStream();
+        Player carol = new Player();
+        carol._out = new ClientWriter(carolOut, Game.DIRECT);
+        ((ClientWriter) carol._out).setBinary(true);
+
+        game.start(alice);
+        game.addSpectator(carol);
+        game.handleInput(alice, "bet");
+        game.handleInput(alice, "250");
+
+        List<String> events = new ArrayList<String>();
+        long largestPot = 0;
+        TableState table = new TableState();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(carolOut.toByteArray()));
+        while(in.available() > 0) {
+            Frame frame = BinaryProtocol.readFrame(in);
+            if(frame.getOpcode() == BinaryProtocol.TEXT) {
+                events.add(BinaryProtocol.getRemainingString(frame.getPayload()));
+            }
+            else if(frame.getOpcode() == BinaryProtocol.TABLE_DELTA) {
+                assertTrue(table.apply(frame.getPayload()));
+                largestPot = Math.max(largestPot, table.getPot());
+            }
+        }
+        assertEquals("alice bets 250\n", events.get(0));
+        assertTrue(events.get(1).startsWith("Showdown"));
+        assertTrue(events.get(1).contains("Winners each won: 250"));
+        assertEquals(250, largestPot);
+
+        // Nothing more once they stop watching
+        game.removeSpectator(carol);
+        int watched = carolOut.size();
+        game.handleInput(alice, "check");
+        assertEquals(watched, carolOut.size());
+    }
+
+    @Test
+    public void binaryPlayersAreSentTheTableOnlyWhenItChanges() throws IOException {
+        Game game = Game.newGame("holdem", "test", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        ByteArrayOutputStream aliceOut = new ByteArrayOutputStream();
+        Player alice = new Player();
+        alice._name = "alice";
+        alice._out = new ClientWriter(aliceOut, Game.DIRECT);
+        ((ClientWriter) alice._out).setBinary(true);
+
+        game.start(alice);
+        // Checking changes nothing at the table
+        game.handleInput(alice, "check");
+        game.handleInput(alice, "check");
+
+        int states = 0;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(aliceOut.toByteArray()));
+        while(in.available() > 0) {
+            byte opcode = BinaryProtocol.readFrame(in).getOpcode();
+            assertTrue(opcode != BinaryProtocol.TABLE_STATE && opcode != BinaryProtocol.POT);
+            if(opcode == BinaryProtocol.TABLE_DELTA) { states++; }
+        }
+        assertEquals(1, states);
+    }
+
+    private static void awaitOutput(StringWriter out, String text) throws InterruptedException {
+        while(!out.toString().contains(text)) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static Player player(String name, Writer out) {
+        Player player = new Player();
+        player._name = name;
+        player._out = new PrintWriter(out, true);
+        return player;
+    }
+
+    private static Runnable countExit(final AtomicInteger exits) {
+        return new Runnable() {
+            public void run() {
+                exits.incrementAndGet();
+            }
+        };
+    }
+}
@@ -0,0 +1,172 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import com.poker.ClientWriter;
+import com.poker.Messenger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HandHistoryLogTest {
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void readsBackEveryHandAcrossSegments() throws Exception {
+        File dir = _folder.newFolder("hands");
+        HandHistoryLog log = new HandHistoryLog(dir, 256);
+        for(int i = 0; i < 20; i++) {
+            log.append(record(i));
+        }
+        log.close();
+        assertTrue(HandHistoryLog.listSegments(dir).length > 1);
+
+        // Reopening carries on after the last hand
+        log = new HandHistoryLog(dir, 256);
+        log.append(record(20));
+        log.close();
+
+        HandHistoryReader reader = new HandHistoryReader(dir);
+        for(int i = 0; i <= 20; i++) {
+            HandRecord hand = reader.next();
+            assertEquals(i, hand.getHandNumber());
+            assertEquals("table", hand.getTable());
+            assertEquals(2, hand.getSeats().size());
+            assertEquals("bob", hand.getSeats().get(1).getName());
+            assertArrayEquals(new byte[] { 0, 13 }, hand.getSeats().get(0).getCards());
+            assertEquals(1, hand.getActions().size());
+            assertEquals(HandRecord.BET, hand.getActions().get(0).getType());
+            assertEquals(i, hand.getActions().get(0).getAmount());
+            assertEquals(i, hand.getPot());
+            assertArrayEquals(new byte[] { 1 }, hand.getWinners());
+            assertArrayEquals(new long[] { i }, hand.getAmountsWon());
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void gamesLogTheirFinishedHands() throws Exception {
+        File dir = _folder.newFolder("hands");
+        HandHistoryLog log = new HandHistoryLog(dir, HandHistoryLog.DEFAULT_SEGMENT_SIZE);
+        Game.setHandHistory(log);
+        try {
+            Game game = Game.newGame("holdem", "logged", new Messenger(), Game.DIRECT);
+            game._dealDelayMillis = 0;
+            Player alice = new Player();
+            alice._name = "alice";
+            alice._out = new PrintWriter(new StringWriter());
+            game.start(alice);
+            game.handleInput(alice, "bet");
+            game.handleInput(alice, "250");
+            game.handleInput(alice, "check");
+        }
+        finally {
+            Game.setHandHistory(null);
+            log.close();
+        }
+
+        HandHistoryReader reader = new HandHistoryReader(dir);
+        HandRecord first = reader.next();
+        assertEquals("logged", first.getTable());
+        assertEquals(1, first.getHandNumber());
+        assertEquals(2, first.getSeats().get(0).getCards().length);
+        // Nobody to run the board out against
+        assertEquals(0, first.getBoard().length);
+        assertEquals(HandRecord.BET, first.getActions().get(0).getType());
+        assertEquals(250, first.getActions().get(0).getAmount());
+        assertEquals(250, first.getPot());
+        assertArrayEquals(new long[] { 250 }, first.getAmountsWon());
+        HandRecord second = reader.next();
+        assertEquals(2, second.getHandNumber());
+        assertEquals(HandRecord.CHECK, second.getActions().get(0).getType());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void splitPotsLogWhatEachWinnerGot() throws Exception {
+        File dir = _folder.newFolder("hands");
+        HandHistoryLog log = new HandHistoryLog(dir, HandHistoryLog.DEFAULT_SEGMENT_SIZE);
+        Game.setHandHistory(log);
+        Game game = Game.newGame("holdem", "split", new Messenger(), Game.DIRECT);
+        Player carol = agent("carol", new PlayerAgent() {
+            public long act(Player player, Game game) {
+                return player._bet == 0 && game.getMinBet() <= 1 ? 1 : PlayerAgent.FOLD;
+            }
+        });
+        Player alice = agent("alice", CALLS_100);
+        Player bob = agent("bob", CALLS_100);
+        ByteArrayOutputStream watched = new ByteArrayOutputStream();
+        Player dave = new Player();
+        dave._out = new ClientWriter(watched, Game.DIRECT);
+        ((ClientWriter) dave._out).setBinary(true);
+        try {
+            game._dealDelayMillis = 0;
+            game._handLimit = 1;
+            // Deals the cards in order: carol 2h 3h, alice 4h 5h, bob 6h 7h and
+            // a board of 8h to Qh, which all three play
+            game.setDeck(new PokerDeck(new ShuffleRandom() {
+                public int nextInt(int bound) {
+                    return 0;
+                }
+            }));
+            // Carol puts in a chip and folds, leaving an odd pot to split
+            game._players.add(carol);
+            game._players.add(alice);
+            game._players.add(bob);
+            game.addSpectator(dave);
+            game.play();
+        }
+        finally {
+            Game.setHandHistory(null);
+            log.close();
+        }
+
+        HandRecord hand = new HandHistoryReader(dir).next();
+        assertEquals(201, hand.getPot());
+        assertArrayEquals(new byte[] { 1, 2 }, hand.getWinners());
+        assertArrayEquals(new long[] { 101, 100 }, hand.getAmountsWon());
+        // Carol's chip went to alice
+        assertEquals(ChipLedger.STARTING_CHIPS - 1, carol._chips);
+        assertEquals(ChipLedger.STARTING_CHIPS + 1, alice._chips);
+        assertEquals(ChipLedger.STARTING_CHIPS, bob._chips);
+        assertTrue(watched.toString("UTF-8").contains("Winners won: alice 101, bob 100"));
+    }
+
+    // Raises to 100, then checks or calls
+    private static final PlayerAgent CALLS_100 = new PlayerAgent() {
+        public long act(Player player, Game game) {
+            if(game.getMinBet() < 100) { return 100; }
+            return player._bet >= game.getMinBet() ? PlayerAgent.CHECK : game.getMinBet();
+        }
+    };
+
+    private static Player agent(String name, PlayerAgent agent) {
+        Player player = new Player();
+        player._name = name;
+        player._agent = agent;
+        return player;
+    }
+
+    private static byte[] record(int handNumber) {
+        Player alice = new Player();
+        alice._name = "alice";
+        Player bob = new Player();
+        bob._name = "bob";
+        HandRecorder recorder = new HandRecorder();
+        recorder.startHand(1400000000000L);
+        recorder.addSeat(alice, CardSet.of(0, 13));
+        recorder.addSeat(bob, CardSet.of(1, 2));
+        recorder.addAction(alice, HandRecord.BET, handNumber);
+        return recorder.finishHand(handNumber, "table", CardSet.EMPTY, handNumber, Arrays.asList(bob), new long[] { handNumber });
+    }
+}
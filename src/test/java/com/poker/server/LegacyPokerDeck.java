@@ -0,0 +1,29 @@
+package com.poker.server;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * The original ArrayList backed deck, kept as the baseline for
+ * PokerDeckBenchmark. A new one was built for every hand.
+ */
+class LegacyPokerDeck {
+    private int _numSuits = 4;
+    private int _numRanks = 13;
+    private ArrayList<PokerCard> _deck = new ArrayList<PokerCard>(_numSuits * _numRanks);
+    private Random _rand;
+
+    public LegacyPokerDeck() {
+        _rand = new Random();
+        for(int i = 0; i < _numSuits; i++) {
+            for(int j = 0; j < _numRanks; j++) {
+                _deck.add(new PokerCard( PokerDeck.Suit.values()[i], PokerDeck.Rank.values()[j] ));
+            }
+        }
+    }
+
+    PokerCard dealCard() {
+        int card = _rand.nextInt(_deck.size());
+        return _deck.remove(card);
+    }
+}
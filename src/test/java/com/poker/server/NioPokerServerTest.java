@@ -0,0 +1,221 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import com.poker.BinaryProtocol;
+import com.poker.BinaryProtocol.Frame;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NioPokerServerTest {
+    private Registry _registry = new Registry();
+    private NioPokerServer _server;
+
+    @Before
+    public void startServer() throws IOException {
+        _server = new NioPokerServer(_registry, 2);
+        _server.bind(0);
+        Thread acceptor = new Thread(_server, "test-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        _server.close();
+    }
+
+    @Test
+    public void speaksTheLineProtocol() throws IOException {
+        Socket socket = connect();
+        BufferedReader in = reader(socket);
+        assertTrue(readMessage(in).startsWith("You have connected to the server...."));
+
+        send(socket, "register\n");
+        assertTrue(readMessage(in).startsWith("Please enter your username: "));
+        send(socket, "alice\n");
+        String registered = readMessage(in);
+        assertTrue(registered, registered.contains("\"alice\""));
+        assertTrue(registered, registered.contains("Type \"create\""));
+        assertNotNull(_registry.getPlayer("alice"));
+
+        send(socket, "list\n");
+        assertTrue(readMessage(in).startsWith("GAMES"));
+
+        send(socket, "quit\n");
+        readMessage(in);
+        assertNull(in.readLine());
+        assertNull(_registry.getPlayer("alice"));
+        socket.close();
+    }
+
+    /**
+     * Quitting ends the session: its name can be taken again, and the socket
+     * no longer counts as connected.
+     */
+    @Test
+    public void quittingFreesTheName() throws Exception {
+        ServerMetrics metrics = new ServerMetrics(_registry);
+        long connected = metrics.getConnectedSockets();
+        Socket socket = connect();
+        BufferedReader in = reader(socket);
+        readMessage(in);
+        send(socket, "register\ndave\n");
+        readMessage(in);
+        readMessage(in);
+        send(socket, "quit\n");
+        readMessage(in);
+        assertNull(in.readLine());
+        socket.close();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(metrics.getConnectedSockets() > connected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(metrics.getConnectedSockets() <= connected);
+        assertNull(_registry.getPlayer("dave"));
+
+        Socket other = connect();
+        BufferedReader otherIn = reader(other);
+        readMessage(otherIn);
+        send(other, "register\ndave\n");
+        readMessage(otherIn);
+        String registered = readMessage(otherIn);
+        assertTrue(registered, registered.contains("\"dave\""));
+        assertNotNull(_registry.getPlayer("dave"));
+        other.close();
+    }
+
+    /**
+     * A player who drops out of a game keeps their name, and their chips'
+     * account, until the game lets them go.
+     */
+    @Test
+    public void seatedPlayersKeepTheirNameUntilTheGameLetsGo() throws Exception {
+        Socket socket = connect();
+        BufferedReader in = reader(socket);
+        readMessage(in);
+        send(socket, "register\nerin\n");
+        readMessage(in);
+        readMessage(in);
+        send(socket, "create\nerins\nfive\n");
+        while(!readMessage(in).contains("You have created a game: erins")) { }
+        Player erin = _registry.getPlayer("erin");
+        socket.close();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(erin._connected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertSame(erin, _registry.getPlayer("erin"));
+        Socket other = connect();
+        BufferedReader otherIn = reader(other);
+        readMessage(otherIn);
+        send(other, "register\nerin\n");
+        readMessage(otherIn);
+        assertTrue(readMessage(otherIn).startsWith("User: erin already exists!"));
+
+        // As when the grace period runs out
+        _registry.getGame("erins").handleInput(erin, "exit");
+        deadline = System.currentTimeMillis() + 5000;
+        while(_registry.getPlayer("erin") != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(_registry.getPlayer("erin"));
+        other.close();
+    }
+
+    @Test
+    public void framesLinesSplitAcrossPackets() throws IOException {
+        Socket socket = connect();
+        BufferedReader in = reader(socket);
+        readMessage(in);
+
+        send(socket, "reg");
+        send(socket, "ister\r");
+        send(socket, "\nbob\r\nli");
+        assertTrue(readMessage(in).startsWith("Please enter your username: "));
+        assertTrue(readMessage(in).contains("\"bob\""));
+        send(socket, "st\n");
+        assertTrue(readMessage(in).startsWith("GAMES"));
+
+        Socket other = connect();
+        BufferedReader otherIn = reader(other);
+        readMessage(otherIn);
+        send(other, "register\nbob\n");
+        readMessage(otherIn);
+        assertTrue(readMessage(otherIn).startsWith("User: bob already exists!"));
+
+        socket.close();
+        other.close();
+    }
+
+    @Test
+    public void switchesToBinaryFramesOnRequest() throws IOException {
+        Socket socket = connect();
+        BufferedReader in = reader(socket);
+        readMessage(in);
+
+        send(socket, BinaryProtocol.REQUEST + "\n");
+        DataInputStream frames = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Frame menu = BinaryProtocol.readFrame(frames);
+        assertEquals(BinaryProtocol.MENU, menu.getOpcode());
+        assertTrue(BinaryProtocol.getString(menu.getPayload()).startsWith("Type "));
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(frames).getOpcode());
+
+        send(socket, "register\n");
+        Frame prompt = BinaryProtocol.readFrame(frames);
+        assertEquals(BinaryProtocol.PROMPT, prompt.getOpcode());
+        assertEquals("Please enter your username: ", BinaryProtocol.getRemainingString(prompt.getPayload()));
+        assertEquals(BinaryProtocol.END, BinaryProtocol.readFrame(frames).getOpcode());
+
+        send(socket, "carol\n");
+        Frame players = BinaryProtocol.readFrame(frames);
+        assertEquals(BinaryProtocol.TEXT, players.getOpcode());
+        assertTrue(BinaryProtocol.getRemainingString(players.getPayload()).contains("\"carol\""));
+        assertEquals(BinaryProtocol.MENU, BinaryProtocol.readFrame(frames).getOpcode());
+        socket.close();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", _server.getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void send(Socket socket, String text) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Reads one Messenger message: a line count, then that many lines.
+     */
+    private static String readMessage(BufferedReader in) throws IOException {
+        int numLines = Integer.parseInt(in.readLine().trim());
+        StringBuilder msg = new StringBuilder();
+        for(int i = 0; i < numLines; i++) {
+            msg.append(in.readLine()).append('\n');
+        }
+        return msg.toString();
+    }
+}
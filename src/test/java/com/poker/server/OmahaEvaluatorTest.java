@@ -0,0 +1,73 @@
+package com.poker.server;
+
+import static com.poker.server.PokerHandTest.cardSet;
+import static org.junit.Assert.assertEquals;
+
+import com.poker.server.PokerHand.HandRanking;
+import org.junit.Test;
+
+public class OmahaEvaluatorTest {
+
+    @Test
+    public void matchesEverySixtyCombinations() {
+        PokerDeck deck = new PokerDeck(new SplittableShuffleRandom(6));
+        for(int trial = 0; trial < 100000; trial++) {
+            deck.reset();
+            long hole = CardSet.EMPTY;
+            long board = CardSet.EMPTY;
+            for(int i = 0; i < OmahaEvaluator.NUM_HOLE_CARDS; i++) {
+                hole = CardSet.add(hole, deck.dealCardId());
+            }
+            for(int i = 0; i < OmahaEvaluator.NUM_BOARD_CARDS; i++) {
+                board = CardSet.add(board, deck.dealCardId());
+            }
+            assertEquals(CardSet.toString(hole) + " " + CardSet.toString(board),
+                    bestOfCombinations(hole, board), OmahaEvaluator.evaluate(hole, board));
+        }
+    }
+
+    @Test
+    public void oneSuitedHoleCardIsNoFlush() {
+        long hole = cardSet("AH", "KS", "KD", "2C");
+        long board = cardSet("3H", "7H", "9H", "JH", "QC");
+        assertEquals(HandRanking.PAIR, HandEvaluator.getHandRanking(OmahaEvaluator.evaluate(hole, board)));
+    }
+
+    @Test
+    public void pairedBoardFullHouseBeatsFlush() {
+        long hole = cardSet("AH", "KH", "9D", "9C");
+        long board = cardSet("3H", "9H", "9S", "JH", "3C");
+        assertEquals(HandRanking.FOUR_OF_A_KIND, HandEvaluator.getHandRanking(OmahaEvaluator.evaluate(hole, board)));
+        hole = cardSet("AH", "KH", "JD", "3D");
+        assertEquals(HandRanking.FULL_HOUSE, HandEvaluator.getHandRanking(OmahaEvaluator.evaluate(hole, board)));
+    }
+
+    /**
+     * Ranks every two hole card, three board card combination as a five card hand.
+     */
+    static int bestOfCombinations(long hole, long board) {
+        int[] holeIds = toIds(hole);
+        int[] boardIds = toIds(board);
+        int[] five = new int[PokerHand.NUM_CARDS];
+        int best = -1;
+        for(int a = 0; a < holeIds.length; a++)
+        for(int b = a + 1; b < holeIds.length; b++)
+        for(int c = 0; c < boardIds.length; c++)
+        for(int d = c + 1; d < boardIds.length; d++)
+        for(int e = d + 1; e < boardIds.length; e++) {
+            five[0] = holeIds[a]; five[1] = holeIds[b];
+            five[2] = boardIds[c]; five[3] = boardIds[d]; five[4] = boardIds[e];
+            best = Math.max(best, HandEvaluator.evaluate(five));
+        }
+        return best;
+    }
+
+    static int[] toIds(long set) {
+        int[] ids = new int[CardSet.size(set)];
+        int n = 0;
+        for(long rest = set; rest != CardSet.EMPTY; rest &= rest - 1) {
+            ids[n++] = CardSet.firstCard(rest);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,44 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PlayerTest {
+    @Test
+    public void gameExitRunsTheExitAction() {
+        Player player = new Player();
+        final AtomicInteger exits = new AtomicInteger();
+        player.joiningGame(new Runnable() {
+            public void run() {
+                exits.incrementAndGet();
+            }
+        });
+        assertFalse(player._exitingGame);
+
+        player.exitedGame();
+        assertEquals(1, exits.get());
+        assertTrue(player._exitingGame);
+    }
+
+    @Test
+    public void exitActionRunsOnce() {
+        Player player = new Player();
+        final AtomicInteger exits = new AtomicInteger();
+        player.joiningGame(new Runnable() {
+            public void run() {
+                exits.incrementAndGet();
+            }
+        });
+        player.exitedGame();
+        player.exitedGame();
+        assertEquals(1, exits.get());
+
+        player.joiningGame(null);
+        assertFalse(player._exitingGame);
+    }
+}
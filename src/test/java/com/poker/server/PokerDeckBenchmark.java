@@ -0,0 +1,54 @@
+package com.poker.server;
+
+/**
+ * Measures how many full table deals per second each deck manages. A deal is
+ * one hand for each of Game.MAX_PLAYERS players, 50 cards in all.
+ *
+ * Run with: java -cp target/classes:target/test-classes com.poker.server.PokerDeckBenchmark
+ */
+public class PokerDeckBenchmark {
+    private static final int CARDS_PER_DEAL = Game.MAX_PLAYERS * PokerHand.NUM_CARDS;
+    private static final long RUN_NANOS = 2000000000L;
+
+    // Keeps the JIT from throwing the dealt cards away
+    private static long _sink;
+
+    public static void main(String[] args) {
+        for(int round = 0; round < 3; round++) {
+            report("legacy deck, new per hand", legacyDeals());
+            report("Fisher-Yates, secure", reusedDeals(new PokerDeck()));
+            report("Fisher-Yates, splittable", reusedDeals(new PokerDeck(new SplittableShuffleRandom())));
+        }
+        System.out.println("(sink " + _sink + ")");
+    }
+
+    private static double legacyDeals() {
+        long deals = 0;
+        long start = System.nanoTime();
+        while(System.nanoTime() - start < RUN_NANOS) {
+            LegacyPokerDeck deck = new LegacyPokerDeck();
+            for(int i = 0; i < CARDS_PER_DEAL; i++) {
+                _sink += deck.dealCard()._rank.ordinal();
+            }
+            deals++;
+        }
+        return deals * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static double reusedDeals(PokerDeck deck) {
+        long deals = 0;
+        long start = System.nanoTime();
+        while(System.nanoTime() - start < RUN_NANOS) {
+            deck.reset();
+            for(int i = 0; i < CARDS_PER_DEAL; i++) {
+                _sink += deck.dealCardId();
+            }
+            deals++;
+        }
+        return deals * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static void report(String name, double dealsPerSecond) {
+        System.out.printf("%-28s %,12.0f deals/s%n", name, dealsPerSecond);
+    }
+}
@@ -0,0 +1,32 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+public class PokerDeckTest {
+
+    @Test
+    public void resetDeckDealsEveryCardOnce() {
+        PokerDeck deck = new PokerDeck();
+        for(int round = 0; round < 3; round++) {
+            deck.reset();
+            long dealt = CardSet.EMPTY;
+            while(deck.cardsLeft() > 0) {
+                int card = deck.dealCardId();
+                assertFalse(CardSet.contains(dealt, card));
+                dealt = CardSet.add(dealt, card);
+            }
+            assertEquals(CardSet.FULL_DECK, dealt);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyDeckFailsToDeal() {
+        PokerDeck deck = new PokerDeck();
+        for(int i = 0; i <= PokerCard.NUM_CARDS; i++) {
+            deck.dealCardId();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import com.poker.server.PokerDeck.Rank;
+import com.poker.server.PokerDeck.Suit;
+import com.poker.server.PokerHand.HandRanking;
+import org.junit.Test;
+
+public class PokerHandTest {
+    private static final PokerCard[] DECK = new PokerCard[52];
+    static {
+        for(int i = 0; i < DECK.length; i++) {
+            DECK[i] = new PokerCard(Suit.values()[i / 13], Rank.values()[i % 13]);
+        }
+    }
+
+    /**
+     * Walks every one of the 2,598,960 five card hands. Each hand must get the
+     * same ranking as the original code, and must order the same way against
+     * the previous hand seen with that ranking.
+     */
+    @Test
+    public void matchesLegacyRankingForEveryHand() {
+        LegacyPokerHand[] lastLegacy = new LegacyPokerHand[HandRanking.values().length];
+        PokerHand[] lastHand = new PokerHand[HandRanking.values().length];
+        int[] seen = new int[HandRanking.values().length];
+        PokerCard[] cards = new PokerCard[PokerHand.NUM_CARDS];
+
+        for(int a = 0; a < 52; a++)
+        for(int b = a + 1; b < 52; b++)
+        for(int c = b + 1; c < 52; c++)
+        for(int d = c + 1; d < 52; d++)
+        for(int e = d + 1; e < 52; e++) {
+            cards[0] = DECK[a]; cards[1] = DECK[b]; cards[2] = DECK[c]; cards[3] = DECK[d]; cards[4] = DECK[e];
+            LegacyPokerHand legacy = new LegacyPokerHand(cards);
+            PokerHand hand = new PokerHand(cards);
+            HandRanking ranking = legacy.getHandRanking(legacy._cards);
+            assertEquals(ranking, hand.getHandRanking());
+
+            int i = ranking.ordinal();
+            seen[i]++;
+            // The original two pair tie break is asymmetric, see twoPairTieBreak
+            if(lastHand[i] != null && ranking != HandRanking.TWO_PAIR) {
+                assertEquals(legacy + " vs " + lastLegacy[i],
+                        Integer.signum(legacy.compareTo(lastLegacy[i])),
+                        Integer.signum(hand.compareStrength(lastHand[i])));
+            }
+            lastLegacy[i] = legacy;
+            lastHand[i] = hand;
+        }
+
+        int total = 0;
+        for(int count : seen) { total += count; }
+        assertEquals(2598960, total);
+        assertEquals(1302540 + 1020, seen[HandRanking.HIGH_CARD.ordinal()]);
+        assertEquals(9180, seen[HandRanking.STRAIGHT.ordinal()]);
+        assertEquals(123552, seen[HandRanking.TWO_PAIR.ordinal()]);
+        assertEquals(624, seen[HandRanking.FOUR_OF_A_KIND.ordinal()]);
+        assertEquals(36, seen[HandRanking.STRAIGH_FLUSH.ordinal()]);
+    }
+
+    @Test
+    public void twoPairTieBreak() {
+        PokerHand kingsAndFours = hand("KH", "KS", "4D", "4C", "2H");
+        PokerHand kingsAndThrees = hand("KD", "KC", "3D", "3C", "AH");
+        PokerHand kingsAndFoursAceKicker = hand("KD", "KC", "4H", "4S", "AC");
+        PokerHand queensAndJacks = hand("QH", "QS", "JD", "JC", "AH");
+
+        assertTrue(kingsAndFours.compareStrength(kingsAndThrees) > 0);
+        assertTrue(kingsAndThrees.compareStrength(kingsAndFours) < 0);
+        assertTrue(kingsAndFoursAceKicker.compareStrength(kingsAndFours) > 0);
+        assertTrue(queensAndJacks.compareStrength(kingsAndThrees) < 0);
+        assertEquals(0, kingsAndFours.compareStrength(hand("KD", "KC", "4H", "4S", "2C")));
+    }
+
+    @Test
+    public void aceIsOnlyHigh() {
+        PokerHand wheel = hand("AH", "2S", "3D", "4C", "5H");
+        assertEquals(HandRanking.HIGH_CARD, wheel.getHandRanking());
+        assertTrue(wheel.compareStrength(hand("2H", "3S", "4D", "5C", "6H")) < 0);
+        assertEquals(HandRanking.STRAIGHT, hand("TH", "JS", "QD", "KC", "AH").getHandRanking());
+    }
+
+    @Test
+    public void cardsAreHeldHighestFirst() {
+        PokerHand hand = hand("2H", "AS", "7D", "7C", "KH");
+        int[] highestFirst = ids("AS", "KH", "7D", "7C", "2H");
+        for(int i = 0; i < PokerHand.NUM_CARDS; i++) {
+            assertEquals(highestFirst[i], hand.getCardId(i));
+        }
+        hand.compareTo(hand("3H", "3S", "9D", "JC", "QH"));
+        hand.getCards()[0] = null;
+        assertArrayEquals(hand("AS", "KH", "7D", "7C", "2H").getCards(), hand.getCards());
+        assertEquals(CardSet.of(ids("2H", "AS", "7D", "7C", "KH")), hand.getCardSet());
+    }
+
+    @Test
+    public void sameCardsAreEqualInAnyOrder() {
+        PokerHand hand = hand("2H", "AS", "7D", "7C", "KH");
+        PokerHand shuffled = hand("7C", "KH", "2H", "7D", "AS");
+        assertEquals(hand, shuffled);
+        assertEquals(hand.hashCode(), shuffled.hashCode());
+        assertEquals(hand.getKey(), shuffled.getKey());
+        assertEquals(0, hand.compareTo(shuffled));
+        assertEquals(hand.toString(), shuffled.toString());
+
+        Set<PokerHand> hands = new HashSet<PokerHand>();
+        hands.add(hand);
+        assertTrue(hands.contains(shuffled));
+    }
+
+    /**
+     * Hands that tie at the showdown are still different hands, and compareTo
+     * must only return 0 for equal ones.
+     */
+    @Test
+    public void compareToIsConsistentWithEquals() {
+        PokerHand kingsAndFours = hand("KH", "KS", "4D", "4C", "2H");
+        PokerHand sameStrength = hand("KD", "KC", "4H", "4S", "2C");
+        assertEquals(0, kingsAndFours.compareStrength(sameStrength));
+        assertFalse(kingsAndFours.equals(sameStrength));
+        assertTrue(kingsAndFours.compareTo(sameStrength) != 0);
+        assertEquals(-Integer.signum(kingsAndFours.compareTo(sameStrength)),
+                Integer.signum(sameStrength.compareTo(kingsAndFours)));
+
+        PokerHand kingsAndThrees = hand("KD", "KC", "3D", "3C", "AH");
+        assertTrue(kingsAndFours.compareTo(kingsAndThrees) > 0);
+        assertTrue(kingsAndFours.getKey() > kingsAndThrees.getKey());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRepeatedCards() {
+        hand("KH", "KS", "4D", "4D", "2H");
+    }
+
+    /**
+     * The constant time lookup for six and seven cards must agree with trying
+     * every five card subset.
+     */
+    @Test
+    public void cardSetEvaluationPicksBestFive() {
+        SplittableRandom rand = new SplittableRandom(7);
+        PokerDeck deck = new PokerDeck(new SplittableShuffleRandom(7));
+        int[] cards = new int[HandEvaluator.MAX_CARDS];
+        for(int trial = 0; trial < 200000; trial++) {
+            int numCards = PokerHand.NUM_CARDS + rand.nextInt(3);
+            deck.reset();
+            for(int i = 0; i < numCards; i++) {
+                cards[i] = deck.dealCardId();
+            }
+            long set = CardSet.of(Arrays.copyOf(cards, numCards));
+            assertEquals(CardSet.toString(set), bestOfSubsets(cards, numCards), HandEvaluator.evaluateCardSet(set));
+        }
+    }
+
+    @Test
+    public void cardSetEvaluationPrefersStraightFlushOverTrips() {
+        long seven = cardSet("9H", "TH", "JH", "QH", "KH", "KS", "KD");
+        assertEquals(HandRanking.STRAIGH_FLUSH, HandEvaluator.getHandRanking(HandEvaluator.evaluateCardSet(seven)));
+        assertEquals(hand("9H", "TH", "JH", "QH", "KH").getStrength(), HandEvaluator.evaluateCardSet(seven));
+    }
+
+    private static int bestOfSubsets(int[] cards, int numCards) {
+        int best = -1;
+        int[] five = new int[PokerHand.NUM_CARDS];
+        for(int skip = 0; skip < (1 << numCards); skip++) {
+            if(Integer.bitCount(skip) != numCards - PokerHand.NUM_CARDS) { continue; }
+            int n = 0;
+            for(int i = 0; i < numCards; i++) {
+                if((skip & (1 << i)) == 0) { five[n++] = cards[i]; }
+            }
+            best = Math.max(best, HandEvaluator.evaluate(five));
+        }
+        return best;
+    }
+
+    /**
+     * Builds a hand from two character names, e.g. "TH" is the ten of hearts.
+     */
+    static PokerHand hand(String... names) {
+        return new PokerHand(cards(names));
+    }
+
+    static long cardSet(String... names) {
+        long set = CardSet.EMPTY;
+        for(PokerCard card : cards(names)) {
+            set = CardSet.add(set, card.getId());
+        }
+        return set;
+    }
+
+    private static int[] ids(String... names) {
+        PokerCard[] cards = cards(names);
+        int[] ids = new int[cards.length];
+        for(int i = 0; i < cards.length; i++) {
+            ids[i] = cards[i].getId();
+        }
+        return ids;
+    }
+
+    private static PokerCard[] cards(String... names) {
+        PokerCard[] cards = new PokerCard[names.length];
+        for(int i = 0; i < names.length; i++) {
+            int rank = "23456789TJQKA".indexOf(names[i].charAt(0));
+            int suit = "HSDC".indexOf(names[i].charAt(1));
+            cards[i] = DECK[suit * 13 + rank];
+        }
+        return cards;
+    }
+}
@@ -0,0 +1,87 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.poker.Messenger;
+import org.junit.Test;
+
+public class RegistryTest {
+    @Test
+    public void onlyOnePlayerGetsAName() throws InterruptedException {
+        final Registry registry = new Registry();
+        final AtomicInteger registered = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for(int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if(registry.register("alice", new Player())) { registered.incrementAndGet(); }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, registered.get());
+
+        Player alice = registry.getPlayer("alice");
+        assertTrue(registry.isRegistered(alice));
+        registry.unregister(new Player());
+        assertSame(alice, registry.getPlayer("alice"));
+        registry.unregister(alice);
+        assertNull(registry.getPlayer("alice"));
+    }
+
+    @Test
+    public void seatsRunOutAtTheTableLimit() {
+        Registry registry = new Registry();
+        Game game = new Game("table", new Messenger());
+        assertTrue(registry.addGame(game));
+        assertFalse(registry.addGame(new Game("table", new Messenger())));
+
+        for(int i = 1; i < Game.MAX_PLAYERS; i++) {
+            assertSame(game, registry.reserveSeat("table"));
+        }
+        assertNull(registry.reserveSeat("table"));
+        assertNull(registry.reserveSeat("nowhere"));
+    }
+
+    @Test
+    public void onlyEmptyGamesAreRemoved() {
+        Registry registry = new Registry();
+        Game game = Game.newGame("five", "table", new Messenger(), Game.DIRECT);
+        Player alice = new Player();
+        alice._out = new PrintWriter(new StringWriter());
+        registry.addGame(game);
+        game.start(alice);
+        registry.removeGameIfEmpty(game);
+        assertSame(game, registry.getGame("table"));
+        assertEquals(1, registry.getGames().size());
+
+        // A different game under the same name stays open
+        registry.removeGameIfEmpty(new Game("table", new Messenger()));
+        assertSame(game, registry.getGame("table"));
+
+        game.handleInput(alice, "exit");
+        assertEquals(0, game.getPlayerNames().size());
+        registry.removeGameIfEmpty(game);
+        assertNull(registry.getGame("table"));
+        assertTrue(registry.getGames().isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.poker.ClientWriter;
+import com.poker.Messenger;
+import org.junit.Test;
+
+public class ServerMetricsTest {
+    @Test
+    public void countsWhatTheGamesDo() throws Exception {
+        Registry registry = new Registry();
+        ServerMetrics metrics = new ServerMetrics(registry);
+        long checks = metrics.getGameCommands().get("check").getCount();
+        long bets = metrics.getGameCommands().get("bet").getCount();
+        long hands = metrics.getHandsCompleted();
+        long messages = metrics.getMessageBytes().getCount();
+
+        Game game = Game.newGame("holdem", "metrics", new Messenger(), Game.DIRECT);
+        game._dealDelayMillis = 0;
+        registry.addGame(game);
+        Player alice = new Player();
+        alice._name = "alice";
+        alice._out = new ClientWriter(new ByteArrayOutputStream(), Game.DIRECT);
+        game.start(alice);
+        assertEquals(1, metrics.getActiveTables());
+        assertEquals(1, metrics.getSeatedPlayers());
+
+        for(int i = 0; i < 10; i++) {
+            game.handleInput(alice, "check");
+        }
+        game.handleInput(alice, "bet");
+        game.handleInput(alice, "100");
+
+        assertEquals(checks + 10, metrics.getGameCommands().get("check").getCount());
+        assertEquals(bets + 1, metrics.getGameCommands().get("bet").getCount());
+        assertEquals(hands + 11, metrics.getHandsCompleted());
+        assertTrue(metrics.getMessageBytes().getCount() > messages);
+        assertTrue(metrics.getMessageBytes().getMax() > 0);
+
+        String dump = metrics.dump();
+        assertTrue(dump, dump.contains("1 tables, 1 seats"));
+        assertTrue(dump, dump.contains("game check"));
+    }
+
+    @Test
+    public void showsTheMetricsOverJmx() throws Exception {
+        ServerMetrics metrics = new ServerMetrics(new Registry());
+        metrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.poker:type=ServerMetrics");
+        try {
+            assertEquals(0, server.getAttribute(name, "ActiveTables"));
+            assertEquals(metrics.getHandsCompleted(), server.getAttribute(name, "HandsCompleted"));
+            assertTrue(server.getAttribute(name, "GameCommands") != null);
+        }
+        finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
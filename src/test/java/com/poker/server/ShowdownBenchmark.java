@@ -0,0 +1,115 @@
+package com.poker.server;
+
+/**
+ * Measures the cost of one showdown at a full table of Game.MAX_PLAYERS
+ * seats: ranking every seat's hand against the board, the way Game does.
+ * Each variant is timed with its dedicated evaluator, and against ranking
+ * every five card combination as a PokerHand with compareTo.
+ *
+ * Run with: java -cp target/classes:target/test-classes com.poker.server.ShowdownBenchmark
+ */
+public class ShowdownBenchmark {
+    private static final int NUM_DEALS = 1024;
+    private static final long RUN_NANOS = 2000000000L;
+
+    private static long[][] _holeCards = new long[NUM_DEALS][Game.MAX_PLAYERS];
+    private static long[] _boards = new long[NUM_DEALS];
+    private static long _sink;
+
+    private interface Showdown {
+        int best(long holeCards, long board);
+    }
+
+    public static void main(String[] args) {
+        for(int round = 0; round < 3; round++) {
+            deal(HoldemGame.NUM_HOLE_CARDS);
+            report("Hold'em, evaluateCardSet", time(new Showdown() {
+                public int best(long holeCards, long board) {
+                    return HandEvaluator.evaluateCardSet(holeCards | board);
+                }
+            }));
+            report("Hold'em, 21 x compareTo", time(new Showdown() {
+                public int best(long holeCards, long board) {
+                    return bestByCompareTo(holeCards | board, CardSet.EMPTY, 0);
+                }
+            }));
+            deal(OmahaEvaluator.NUM_HOLE_CARDS);
+            report("Omaha, OmahaEvaluator", time(new Showdown() {
+                public int best(long holeCards, long board) {
+                    return OmahaEvaluator.evaluate(holeCards, board);
+                }
+            }));
+            report("Omaha, 60 x compareTo", time(new Showdown() {
+                public int best(long holeCards, long board) {
+                    return bestByCompareTo(holeCards, board, 2);
+                }
+            }));
+        }
+        System.out.println("(sink " + _sink + ")");
+    }
+
+    private static void deal(int numHoleCards) {
+        PokerDeck deck = new PokerDeck(new SplittableShuffleRandom(1));
+        for(int d = 0; d < NUM_DEALS; d++) {
+            deck.reset();
+            _boards[d] = CardSet.EMPTY;
+            for(int i = 0; i < OmahaEvaluator.NUM_BOARD_CARDS; i++) {
+                _boards[d] = CardSet.add(_boards[d], deck.dealCardId());
+            }
+            for(int seat = 0; seat < Game.MAX_PLAYERS; seat++) {
+                _holeCards[d][seat] = CardSet.EMPTY;
+                for(int i = 0; i < numHoleCards; i++) {
+                    _holeCards[d][seat] = CardSet.add(_holeCards[d][seat], deck.dealCardId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the nanoseconds one full table showdown takes.
+     */
+    private static double time(Showdown showdown) {
+        long showdowns = 0;
+        long start = System.nanoTime();
+        while(System.nanoTime() - start < RUN_NANOS) {
+            int d = (int) (showdowns & (NUM_DEALS - 1));
+            int best = -1;
+            for(int seat = 0; seat < Game.MAX_PLAYERS; seat++) {
+                best = Math.max(best, showdown.best(_holeCards[d][seat], _boards[d]));
+            }
+            _sink += best;
+            showdowns++;
+        }
+        return (System.nanoTime() - start) / (double) showdowns;
+    }
+
+    /**
+     * Keeps the best PokerHand made from numFromFirst cards of first (or any
+     * five, when numFromFirst is 0) plus the rest from second.
+     */
+    private static int bestByCompareTo(long first, long second, int numFromFirst) {
+        int[] firstIds = OmahaEvaluatorTest.toIds(first);
+        int[] secondIds = OmahaEvaluatorTest.toIds(second);
+        int[] all = new int[firstIds.length + secondIds.length];
+        System.arraycopy(firstIds, 0, all, 0, firstIds.length);
+        System.arraycopy(secondIds, 0, all, firstIds.length, secondIds.length);
+
+        PokerHand best = null;
+        int[] five = new int[PokerHand.NUM_CARDS];
+        for(int choice = 0; choice < (1 << all.length); choice++) {
+            if(Integer.bitCount(choice) != PokerHand.NUM_CARDS) { continue; }
+            if(numFromFirst > 0 && Integer.bitCount(choice & ((1 << firstIds.length) - 1)) != numFromFirst) { continue; }
+            int n = 0;
+            for(int i = 0; i < all.length; i++) {
+                if((choice & (1 << i)) != 0) { five[n++] = all[i]; }
+            }
+            PokerHand hand = new PokerHand(five);
+            if(best == null || hand.compareTo(best) > 0) { best = hand; }
+        }
+        return best.getCard(0)._rank.ordinal();
+    }
+
+    private static void report(String name, double nanos) {
+        System.out.printf("%-26s %,10.0f ns per 10 seat showdown%n", name, nanos);
+    }
+}
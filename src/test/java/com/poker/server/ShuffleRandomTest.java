@@ -0,0 +1,58 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ShuffleRandomTest {
+
+    @Test
+    public void seededSplittableRandomRepeats() {
+        PokerDeck first = new PokerDeck(new SplittableShuffleRandom(42));
+        PokerDeck second = new PokerDeck(new SplittableShuffleRandom(42));
+        for(int i = 0; i < PokerCard.NUM_CARDS; i++) {
+            assertEquals(first.dealCardId(), second.dealCardId());
+        }
+    }
+
+    @Test
+    public void secureRandomStaysInBoundAcrossThreads() throws InterruptedException {
+        final ShuffleRandom rand = SecureShuffleRandom.getInstance();
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    // Enough draws to run through many blocks
+                    int[] counts = new int[PokerCard.NUM_CARDS];
+                    for(int i = 0; i < 200000; i++) {
+                        int value = rand.nextInt(PokerCard.NUM_CARDS);
+                        if(value < 0 || value >= PokerCard.NUM_CARDS) { failures.incrementAndGet(); }
+                        else { counts[value]++; }
+                    }
+                    for(int count : counts) {
+                        if(count == 0) { failures.incrementAndGet(); }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+    }
+
+    @Test
+    public void secureRandomHandlesPowersOfTwo() {
+        ShuffleRandom rand = SecureShuffleRandom.getInstance();
+        for(int i = 0; i < 1000; i++) {
+            int value = rand.nextInt(8);
+            assertTrue(value >= 0 && value < 8);
+        }
+        assertEquals(0, rand.nextInt(1));
+    }
+}
@@ -0,0 +1,56 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class SimulatorTest {
+    @Test
+    public void playsEveryHandAndAccountsForEveryChip() throws InterruptedException {
+        Simulator simulator = new Simulator("holdem", 6, Simulator.newAgents("random,call"), 3, 42);
+        simulator.run(20000);
+        assertEquals(20000, simulator.getHandsPlayed());
+        long won = 0;
+        for(int seat = 0; seat < 6; seat++) {
+            won += simulator.getChipsWon(seat);
+        }
+        // Whatever the seats lost, another seat won, split pots included
+        assertEquals(0, won);
+        assertEquals(0, simulator.getChipsUnpaid());
+    }
+
+    @Test
+    public void theSameSeedPlaysTheSameHands() throws InterruptedException {
+        Simulator first = new Simulator("five", 4, Simulator.newAgents("random"), 2, 7);
+        Simulator second = new Simulator("five", 4, Simulator.newAgents("random"), 2, 7);
+        first.run(5000);
+        second.run(5000);
+        for(int seat = 0; seat < 4; seat++) {
+            assertEquals(first.getChipsWon(seat), second.getChipsWon(seat));
+        }
+    }
+
+    @Test
+    public void movesTheGameWouldNotTakeFold() throws InterruptedException {
+        PlayerAgent.Factory agents = new PlayerAgent.Factory() {
+            public PlayerAgent newAgent(int seat, SplittableRandom random) {
+                if(seat == 0) { return new Simulator.CallingAgent(); }
+                // Bets more than it has
+                return new PlayerAgent() {
+                    public long act(Player player, Game game) {
+                        return player._chips + 1;
+                    }
+                };
+            }
+        };
+        Simulator simulator = new Simulator("holdem", 3, agents, 1, 1);
+        simulator.run(100);
+        assertEquals(100, simulator.getHandsPlayed());
+        // Nobody could bet, so nobody won or lost anything
+        for(int seat = 0; seat < 3; seat++) {
+            assertEquals(0, simulator.getChipsWon(seat));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.poker.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TimingWheelTest {
+    @Test(timeout = 5000)
+    public void runsTimeoutsInDeadlineOrder() throws InterruptedException {
+        // Four buckets, so the later timeouts need more than one turn of the wheel
+        TimingWheel wheel = new TimingWheel("test-wheel", 5, 4);
+        final List<Integer> fired = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(3);
+        int[] delays = { 120, 10, 50 };
+        for(final int delay : delays) {
+            wheel.schedule(new Runnable() {
+                public void run() {
+                    fired.add(delay);
+                    done.countDown();
+                }
+            }, delay);
+        }
+        long start = System.nanoTime();
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 110);
+        assertEquals(10, (int) fired.get(0));
+        assertEquals(50, (int) fired.get(1));
+        assertEquals(120, (int) fired.get(2));
+    }
+
+    @Test(timeout = 5000)
+    public void cancelledTimeoutsNeverRun() throws InterruptedException {
+        TimingWheel wheel = new TimingWheel("test-wheel", 5, 8);
+        final CountDownLatch cancelledRan = new CountDownLatch(1);
+        final CountDownLatch laterRan = new CountDownLatch(1);
+        TimingWheel.Timeout timeout = wheel.schedule(new Runnable() {
+            public void run() {
+                cancelledRan.countDown();
+            }
+        }, 20);
+        wheel.schedule(new Runnable() {
+            public void run() {
+                laterRan.countDown();
+            }
+        }, 60);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(laterRan.await(2, TimeUnit.SECONDS));
+        assertEquals(1, cancelledRan.getCount());
+    }
+}